@@ -45,11 +45,19 @@ public class Andie {
      * Listens for language changes, which trigger a restart of the view, so that components can update their text
      * </p>
      * 
-     * @param args Command line arguments, not currently used
+     * <p>
+     * If the first argument is {@code --batch}, the rest are passed to {@link AndieBatch#main(String[])} instead, and no window is opened.
+     * </p>
+     * 
+     * @param args Command line arguments, only used for {@code --batch}
      * @throws Exception If something goes awry
      * @see #launchView()
      */
     public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            AndieBatch.main(java.util.Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         LanguageConfig.init();
         javax.swing.SwingUtilities.invokeLater(()->{
 
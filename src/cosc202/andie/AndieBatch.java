@@ -0,0 +1,291 @@
+package cosc202.andie;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import cosc202.andie.ImageOperation.ImageOperationException;
+import cosc202.andie.models.EditableImage;
+import cosc202.andie.models.ImageLoader;
+import cosc202.andie.models.ImageSaver;
+
+/**
+ * <p>
+ * Headless entry point for applying a macro to many images at once, without ANDIE's window.
+ * </p>
+ *
+ * <p>
+ * Usage: {@code AndieBatch <macro file> <input directory or glob> <output directory> [--threads n] [--format name]}.
+ * A directory means every image directly inside it. A glob (e.g. {@code photos/**}{@code /*.jpg}) is matched against the paths below
+ * the part of it with no wildcards, and subdirectories are kept in the output directory. Images are written in their own format
+ * unless {@code --format} is given.
+ * </p>
+ *
+ * <p>
+ * Each image is read, has the macro's operations applied, and is written by a fixed pool of worker threads (one per processor by
+ * default). Only a few more images than there are workers are queued at once, so a huge input directory doesn't fill memory while
+ * the workers catch up. Each image is reported on its own line with how long it took to read, process and write, and any image that
+ * fails is reported without stopping the others. Nothing here uses Swing, so it runs on machines without a display.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @see Andie
+ * @see cosc202.andie.models.MacrosModel
+ *
+ * @author Jeb Nicholson
+ * @version 1.0
+ */
+public class AndieBatch {
+
+	/** The exit code when every image was processed */
+	public static final int EXIT_OK = 0;
+	/** The exit code when some images couldn't be processed */
+	public static final int EXIT_FAILURES = 1;
+	/** The exit code when the arguments or macro are invalid, so nothing was processed */
+	public static final int EXIT_USAGE = 2;
+
+	private static final String USAGE = "Usage: AndieBatch <macro file> <input directory or glob> <output directory> [--threads n] [--format name]";
+
+	private String macroString;
+	private Path inputBase;
+	private PathMatcher inputMatcher;
+	private int inputDepth;
+	private Path outputDirectory;
+	private String format;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private PrintStream out;
+	private PrintStream err;
+
+	private AtomicInteger succeeded = new AtomicInteger();
+	private AtomicInteger failed = new AtomicInteger();
+
+	/**
+	 * Run a batch from the command line, exiting with {@link #EXIT_OK}, {@link #EXIT_FAILURES} or {@link #EXIT_USAGE}
+	 * @param args The command line arguments
+	 * @throws Exception If something goes awry
+	 */
+	public static void main(String[] args) throws Exception {
+		System.setProperty("java.awt.headless", "true");
+		System.exit(run(args, System.out, System.err));
+	}
+
+	/**
+	 * Run a batch
+	 * @param args The command line arguments
+	 * @param out Where each processed image and the summary are reported
+	 * @param err Where images that fail, and invalid arguments, are reported
+	 * @return The exit code: {@link #EXIT_OK}, {@link #EXIT_FAILURES} or {@link #EXIT_USAGE}
+	 */
+	public static int run(String[] args, PrintStream out, PrintStream err) {
+		// Operations report why they failed in the current language
+		LanguageConfig.init();
+		AndieBatch batch = new AndieBatch(out, err);
+		try {
+			batch.parseArguments(args);
+		} catch (IllegalArgumentException | IOException e) {
+			err.println(e.getMessage());
+			err.println(USAGE);
+			return EXIT_USAGE;
+		}
+		try {
+			return batch.process();
+		} catch (IOException e) {
+			err.println("Couldn't list the input images: " + e.getMessage());
+			return EXIT_USAGE;
+		}
+	}
+
+	/**
+	 * Create a new AndieBatch
+	 * @param out Where each processed image and the summary are reported
+	 * @param err Where images that fail are reported
+	 */
+	private AndieBatch(PrintStream out, PrintStream err) {
+		this.out = out;
+		this.err = err;
+	}
+
+	/**
+	 * Read the arguments, and the macro they name
+	 * @param args The command line arguments
+	 * @throws IllegalArgumentException If the arguments are invalid
+	 * @throws IOException If the macro can't be read
+	 */
+	private void parseArguments(String[] args) throws IOException {
+		ArrayList<String> positional = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("--threads") && i + 1 < args.length) {
+				try {
+					threads = Integer.parseInt(args[++i]);
+				} catch (NumberFormatException e) {
+					throw new IllegalArgumentException("Invalid number of threads: " + args[i]);
+				}
+				if (threads < 1) throw new IllegalArgumentException("Invalid number of threads: " + args[i]);
+			} else if (args[i].equals("--format") && i + 1 < args.length) {
+				format = args[++i].toLowerCase(Locale.ROOT);
+				if (!Arrays.asList(ImageIO.getWriterFormatNames()).contains(format))
+					throw new IllegalArgumentException("Unsupported format: " + format);
+			} else {
+				positional.add(args[i]);
+			}
+		}
+		if (positional.size() != 3) throw new IllegalArgumentException("Expected a macro, an input and an output");
+
+		try {
+			macroString = Utils.readString(new File(positional.get(0)), Charset.defaultCharset());
+		} catch (IOException e) {
+			throw new IOException("Couldn't read the macro: " + positional.get(0), e);
+		}
+		if (EditableImage.stringToOps(macroString).isEmpty())
+			throw new IllegalArgumentException("Not a macro, or an empty one: " + positional.get(0));
+		parseInput(positional.get(1));
+		outputDirectory = Paths.get(positional.get(2));
+	}
+
+	/**
+	 * Work out which files an input argument means
+	 * @param input A directory, or a glob
+	 */
+	private void parseInput(String input) {
+		Path path = Paths.get(input);
+		if (Files.isDirectory(path)) {
+			inputBase = path;
+			inputMatcher = (Path relative) -> isReadableImage(relative);
+			inputDepth = 1;
+			return;
+		}
+
+		// The base is every name before the first one with a wildcard in it
+		Path base = path.getRoot();
+		int wildcard = 0;
+		while (wildcard < path.getNameCount() && !path.getName(wildcard).toString().matches(".*[*?\\[{].*")) {
+			base = base == null ? path.getName(wildcard) : base.resolve(path.getName(wildcard));
+			wildcard++;
+		}
+		if (wildcard == path.getNameCount()) throw new IllegalArgumentException("No such directory: " + input);
+		String pattern = path.subpath(wildcard, path.getNameCount()).toString();
+		PathMatcher globMatcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+		inputBase = base == null ? Paths.get("") : base;
+		inputMatcher = (Path relative) -> globMatcher.matches(relative) && isReadableImage(relative);
+		inputDepth = pattern.contains("**") ? Integer.MAX_VALUE : path.getNameCount() - wildcard;
+	}
+
+	/**
+	 * Does a file have the extension of an image that can be read?
+	 * @param file The file
+	 * @return True if ImageIO has a reader for its extension
+	 */
+	private static boolean isReadableImage(Path file) {
+		String extension = Utils.getFileExtension(file.getFileName().toString());
+		if (extension == null) return false;
+		for (String suffix : ImageIO.getReaderFileSuffixes()) {
+			if (suffix.equalsIgnoreCase(extension)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Process every input image
+	 * @return The exit code
+	 * @throws IOException If the input directory can't be listed
+	 */
+	private int process() throws IOException {
+		long start = System.nanoTime();
+		// Workers already use every processor, so each image's operations are drawn on one thread or a few
+		int parallelism = TileEngine.getParallelism();
+		TileEngine.setParallelism(Math.max(1, Runtime.getRuntime().availableProcessors() / threads));
+		ExecutorService workers = Executors.newFixedThreadPool(threads);
+		// At most this many images are queued or being processed, so the input is only listed as fast as it's processed
+		Semaphore inFlight = new Semaphore(threads * 2);
+
+		try (Stream<Path> files = Files.walk(inputBase, inputDepth)) {
+			Iterator<Path> iterator = files.filter(Files::isRegularFile).iterator();
+			while (iterator.hasNext()) {
+				Path file = iterator.next();
+				Path relative = inputBase.relativize(file);
+				if (!inputMatcher.matches(relative)) continue;
+				inFlight.acquireUninterruptibly();
+				workers.execute(() -> {
+					try {
+						processImage(file, relative);
+					} finally {
+						inFlight.release();
+					}
+				});
+			}
+		} finally {
+			workers.shutdown();
+			try {
+				workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			TileEngine.setParallelism(parallelism);
+		}
+
+		long millis = (System.nanoTime() - start) / 1000000;
+		int total = succeeded.get() + failed.get();
+		out.printf("Processed %d images (%d failed) in %d ms, %.1f images/s%n", total, failed.get(), millis,
+				millis == 0 ? 0.0 : total * 1000.0 / millis);
+		return failed.get() == 0 ? EXIT_OK : EXIT_FAILURES;
+	}
+
+	/**
+	 * Read an image, apply the macro to it, and write it to the output directory, reporting how long each step took
+	 * @param file The image file
+	 * @param relative The file's path relative to the input base, which it keeps in the output directory
+	 */
+	private void processImage(Path file, Path relative) {
+		long start = System.nanoTime();
+		try {
+			ImageLoader loader = new ImageLoader(file.toFile());
+			BufferedImage image;
+			try {
+				image = loader.read();
+			} finally {
+				loader.close();
+			}
+			long read = System.nanoTime();
+
+			// Each image gets its own copy of the operations, since they aren't meant to be shared between threads
+			image = Replayer.draw(EditableImage.stringToOps(macroString), image);
+			long applied = System.nanoTime();
+
+			String name = relative.toString();
+			String outputFormat = format != null ? format : Utils.getFileExtension(name).toLowerCase(Locale.ROOT);
+			Path output = outputDirectory.resolve(format != null ? Utils.withUpdatedFileExtension(name, format) : name);
+			Files.createDirectories(output.toAbsolutePath().getParent());
+			new ImageSaver(EditableImage.getExportImage(image, outputFormat), outputFormat, output.toFile()).write(null);
+			long written = System.nanoTime();
+
+			succeeded.incrementAndGet();
+			out.printf("OK    %s  read %d ms  apply %d ms  write %d ms%n", relative, (read - start) / 1000000,
+					(applied - read) / 1000000, (written - applied) / 1000000);
+		} catch (IOException | ImageOperationException | RuntimeException | OutOfMemoryError e) {
+			failed.incrementAndGet();
+			err.printf("FAIL  %s  %s%n", relative, e.getMessage() != null ? e.getMessage() : e.toString());
+		}
+	}
+}
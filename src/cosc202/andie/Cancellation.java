@@ -0,0 +1,77 @@
+package cosc202.andie;
+
+/**
+ * <p>
+ * A token for cancelling the drawing of an operation, e.g. when a preview is replaced by a newer one.
+ * </p>
+ *
+ * <p>
+ * Each thread may have a current token. Operations that take a while call {@link #check()} every so often (e.g. once per row),
+ * which stops them as soon as the current token is cancelled (or the thread is interrupted). The {@link TileEngine} gives its
+ * tiles the token of the thread that drew them, so every tile stops too, whether or not its operation checks.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @see cosc202.andie.models.PreviewScheduler
+ * @see TileEngine
+ *
+ * @author Jeb Nicholson
+ * @version 1.0
+ */
+public class Cancellation {
+
+	/** The token of each thread, if it has one */
+	private static final ThreadLocal<Cancellation> current = new ThreadLocal<Cancellation>();
+
+	private volatile boolean cancelled = false;
+
+	/**
+	 * Cancel whatever is being drawn with this token
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Has this token been cancelled?
+	 * @return True if it has been cancelled
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Get the current thread's token
+	 * @return The token, or null if the thread doesn't have one
+	 */
+	public static Cancellation current() {
+		return current.get();
+	}
+
+	/**
+	 * Set the current thread's token
+	 * @param token The token, or null for none
+	 * @return The thread's previous token, which should be set again once the thread is done with this one
+	 */
+	public static Cancellation setCurrent(Cancellation token) {
+		Cancellation previous = current.get();
+		if (token == null)
+			current.remove();
+		else
+			current.set(token);
+		return previous;
+	}
+
+	/**
+	 * Stop drawing if the current thread's token has been cancelled, or the thread has been interrupted
+	 * @throws RuntimeException With the message "Interrupted", if drawing should stop
+	 */
+	public static void check() {
+		Cancellation token = current.get();
+		if ((token != null && token.cancelled) || Thread.currentThread().isInterrupted())
+			throw new RuntimeException("Interrupted");
+	}
+}
@@ -0,0 +1,265 @@
+package cosc202.andie;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * <p>
+ * A mapping of each pixel's colour that depends only on the pixel itself, drawn in one pass over the image.
+ * </p>
+ *
+ * <p>
+ * A map is up to three stages, each of which may be left out: a 256 entry lookup table per channel, then a 3x3 matrix mixing
+ * the channels (rounded to the nearest integer and clamped to 0-255), then another lookup table per channel. Alpha is never
+ * changed. Adjustments like brightness and contrast are a lookup table, and greyscale conversion is a matrix.
+ * </p>
+ *
+ * <p>
+ * Maps can be combined with {@link #then(ColourMap)}, so that a run of {@link PointOperation}s is drawn in a single pass rather
+ * than one pass each. Since the tables and matrix are evaluated exactly as the operations would evaluate them, the combined map
+ * gives bit-identical results. Maps that can't be combined exactly (two matrices that each mix the channels differently) aren't.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @see PointOperation
+ * @see Replayer
+ *
+ * @author Jeb Nicholson
+ * @version 1.0
+ */
+public class ColourMap implements TileableOperation {
+
+	private static final long serialVersionUID = 6011585164304233547L;
+
+	/** The lookup table for each channel (red, green, blue) before the matrix, or null if there is none */
+	private int[][] before;
+	/** The matrix mixing the channels, by output channel, or null if there is none */
+	private double[][] matrix;
+	/** The lookup table for each channel after the matrix, or null if there is none */
+	private int[][] after;
+	/** Each weight of the matrix multiplied by every value the first tables can give it, by output channel and then input channel */
+	private double[][][] weighted;
+	/** Whether every row of the matrix is the same, so only one row needs to be mixed */
+	private boolean grey;
+
+	/**
+	 * Create a new ColourMap
+	 * @param before The lookup table for each channel before the matrix, or null
+	 * @param matrix The matrix mixing the channels, or null
+	 * @param after The lookup table for each channel after the matrix, or null
+	 */
+	private ColourMap(int[][] before, double[][] matrix, int[][] after) {
+		// Without a matrix, the two tables are one table
+		if (matrix == null && after != null) {
+			before = compose(before, after);
+			after = null;
+		}
+		this.before = before;
+		this.matrix = matrix;
+		this.after = after;
+		if (matrix != null) {
+			grey = isGreyMatrix();
+			weighted = new double[3][3][256];
+			for (int c = 0; c < 3; c++) {
+				for (int k = 0; k < 3; k++) {
+					for (int v = 0; v < 256; v++) {
+						weighted[c][k][v] = matrix[c][k] * (before == null ? v : before[k][v]);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Create a map that looks up each channel in its own table
+	 * @param red The new value of each red value, 256 entries between 0 and 255
+	 * @param green The new value of each green value
+	 * @param blue The new value of each blue value
+	 * @return The map
+	 */
+	public static ColourMap lookup(int[] red, int[] green, int[] blue) {
+		return new ColourMap(new int[][] { red.clone(), green.clone(), blue.clone() }, null, null);
+	}
+
+	/**
+	 * Create a map that looks up every channel in the same table
+	 * @param table The new value of each channel value, 256 entries between 0 and 255
+	 * @return The map
+	 */
+	public static ColourMap lookup(int[] table) {
+		return lookup(table, table, table);
+	}
+
+	/**
+	 * Create a map that mixes the channels. Each output channel is {@code round(m[c][0] * red + m[c][1] * green + m[c][2] * blue)},
+	 * summed in that order, and clamped to 0-255.
+	 * @param matrix The weights of each input channel, by output channel (red, green, blue)
+	 * @return The map
+	 */
+	public static ColourMap matrix(double[][] matrix) {
+		double[][] copy = new double[3][];
+		for (int c = 0; c < 3; c++) {
+			copy[c] = matrix[c].clone();
+		}
+		return new ColourMap(null, copy, null);
+	}
+
+	/**
+	 * <p>Combine this map with one drawn after it, into a single map.</p>
+	 * <p>
+	 * Lookup tables can always be combined. Two maps with matrices can only be combined if this map's matrix gives every channel
+	 * the same value (as greyscale conversion does), since everything after it is then a function of that one value.
+	 * </p>
+	 * @param next The map drawn after this one
+	 * @return A map that gives exactly the same result as drawing this map and then the next, or null if they can't be combined
+	 */
+	public ColourMap then(ColourMap next) {
+		if (next.matrix == null) {
+			if (matrix == null)
+				return new ColourMap(compose(before, next.before), null, null);
+			return new ColourMap(before, matrix, compose(after, next.before));
+		}
+		if (matrix == null)
+			return new ColourMap(compose(before, next.before), next.matrix, next.after);
+		if (!grey)
+			return null;
+
+		// Every channel leaving the matrix has the same value, so the rest of both maps is a table of that value
+		int[][] combined = new int[3][256];
+		for (int v = 0; v < 256; v++) {
+			int[] rgb = { v, v, v };
+			if (after != null) {
+				for (int c = 0; c < 3; c++) {
+					rgb[c] = after[c][v];
+				}
+			}
+			int mapped = next.map(0xFF000000 | (rgb[0] << 16) | (rgb[1] << 8) | rgb[2]);
+			combined[0][v] = (mapped >> 16) & 0xFF;
+			combined[1][v] = (mapped >> 8) & 0xFF;
+			combined[2][v] = mapped & 0xFF;
+		}
+		return new ColourMap(before, matrix, combined);
+	}
+
+	/**
+	 * Does the matrix give every channel the same value?
+	 * @return True if every row of the matrix is the same
+	 */
+	private boolean isGreyMatrix() {
+		for (int c = 1; c < 3; c++) {
+			for (int k = 0; k < 3; k++) {
+				if (Double.compare(matrix[c][k], matrix[0][k]) != 0) return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Combine two sets of lookup tables, either of which may be null
+	 * @param first The tables looked up first
+	 * @param second The tables looked up second
+	 * @return Tables giving the same result as looking up the first and then the second
+	 */
+	private static int[][] compose(int[][] first, int[][] second) {
+		if (first == null) return second;
+		if (second == null) return first;
+		int[][] combined = new int[3][256];
+		for (int c = 0; c < 3; c++) {
+			for (int v = 0; v < 256; v++) {
+				combined[c][v] = second[c][first[c][v]];
+			}
+		}
+		return combined;
+	}
+
+	/**
+	 * Map a single pixel
+	 * @param argb The packed ARGB value of the pixel
+	 * @return The mapped pixel
+	 */
+	public int map(int argb) {
+		int r = (argb >> 16) & 0xFF;
+		int g = (argb >> 8) & 0xFF;
+		int b = argb & 0xFF;
+		if (matrix == null)
+			return (argb & 0xFF000000) | (before[0][r] << 16) | (before[1][g] << 8) | before[2][b];
+
+		// The first tables are already folded into the weighted tables
+		int mixedR = mix(weighted[0], r, g, b);
+		int mixedG = grey ? mixedR : mix(weighted[1], r, g, b);
+		int mixedB = grey ? mixedR : mix(weighted[2], r, g, b);
+		if (after != null) {
+			mixedR = after[0][mixedR];
+			mixedG = after[1][mixedG];
+			mixedB = after[2][mixedB];
+		}
+		return (argb & 0xFF000000) | (mixedR << 16) | (mixedG << 8) | mixedB;
+	}
+
+	/**
+	 * Mix the channels with one row of the matrix. The products are summed in the same order as the matrix's weights were given.
+	 * @param row The weighted tables of each input channel
+	 * @param r The red value
+	 * @param g The green value
+	 * @param b The blue value
+	 * @return The rounded, clamped, result
+	 */
+	private static int mix(double[][] row, int r, int g, int b) {
+		int value = (int) Math.round(row[0][r] + row[1][g] + row[2][b]);
+		return Math.max(0, Math.min(255, value));
+	}
+
+	/**
+	 * <p>Apply the map to an image, in one pass.</p>
+	 * <p>
+	 * Like the operations it replaces, it draws in place if the image is already TYPE_INT_ARGB. Otherwise the result is a new
+	 * image of the same type.
+	 * </p>
+	 * @param input The image to map
+	 * @return The mapped image
+	 */
+	@Override
+	public BufferedImage draw(BufferedImage input) {
+		PixelBuffer buffer = PixelBuffer.of(input);
+		int[] pixels = buffer.getPixels();
+		if (matrix == null) {
+			// The common case, just the tables, without the per pixel branches of map()
+			int[] red = before[0], green = before[1], blue = before[2];
+			for (int i = 0; i < pixels.length; i++) {
+				int argb = pixels[i];
+				pixels[i] = (argb & 0xFF000000) | (red[(argb >> 16) & 0xFF] << 16) | (green[(argb >> 8) & 0xFF] << 8) | blue[argb & 0xFF];
+			}
+		} else {
+			for (int i = 0; i < pixels.length; i++) {
+				pixels[i] = map(pixels[i]);
+			}
+		}
+		return buffer.getImageLike(input);
+	}
+
+	/**
+	 * drawPreview, the same as {@link #draw(BufferedImage)}
+	 */
+	@Override
+	public BufferedImage drawPreview(BufferedImage input) {
+		return draw(input);
+	}
+
+	/**
+	 * getHalo, a colour map only reads the pixel itself
+	 */
+	@Override
+	public int getHalo() {
+		return 0;
+	}
+
+	/**
+	 * operationDescription, gets a description of the map
+	 */
+	@Override
+	public String operationDescription() {
+		return "Colour map";
+	}
+}
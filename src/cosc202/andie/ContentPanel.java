@@ -51,7 +51,9 @@ public class ContentPanel extends JPanel {
 		this.setLayout(new BorderLayout());
 		imageStatusListener = () -> {
 
-			if (model.hasImage()) {
+			// A preview of an image being opened is shown in the ImagePanel too
+			boolean showImage = model.hasImage() || model.isImageLoading();
+			if (showImage) {
 				if (!hasImage) {
 					removeAll();
 					this.add(new ImagePanel(controller,model), BorderLayout.CENTER);
@@ -61,7 +63,7 @@ public class ContentPanel extends JPanel {
 				this.add(new WelcomeBlank(), BorderLayout.CENTER);
 			}
 			this.revalidate();
-			hasImage = model.hasImage();
+			hasImage = showImage;
 		};
 
 		model.registerImageStatusListener(imageStatusListener);
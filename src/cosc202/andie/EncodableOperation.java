@@ -0,0 +1,65 @@
+package cosc202.andie;
+
+import java.awt.Color;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * <p>
+ * Interface for {@link ImageOperation}s that can be written to an operation log with an explicit encoding of their parameters.
+ * </p>
+ *
+ * <p>
+ * Each encodable operation writes its parameters with {@link #writeParameters(DataOutput)}, and has a constructor taking a
+ * {@link java.io.DataInput} that reads them back in the same order. The operation is registered with the
+ * {@link cosc202.andie.models.OpLog} under a tag that must never change, since saved logs refer to it.
+ * </p>
+ *
+ * <p>
+ * Unlike Java serialization, the encoding doesn't depend on the names or layout of the operation's fields, so they can be changed
+ * freely as long as the parameters are still written and read the same way. Operations that aren't encodable are still saved,
+ * as serialized objects.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @see cosc202.andie.models.OpLog
+ *
+ * @author Jeb Nicholson
+ * @version 1.0
+ */
+public interface EncodableOperation extends ImageOperation {
+
+	/**
+	 * Write the operation's parameters, in the order its {@link java.io.DataInput} constructor reads them
+	 * @param out The output to write to
+	 * @throws IOException If the parameters can't be written
+	 */
+	public void writeParameters(DataOutput out) throws IOException;
+
+	/**
+	 * Write a colour parameter, which may be null
+	 * @param out The output to write to
+	 * @param color The colour, or null
+	 * @throws IOException If the colour can't be written
+	 */
+	public static void writeColor(DataOutput out, Color color) throws IOException {
+		out.writeBoolean(color != null);
+		if (color != null)
+			out.writeInt(color.getRGB());
+	}
+
+	/**
+	 * Read a colour parameter written by {@link #writeColor(DataOutput, Color)}
+	 * @param in The input to read from
+	 * @return The colour, or null
+	 * @throws IOException If the colour can't be read
+	 */
+	public static Color readColor(DataInput in) throws IOException {
+		return in.readBoolean() ? new Color(in.readInt(), true) : null;
+	}
+
+}
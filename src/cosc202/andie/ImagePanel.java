@@ -8,10 +8,12 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.awt.image.BufferedImage;
+import java.util.List;
 
 import javax.swing.JLayeredPane;
 import javax.swing.JPanel;
 import javax.swing.SpringLayout;
+import javax.swing.SwingUtilities;
 
 import cosc202.andie.components.ImagePanView;
 import cosc202.andie.controllers.AndieController;
@@ -94,15 +96,28 @@ public class ImagePanel extends JLayeredPane {
 		});
 
 		workingImageListener = () -> {
-			if (model.hasImage()) 
-				ipv.updateImage(model.getWorkingImage());
+			if (model.hasImage() || model.isImageLoading())
+				ipv.updateImage(model.getWorkingImage(), model.getWorkingImageSize(), model.getWorkingImageChange());
 		};
 		workingImageListener.update();
 		model.registerWorkingImageListener(workingImageListener);
 
 		overlayImageListener = () -> {
 			overlayImage = model.overlay.getOverlay();
-			overlayPanel.repaint();
+			List<Rectangle> regions = model.overlay.getRepaintRegions();
+			if (regions == null)
+				overlayPanel.repaint();
+			else if (regions.size() == 1 || !SwingUtilities.isEventDispatchThread()) {
+				for (Rectangle region : regions) {
+					overlayPanel.repaint(region);
+				}
+			}
+			else {
+				// Swing would merge separate repaints into their bounding box (e.g. the whole inside of a selection), so paint each now
+				for (Rectangle region : regions) {
+					overlayPanel.paintImmediately(region);
+				}
+			}
 		};
 		overlayImageListener.update();
 		model.overlay.registerOverlayListener(overlayImageListener);
@@ -0,0 +1,447 @@
+package cosc202.andie;
+
+import java.awt.Dimension;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * <p>
+ * One of the 8 ways an image can be rotated by a multiple of 90 degrees and/or flipped, drawn in one pass over the image.
+ * </p>
+ *
+ * <p>
+ * Every orientation is described as an optional transpose (swapping rows and columns), followed by an optional horizontal
+ * flip, followed by an optional vertical flip. For example, rotating right is a transpose followed by a horizontal flip.
+ * Orientations can be combined with {@link #then(Orientation)}, so that any chain of rotations and flips (see
+ * {@link OrientationOperation}) is drawn as a single remapping of the pixels, or not drawn at all if it cancels out.
+ * </p>
+ *
+ * <p>
+ * Orientations that don't transpose keep each row together, so they are drawn by reversing and swapping rows (in place, for
+ * TYPE_INT_ARGB images, and otherwise into a new image of the same type, without converting the pixels). Those that do transpose (the 90 degree rotations) read the input's data buffer directly and write straight into an output image of
+ * the same type, so the only memory they need is the output itself. They move the pixels in square blocks of
+ * {@link #BLOCK_SIZE} pixels, so that both the rows being read and the columns being written stay in the cache, and large
+ * images are split into bands of blocks drawn in parallel by the {@link TileEngine}.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @see OrientationOperation
+ * @see Replayer
+ *
+ * @author Jeb Nicholson
+ * @version 1.0
+ */
+public class Orientation implements ImageOperation {
+
+	private static final long serialVersionUID = 2279143584860167017L;
+
+	/**
+	 * The width and height of the blocks a transposing orientation is drawn in, in pixels. A block of the input and the block of
+	 * the output it's moved to (4KB each, for int pixels) fit in even a small L1 cache together.
+	 */
+	public static final int BLOCK_SIZE = 32;
+	/** The fewest pixels a transposing orientation is worth drawing in parallel bands for */
+	public static final long PARALLEL_PIXELS = 1024 * 1024;
+
+	/** Leaves the image as it is */
+	public static final Orientation IDENTITY = new Orientation(false, false, false);
+	/** Flips the image horizontally */
+	public static final Orientation FLIP_HORIZONTAL = new Orientation(false, true, false);
+	/** Flips the image vertically */
+	public static final Orientation FLIP_VERTICAL = new Orientation(false, false, true);
+	/** Rotates the image by 180 degrees */
+	public static final Orientation ROTATE_180 = new Orientation(false, true, true);
+	/** Rotates the image 90 degrees clockwise */
+	public static final Orientation ROTATE_RIGHT = new Orientation(true, true, false);
+	/** Rotates the image 90 degrees anticlockwise */
+	public static final Orientation ROTATE_LEFT = new Orientation(true, false, true);
+
+	private boolean transpose;
+	private boolean flipHorizontal;
+	private boolean flipVertical;
+
+	/**
+	 * Create a new Orientation
+	 * @param transpose Whether the image's rows become its columns first
+	 * @param flipHorizontal Whether the image is then flipped horizontally
+	 * @param flipVertical Whether the image is then flipped vertically
+	 */
+	private Orientation(boolean transpose, boolean flipHorizontal, boolean flipVertical) {
+		this.transpose = transpose;
+		this.flipHorizontal = flipHorizontal;
+		this.flipVertical = flipVertical;
+	}
+
+	/**
+	 * Combine this orientation with one drawn after it
+	 * @param next The orientation drawn after this one
+	 * @return The orientation giving the same result as drawing this one and then the next
+	 */
+	public Orientation then(Orientation next) {
+		// Written as 2x2 matrices of -1, 0 and 1 acting on pixel coordinates (about the centre of the image), an orientation is
+		// diag(horizontal sign, vertical sign) * (transpose ? swap : identity), and combining them multiplies the matrices
+		int[][] combined = multiply(next.matrix(), matrix());
+		boolean combinedTranspose = combined[0][0] == 0;
+		int horizontalSign = combined[0][0] + combined[0][1];
+		int verticalSign = combined[1][0] + combined[1][1];
+		return new Orientation(combinedTranspose, horizontalSign < 0, verticalSign < 0);
+	}
+
+	/**
+	 * Get the orientation as a matrix acting on pixel coordinates
+	 * @return The matrix
+	 */
+	private int[][] matrix() {
+		int horizontalSign = flipHorizontal ? -1 : 1;
+		int verticalSign = flipVertical ? -1 : 1;
+		if (transpose)
+			return new int[][] { { 0, horizontalSign }, { verticalSign, 0 } };
+		return new int[][] { { horizontalSign, 0 }, { 0, verticalSign } };
+	}
+
+	/**
+	 * Multiply two 2x2 matrices
+	 * @param a The left matrix
+	 * @param b The right matrix
+	 * @return a * b
+	 */
+	private static int[][] multiply(int[][] a, int[][] b) {
+		int[][] product = new int[2][2];
+		for (int row = 0; row < 2; row++) {
+			for (int column = 0; column < 2; column++) {
+				product[row][column] = a[row][0] * b[0][column] + a[row][1] * b[1][column];
+			}
+		}
+		return product;
+	}
+
+	/**
+	 * Does the orientation leave the image as it is?
+	 * @return True if the orientation neither transposes nor flips
+	 */
+	public boolean isIdentity() {
+		return !transpose && !flipHorizontal && !flipVertical;
+	}
+
+	/**
+	 * Does the orientation swap the image's width and height?
+	 * @return True if the orientation transposes the image
+	 */
+	public boolean isTranspose() {
+		return transpose;
+	}
+
+	/**
+	 * Get the orientation that undoes this one
+	 * @return The inverse orientation
+	 */
+	public Orientation inverse() {
+		// Transposing turns a horizontal flip into a vertical one, so undoing the flips and then the transpose swaps them
+		if (transpose)
+			return new Orientation(true, flipVertical, flipHorizontal);
+		return this;
+	}
+
+	/**
+	 * Get the size of an image after it's drawn with this orientation
+	 * @param size The size of the image
+	 * @return The reoriented size
+	 */
+	public Dimension map(Dimension size) {
+		return transpose ? new Dimension(size.height, size.width) : new Dimension(size);
+	}
+
+	/**
+	 * Get where a region of an image ends up after the image is drawn with this orientation
+	 * @param region The region, inside the image
+	 * @param size The size of the image
+	 * @return The region of the reoriented image holding the same pixels
+	 */
+	public Rectangle map(Rectangle region, Dimension size) {
+		Rectangle mapped = transpose ? new Rectangle(region.y, region.x, region.height, region.width) : new Rectangle(region);
+		Dimension mappedSize = map(size);
+		if (flipHorizontal)
+			mapped.x = mappedSize.width - mapped.x - mapped.width;
+		if (flipVertical)
+			mapped.y = mappedSize.height - mapped.y - mapped.height;
+		return mapped;
+	}
+
+	/**
+	 * Draw the orientation on an image, in one pass
+	 * <p>If the orientation doesn't transpose the image, and it's already a plain TYPE_INT_ARGB image, it's drawn in place.</p>
+	 * <p>Otherwise, the output is a new image of the same type as the input (or TYPE_INT_ARGB, for custom types).</p>
+	 * @param input The image to draw on
+	 * @return The reoriented image
+	 */
+	@Override
+	public BufferedImage draw(BufferedImage input) {
+		if (isIdentity()) return input;
+		if (!transpose) {
+			if (PixelBuffer.isPlainArgb(input) || input.getType() == BufferedImage.TYPE_CUSTOM) {
+				PixelBuffer buffer = PixelBuffer.of(input);
+				flipInPlace(buffer);
+				return buffer.getImage();
+			}
+			return flip(input);
+		}
+
+		int stride = getPixelStride(input);
+		if (stride == 0) {
+			// The pixels can't be moved as they are, so convert them first
+			input = PixelBuffer.of(input).getImage();
+			stride = 1;
+		}
+		int width = input.getWidth();
+		int height = input.getHeight();
+		WritableRaster target = input.getRaster().createCompatibleWritableRaster(height, width);
+		Object sourceData = getData(input.getRaster().getDataBuffer());
+		Object targetData = getData(target.getDataBuffer());
+
+		// Each band is a row of blocks of the input, which becomes a column of blocks of the output
+		int blockRows = (height + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		int bands = (long) width * height < PARALLEL_PIXELS ? 1 : Math.min(blockRows, 4 * TileEngine.getParallelism());
+		int blockRowsPerBand = (blockRows + bands - 1) / bands;
+		int pixelStride = stride;
+		TileEngine.forEachBand(bands, (int band) -> {
+			int startY = Math.min(height, band * blockRowsPerBand * BLOCK_SIZE);
+			int endY = Math.min(height, startY + blockRowsPerBand * BLOCK_SIZE);
+			if (sourceData instanceof int[])
+				transpose((int[]) sourceData, (int[]) targetData, width, height, startY, endY);
+			else
+				transpose((byte[]) sourceData, (byte[]) targetData, pixelStride, width, height, startY, endY);
+		});
+		return new BufferedImage(input.getColorModel(), target, input.isAlphaPremultiplied(), null);
+	}
+
+	/**
+	 * <p>Get the number of array elements each pixel of an image takes, if its pixels can be moved without converting them.</p>
+	 * <p>
+	 * This is the case if the image's data buffer holds nothing but its pixels, row by row, with each pixel either packed into one
+	 * int (e.g. TYPE_INT_RGB and TYPE_INT_ARGB) or interleaved in consecutive bytes (e.g. TYPE_3BYTE_BGR and TYPE_4BYTE_ABGR).
+	 * </p>
+	 * @param image The image
+	 * @return The number of ints or bytes per pixel, or 0 if the pixels can't be moved as they are
+	 */
+	private static int getPixelStride(BufferedImage image) {
+		WritableRaster raster = image.getRaster();
+		DataBuffer buffer = raster.getDataBuffer();
+		// Custom types can't be recreated by type (e.g. by Crop), so don't pass them on
+		if (image.getType() == BufferedImage.TYPE_CUSTOM) return 0;
+		if (raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0) return 0;
+		if (buffer.getNumBanks() != 1 || buffer.getOffset() != 0) return 0;
+
+		SampleModel sampleModel = raster.getSampleModel();
+		if (sampleModel instanceof SinglePixelPackedSampleModel && buffer instanceof DataBufferInt) {
+			return ((SinglePixelPackedSampleModel) sampleModel).getScanlineStride() == image.getWidth() ? 1 : 0;
+		}
+		if (sampleModel instanceof PixelInterleavedSampleModel && buffer instanceof DataBufferByte) {
+			PixelInterleavedSampleModel interleaved = (PixelInterleavedSampleModel) sampleModel;
+			int stride = interleaved.getPixelStride();
+			if (interleaved.getScanlineStride() != image.getWidth() * stride) return 0;
+			for (int offset : interleaved.getBandOffsets()) {
+				if (offset >= stride) return 0;
+			}
+			return stride;
+		}
+		return 0;
+	}
+
+	/**
+	 * Get the array backing a data buffer
+	 * @param buffer A {@link DataBufferInt} or {@link DataBufferByte}
+	 * @return The int[] or byte[]
+	 */
+	private static Object getData(DataBuffer buffer) {
+		if (buffer instanceof DataBufferInt) return ((DataBufferInt) buffer).getData();
+		return ((DataBufferByte) buffer).getData();
+	}
+
+	/**
+	 * Move some rows of packed int pixels to their transposed (and flipped) places, a block at a time
+	 * @param source The input's pixels
+	 * @param target The output's pixels
+	 * @param width The width of the input
+	 * @param height The height of the input
+	 * @param startY The first row of the input to move
+	 * @param endY The row after the last row of the input to move
+	 */
+	private void transpose(int[] source, int[] target, int width, int height, int startY, int endY) {
+		// The input's row y becomes the output's column y (or height - 1 - y), and its column x the output's row x (or width - 1 - x)
+		for (int blockY = startY; blockY < endY; blockY += BLOCK_SIZE) {
+			int blockEndY = Math.min(blockY + BLOCK_SIZE, endY);
+			for (int blockX = 0; blockX < width; blockX += BLOCK_SIZE) {
+				int blockEndX = Math.min(blockX + BLOCK_SIZE, width);
+				for (int y = blockY; y < blockEndY; y++) {
+					int column = flipHorizontal ? height - 1 - y : y;
+					int sourceRow = y * width;
+					for (int x = blockX; x < blockEndX; x++) {
+						int row = flipVertical ? width - 1 - x : x;
+						target[row * height + column] = source[sourceRow + x];
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Move some rows of interleaved byte pixels to their transposed (and flipped) places, a block at a time
+	 * @param source The input's pixels
+	 * @param target The output's pixels
+	 * @param stride The number of bytes per pixel
+	 * @param width The width of the input
+	 * @param height The height of the input
+	 * @param startY The first row of the input to move
+	 * @param endY The row after the last row of the input to move
+	 */
+	private void transpose(byte[] source, byte[] target, int stride, int width, int height, int startY, int endY) {
+		for (int blockY = startY; blockY < endY; blockY += BLOCK_SIZE) {
+			int blockEndY = Math.min(blockY + BLOCK_SIZE, endY);
+			for (int blockX = 0; blockX < width; blockX += BLOCK_SIZE) {
+				int blockEndX = Math.min(blockX + BLOCK_SIZE, width);
+				for (int y = blockY; y < blockEndY; y++) {
+					int column = flipHorizontal ? height - 1 - y : y;
+					int sourceRow = y * width;
+					for (int x = blockX; x < blockEndX; x++) {
+						int row = flipVertical ? width - 1 - x : x;
+						System.arraycopy(source, (sourceRow + x) * stride, target, (row * height + column) * stride, stride);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Flip an image into a new image of the same type, horizontally and/or vertically, moving its pixels without converting them
+	 * @param input The image to flip
+	 * @return The flipped image
+	 */
+	private BufferedImage flip(BufferedImage input) {
+		int width = input.getWidth();
+		int height = input.getHeight();
+		WritableRaster source = input.getRaster();
+		WritableRaster target = source.createCompatibleWritableRaster(width, height);
+		int stride = getPixelStride(input);
+		if (stride != 0) {
+			flip(getData(source.getDataBuffer()), getData(target.getDataBuffer()), stride, width, height);
+		} else {
+			// Any other layout, a row (or a pixel) at a time through the raster
+			Object row = null, pixel = null;
+			for (int y = 0; y < height; y++) {
+				int targetY = flipVertical ? height - 1 - y : y;
+				if (!flipHorizontal) {
+					row = source.getDataElements(0, y, width, 1, row);
+					target.setDataElements(0, targetY, width, 1, row);
+					continue;
+				}
+				for (int x = 0; x < width; x++) {
+					pixel = source.getDataElements(x, y, pixel);
+					target.setDataElements(width - 1 - x, targetY, pixel);
+				}
+			}
+		}
+		return new BufferedImage(input.getColorModel(), target, input.isAlphaPremultiplied(), null);
+	}
+
+	/**
+	 * Copy the rows of packed int or interleaved byte pixels to their flipped places
+	 * @param source The input's pixels, an int[] or byte[]
+	 * @param target The output's pixels, of the same type
+	 * @param stride The number of ints or bytes per pixel
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 */
+	private void flip(Object source, Object target, int stride, int width, int height) {
+		int rowLength = width * stride;
+		for (int y = 0; y < height; y++) {
+			int sourceRow = y * rowLength;
+			int targetRow = (flipVertical ? height - 1 - y : y) * rowLength;
+			if (!flipHorizontal) {
+				System.arraycopy(source, sourceRow, target, targetRow, rowLength);
+			} else if (source instanceof int[]) {
+				int[] sourceInts = (int[]) source, targetInts = (int[]) target;
+				for (int x = 0; x < width; x++) {
+					targetInts[targetRow + width - 1 - x] = sourceInts[sourceRow + x];
+				}
+			} else {
+				byte[] sourceBytes = (byte[]) source, targetBytes = (byte[]) target;
+				for (int x = 0; x < width; x++) {
+					int sourcePixel = sourceRow + x * stride, targetPixel = targetRow + (width - 1 - x) * stride;
+					for (int b = 0; b < stride; b++) {
+						targetBytes[targetPixel + b] = sourceBytes[sourcePixel + b];
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Flip a buffer in place, horizontally and/or vertically
+	 * @param buffer The buffer to flip
+	 */
+	private void flipInPlace(PixelBuffer buffer) {
+		int[] pixels = buffer.getPixels();
+		int width = buffer.getWidth();
+		if (flipHorizontal && flipVertical) {
+			// Both flips together reverse the order of all the pixels
+			for (int first = 0, last = pixels.length - 1; first < last; first++, last--) {
+				int pixel = pixels[first];
+				pixels[first] = pixels[last];
+				pixels[last] = pixel;
+			}
+		} else if (flipHorizontal) {
+			for (int row = 0; row < pixels.length; row += width) {
+				for (int left = row, right = row + width - 1; left < right; left++, right--) {
+					int pixel = pixels[left];
+					pixels[left] = pixels[right];
+					pixels[right] = pixel;
+				}
+			}
+		} else if (flipVertical) {
+			int[] row = new int[width];
+			for (int top = 0, bottom = buffer.getHeight() - 1; top < bottom; top++, bottom--) {
+				System.arraycopy(pixels, top * width, row, 0, width);
+				System.arraycopy(pixels, bottom * width, pixels, top * width, width);
+				System.arraycopy(row, 0, pixels, bottom * width, width);
+			}
+		}
+	}
+
+	/**
+	 * drawPreview, the same as {@link #draw(BufferedImage)}
+	 */
+	@Override
+	public BufferedImage drawPreview(BufferedImage input) {
+		return draw(input);
+	}
+
+	/**
+	 * operationDescription, gets a description of the orientation
+	 */
+	@Override
+	public String operationDescription() {
+		return "Orientation";
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof Orientation)) return false;
+		Orientation orientation = (Orientation) other;
+		return transpose == orientation.transpose && flipHorizontal == orientation.flipHorizontal && flipVertical == orientation.flipVertical;
+	}
+
+	@Override
+	public int hashCode() {
+		return (transpose ? 4 : 0) | (flipHorizontal ? 2 : 0) | (flipVertical ? 1 : 0);
+	}
+}
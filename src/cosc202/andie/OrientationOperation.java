@@ -0,0 +1,30 @@
+package cosc202.andie;
+
+/**
+ * <p>
+ * Interface for {@link ImageOperation}s that rotate an image by a multiple of 90 degrees and/or flip it.
+ * </p>
+ *
+ * <p>
+ * An orientation operation describes what it does as an {@link Orientation}, which it should also use to draw itself.
+ * When several orientation operations are replayed in a row, the {@link Replayer} combines them into one orientation, so that
+ * e.g. rotating left and then flipping vertically moves every pixel once, and rotating right and then left doesn't move any.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @see Orientation
+ * @see Replayer
+ *
+ * @author Jeb Nicholson
+ * @version 1.0
+ */
+public interface OrientationOperation extends ImageOperation {
+	/**
+	 * Get the orientation this operation gives the image
+	 * @return The orientation, which gives exactly the same result as {@link #draw(java.awt.image.BufferedImage)}
+	 */
+	public Orientation getOrientation();
+}
@@ -0,0 +1,238 @@
+package cosc202.andie;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * <p>
+ * Direct access to an image's pixels as packed ARGB ints.
+ * </p>
+ *
+ * <p>
+ * {@link BufferedImage#getRGB(int, int)} and {@link BufferedImage#setRGB(int, int, int)} convert every pixel through the
+ * image's colour model, which makes them very slow in the per-pixel loops of {@link ImageOperation}s.
+ * A PixelBuffer converts an image to (non-premultiplied) {@link BufferedImage#TYPE_INT_ARGB} once, and then exposes the
+ * backing {@code int[]} so operations can read and write pixels directly.
+ * </p>
+ *
+ * <p>
+ * Pixels are stored row by row, so the pixel at (x, y) is at index {@code y * width + x}.
+ * If the image was already a plain TYPE_INT_ARGB image, the buffer shares its pixels, so writing to the buffer changes the image.
+ * Otherwise the buffer is a converted copy, and {@link #getImage()} returns a new image ({@link #getImageLike(BufferedImage)}
+ * converts it back to the type of the original).
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @see ImageOperation
+ *
+ * @author Jeb Nicholson
+ * @version 1.0
+ */
+public class PixelBuffer {
+
+	private BufferedImage image;
+	private int[] pixels;
+	private int width;
+	private int height;
+
+	/**
+	 * Create a new, fully transparent, PixelBuffer
+	 * @param width The width of the buffer
+	 * @param height The height of the buffer
+	 */
+	public PixelBuffer(int width, int height) {
+		this(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB));
+	}
+
+	/**
+	 * Wrap a TYPE_INT_ARGB image whose raster starts at the beginning of its data buffer
+	 * @param image The image to wrap
+	 */
+	private PixelBuffer(BufferedImage image) {
+		this.image = image;
+		this.width = image.getWidth();
+		this.height = image.getHeight();
+		this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+	}
+
+	/**
+	 * <p>Get a PixelBuffer for an image.</p>
+	 * <p>If the image is a plain TYPE_INT_ARGB image, the buffer shares its pixels. Otherwise it is converted to a new buffer.</p>
+	 * @param image The image
+	 * @return A PixelBuffer for the image
+	 */
+	public static PixelBuffer of(BufferedImage image) {
+		if (isPlainArgb(image))
+			return new PixelBuffer(image);
+		return copyOf(image);
+	}
+
+	/**
+	 * Get a new PixelBuffer holding a copy of an image's pixels
+	 * @param image The image to copy
+	 * @return A new PixelBuffer
+	 */
+	public static PixelBuffer copyOf(BufferedImage image) {
+		PixelBuffer buffer = new PixelBuffer(image.getWidth(), image.getHeight());
+		if (isPlainArgb(image)) {
+			int[] source = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+			System.arraycopy(source, 0, buffer.pixels, 0, buffer.pixels.length);
+		} else {
+			// One bulk conversion through the colour model, rather than one per pixel access
+			image.getRGB(0, 0, buffer.width, buffer.height, buffer.pixels, 0, buffer.width);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Can an image's data buffer be used directly as a PixelBuffer?
+	 * @param image The image to check
+	 * @return True if the image is TYPE_INT_ARGB, and its pixels fill its data buffer row by row (i.e. it isn't a subimage)
+	 */
+	public static boolean isPlainArgb(BufferedImage image) {
+		if (image.getType() != BufferedImage.TYPE_INT_ARGB) return false;
+		WritableRaster raster = image.getRaster();
+		if (!(raster.getSampleModel() instanceof SinglePixelPackedSampleModel)) return false;
+		SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) raster.getSampleModel();
+		return raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0
+				&& raster.getDataBuffer().getOffset() == 0 && sampleModel.getScanlineStride() == image.getWidth();
+	}
+
+	/**
+	 * Get the width of the buffer
+	 * @return The width in pixels
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * Get the height of the buffer
+	 * @return The height in pixels
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Get the backing array of packed ARGB pixels, row by row
+	 * @return The pixels
+	 */
+	public int[] getPixels() {
+		return pixels;
+	}
+
+	/**
+	 * Get the TYPE_INT_ARGB image backed by this buffer
+	 * @return The image
+	 */
+	public BufferedImage getImage() {
+		return image;
+	}
+
+	/**
+	 * <p>Get the buffer's pixels as an image of the same kind as another image (e.g. the image an operation was drawn on).</p>
+	 * <p>
+	 * If the other image is TYPE_INT_ARGB, this is the image backed by this buffer. Otherwise the pixels are converted to a
+	 * new image with the other image's colour model, so that operations don't change the type of the images they draw on.
+	 * </p>
+	 * @param like The image whose colour model to use
+	 * @return The image
+	 */
+	public BufferedImage getImageLike(BufferedImage like) {
+		if (like.getType() == BufferedImage.TYPE_INT_ARGB) return image;
+		// The raster (rather than the colour model) knows the layout of the samples, e.g. that TYPE_3BYTE_BGR is stored BGR
+		WritableRaster raster = like.getRaster().createCompatibleWritableRaster(width, height);
+		BufferedImage result = new BufferedImage(like.getColorModel(), raster, like.isAlphaPremultiplied(), null);
+		// One bulk conversion through the colour model, rather than one per pixel
+		result.setRGB(0, 0, width, height, pixels, 0, width);
+		return result;
+	}
+
+	/**
+	 * Get a pixel
+	 * @param x The x coordinate
+	 * @param y The y coordinate
+	 * @return The packed ARGB value of the pixel
+	 */
+	public int get(int x, int y) {
+		return pixels[y * width + x];
+	}
+
+	/**
+	 * Set a pixel
+	 * @param x The x coordinate
+	 * @param y The y coordinate
+	 * @param argb The packed ARGB value of the pixel
+	 */
+	public void set(int x, int y, int argb) {
+		pixels[y * width + x] = argb;
+	}
+
+	/**
+	 * <p>Copy a rectangle of pixels into a new PixelBuffer.</p>
+	 * <p>The rectangle may extend beyond the edges of this buffer, in which case those pixels take the value of the nearest edge pixel.</p>
+	 * @param x The x coordinate of the top left of the rectangle
+	 * @param y The y coordinate of the top left of the rectangle
+	 * @param regionWidth The width of the rectangle
+	 * @param regionHeight The height of the rectangle
+	 * @return A new PixelBuffer holding the rectangle
+	 */
+	public PixelBuffer region(int x, int y, int regionWidth, int regionHeight) {
+		PixelBuffer output = new PixelBuffer(regionWidth, regionHeight);
+		int[] regionPixels = output.pixels;
+
+		// The columns of the rectangle that lie inside this buffer
+		int insideStart = Math.min(Math.max(x, 0), width);
+		int insideEnd = Math.max(Math.min(x + regionWidth, width), insideStart);
+		int leftColumns = Math.min(insideStart - x, regionWidth);
+		for (int row = 0; row < regionHeight; row++) {
+			int sourceRow = Math.min(Math.max(y + row, 0), height - 1) * width;
+			int start = row * regionWidth;
+			if (insideEnd > insideStart)
+				System.arraycopy(pixels, sourceRow + insideStart, regionPixels, start + insideStart - x, insideEnd - insideStart);
+			for (int column = 0; column < leftColumns; column++) {
+				regionPixels[start + column] = pixels[sourceRow];
+			}
+			for (int column = Math.max(insideEnd - x, Math.max(leftColumns, 0)); column < regionWidth; column++) {
+				regionPixels[start + column] = pixels[sourceRow + Math.min(Math.max(x + column, 0), width - 1)];
+			}
+		}
+		return output;
+	}
+
+	/**
+	 * Creates a new PixelBuffer with each edge expanded by r pixels, taking the color values from the nearest pixel.
+	 * @param r The number of pixels to expand each edge by.
+	 * @return A new PixelBuffer with the expanded edges.
+	 */
+	public PixelBuffer expandEdges(int r) {
+		int expandedWidth = width + 2 * r;
+		PixelBuffer output = new PixelBuffer(expandedWidth, height + 2 * r);
+		int[] expanded = output.pixels;
+
+		for (int y = 0; y < height; y++) {
+			int row = (y + r) * expandedWidth;
+			System.arraycopy(pixels, y * width, expanded, row + r, width);
+			// Left and right edges
+			int left = pixels[y * width];
+			int right = pixels[y * width + width - 1];
+			for (int x = 0; x < r; x++) {
+				expanded[row + x] = left;
+				expanded[row + r + width + x] = right;
+			}
+		}
+		// Top and bottom edges (including the corners) are copies of the first and last expanded rows
+		for (int y = 0; y < r; y++) {
+			System.arraycopy(expanded, r * expandedWidth, expanded, y * expandedWidth, expandedWidth);
+			System.arraycopy(expanded, (r + height - 1) * expandedWidth, expanded, (r + height + y) * expandedWidth, expandedWidth);
+		}
+		return output;
+	}
+
+}
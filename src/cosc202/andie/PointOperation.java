@@ -0,0 +1,30 @@
+package cosc202.andie;
+
+/**
+ * <p>
+ * Interface for {@link ImageOperation}s that change each pixel's colour based only on that pixel's colour.
+ * </p>
+ *
+ * <p>
+ * A point operation describes what it does as a {@link ColourMap} (e.g. a lookup table for each channel), which it should
+ * also use to draw itself (so its {@link #getHalo()} is 0). When several point operations are replayed in a row, the
+ * {@link Replayer} combines their maps so that the image is only read and written once, rather than once per operation.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @see ColourMap
+ * @see Replayer
+ *
+ * @author Jeb Nicholson
+ * @version 1.0
+ */
+public interface PointOperation extends TileableOperation {
+	/**
+	 * Get the mapping of colours this operation applies
+	 * @return The colour map, which gives exactly the same result as {@link #draw(java.awt.image.BufferedImage)}
+	 */
+	public ColourMap getColourMap();
+}
@@ -0,0 +1,34 @@
+package cosc202.andie;
+
+import java.awt.Shape;
+
+/**
+ * <p>
+ * Interface for {@link ImageOperation}s that only change a small part of an image.
+ * </p>
+ *
+ * <p>
+ * Operations like drawing a shape draw into the input image in place, and leave every pixel outside of their
+ * affected area untouched. Knowing that area allows the operation to be undone by restoring just those pixels,
+ * rather than rebuilding the whole image.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @see cosc202.andie.models.TileUndoStore
+ *
+ * @author Jeb Nicholson
+ * @version 1.0
+ */
+public interface RegionOperation extends ImageOperation {
+
+	/**
+	 * Get the area of the image that this operation may change.
+	 * <p> The area should be conservative (including any antialiasing), since pixels outside of it will not be restored on undo. </p>
+	 * @return The affected area, in image coordinates
+	 */
+	public Shape getAffectedArea();
+
+}
@@ -0,0 +1,353 @@
+package cosc202.andie;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.List;
+
+import cosc202.andie.ImageOperation.ImageOperationException;
+import cosc202.andie.operations.transform.Crop;
+
+/**
+ * <p>
+ * Replays a sequence of {@link ImageOperation}s on an image, combining operations that can be drawn together.
+ * </p>
+ *
+ * <p>
+ * Replaying (e.g. rebuilding an image after an undo, or applying a macro) would otherwise draw every operation in turn, each
+ * reading and writing the whole image. Instead, the operations are first planned into {@link Step}s. A run of
+ * {@link PointOperation}s becomes a single {@link ColourMap}, and a run of {@link OrientationOperation}s (rotations and flips)
+ * a single {@link Orientation}, each drawn in one pass. Every other operation is a step of its own.
+ * Each step is drawn by the {@link TileEngine}, so the result is identical to drawing the operations one at a time (a run of
+ * point operations on an image that can't hold every colour exactly is drawn one operation at a time, to keep it so).
+ * </p>
+ *
+ * <p>
+ * Tileable operations and orientations followed by a {@link Crop} become a single step that only draws them on the part of the
+ * image the crop keeps (plus whatever halo the operations need around it), so a pipeline that crops away most of the image
+ * gets cheaper in proportion.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @see cosc202.andie.models.EditableImage
+ * @see cosc202.andie.models.MacrosModel
+ *
+ * @author Jeb Nicholson
+ * @version 1.0
+ */
+public class Replayer {
+
+	/**
+	 * Plan how to draw a sequence of operations
+	 * @param operations The operations, in the order they're drawn
+	 * @return The steps to draw instead, which together cover every operation in order
+	 */
+	public static List<Step> plan(List<? extends ImageOperation> operations) {
+		ArrayList<Step> steps = new ArrayList<Step>();
+		int start = 0;
+		for (int i = 0; i < operations.size(); i++) {
+			if (!(operations.get(i) instanceof Crop)) continue;
+			// The operations just before a crop only need to be drawn where the crop will keep them
+			int regionStart = i;
+			while (regionStart > start && isRegional(operations.get(regionStart - 1))) {
+				regionStart--;
+			}
+			if (regionStart == i) continue;
+			planRuns(steps, operations, start, regionStart);
+			List<ImageOperation> region = new ArrayList<ImageOperation>(operations.subList(regionStart, i));
+			steps.add(new Step(new CroppedRegion(region, (Crop) operations.get(i)), regionStart, i + 1));
+			start = i + 1;
+		}
+		planRuns(steps, operations, start, operations.size());
+		return steps;
+	}
+
+	/**
+	 * Can an operation be drawn on just the region of the image that's needed from it?
+	 * @param operation The operation
+	 * @return True if the operation is a {@link TileableOperation} (which needs its halo around the region) or an
+	 * {@link OrientationOperation} (which moves the region)
+	 */
+	private static boolean isRegional(ImageOperation operation) {
+		return operation instanceof TileableOperation || operation instanceof OrientationOperation;
+	}
+
+	/**
+	 * Plan some operations, combining runs of them that can be drawn together
+	 * @param steps The plan to add the steps to
+	 * @param operations The operations being planned
+	 * @param from The index of the first operation to plan
+	 * @param to The index after the last operation to plan
+	 */
+	private static void planRuns(List<Step> steps, List<? extends ImageOperation> operations, int from, int to) {
+		int runStart = from;
+		ImageOperation run = null;
+		for (int i = from; i < to; i++) {
+			ImageOperation operation = operations.get(i);
+			ImageOperation combined = run == null ? null : combine(run, operation);
+			if (combined != null) {
+				run = combined;
+				continue;
+			}
+			addRun(steps, operations, runStart, i, run);
+			runStart = i;
+			run = startRun(operation);
+			if (run == null) {
+				steps.add(new Step(operation, i, i + 1));
+				runStart = i + 1;
+			}
+		}
+		addRun(steps, operations, runStart, to, run);
+	}
+
+	/**
+	 * Start a run of operations that can be combined
+	 * @param operation The first operation of the run
+	 * @return The operation's {@link ColourMap} or {@link Orientation}, or null if it can't be combined with anything
+	 */
+	private static ImageOperation startRun(ImageOperation operation) {
+		if (operation instanceof PointOperation)
+			return ((PointOperation) operation).getColourMap();
+		if (operation instanceof OrientationOperation)
+			return ((OrientationOperation) operation).getOrientation();
+		return null;
+	}
+
+	/**
+	 * Add an operation to the end of a run
+	 * @param run The run's combined {@link ColourMap} or {@link Orientation}
+	 * @param operation The operation
+	 * @return The run's new combined operation, or null if the operation can't be added to the run
+	 */
+	private static ImageOperation combine(ImageOperation run, ImageOperation operation) {
+		if (run instanceof ColourMap && operation instanceof PointOperation)
+			return ((ColourMap) run).then(((PointOperation) operation).getColourMap());
+		if (run instanceof Orientation && operation instanceof OrientationOperation)
+			return ((Orientation) run).then(((OrientationOperation) operation).getOrientation());
+		return null;
+	}
+
+	/**
+	 * Add a run of operations to a plan
+	 * @param steps The plan
+	 * @param operations The operations being planned
+	 * @param start The index of the first operation in the run
+	 * @param end The index after the last operation in the run
+	 * @param run The combined operation of the run, or null if there is no run
+	 */
+	private static void addRun(List<Step> steps, List<? extends ImageOperation> operations, int start, int end, ImageOperation run) {
+		if (run == null || start == end) return;
+		// A run of one is drawn as itself, exactly as if it weren't replayed
+		steps.add(new Step(end - start == 1 ? operations.get(start) : run, start, end));
+	}
+
+	/**
+	 * Draw a sequence of operations on an image
+	 * @param operations The operations, in the order they're drawn
+	 * @param input The image to draw them on, which may be drawn on in place
+	 * @return The result of drawing every operation
+	 * @throws ImageOperationException If an operation fails
+	 */
+	public static BufferedImage draw(List<? extends ImageOperation> operations, BufferedImage input) throws ImageOperationException {
+		BufferedImage image = input;
+		for (Step step : plan(operations)) {
+			image = drawStep(step, operations, image);
+		}
+		return image;
+	}
+
+	/**
+	 * <p>Draw one step of a plan.</p>
+	 * <p>
+	 * Each operation stores its result in the type of its input, so a combined {@link ColourMap} only gives the same result as
+	 * its operations if that type holds every colour the map gives exactly. Otherwise (e.g. a greyscale or premultiplied image)
+	 * the step's operations are drawn one at a time.
+	 * </p>
+	 * @param step The step
+	 * @param operations The operations the step was planned from
+	 * @param image The image to draw the step on, which may be drawn on in place
+	 * @return The result of drawing the step
+	 * @throws ImageOperationException If an operation fails
+	 */
+	private static BufferedImage drawStep(Step step, List<? extends ImageOperation> operations, BufferedImage image) throws ImageOperationException {
+		if (!(step.getOperation() instanceof ColourMap) || step.getEnd() - step.getStart() == 1 || holdsEveryColour(image))
+			return TileEngine.draw(step.getOperation(), image);
+		for (int i = step.getStart(); i < step.getEnd(); i++) {
+			image = TileEngine.draw(operations.get(i), image);
+		}
+		return image;
+	}
+
+	/**
+	 * Does an image's type store every 8 bit red, green and blue value exactly, along with whatever alpha it has?
+	 * @param image The image
+	 * @return True if converting a colour map's result to the image's type loses nothing
+	 */
+	private static boolean holdsEveryColour(BufferedImage image) {
+		switch (image.getType()) {
+			case BufferedImage.TYPE_INT_ARGB:
+			case BufferedImage.TYPE_INT_RGB:
+			case BufferedImage.TYPE_INT_BGR:
+			case BufferedImage.TYPE_3BYTE_BGR:
+			case BufferedImage.TYPE_4BYTE_ABGR:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Get the region of an operation's input it needs to draw a region of its output
+	 * @param operation A tileable or orientation operation
+	 * @param region The region of the output
+	 * @param size The size of the input
+	 * @return The region of the input, inside the input
+	 */
+	private static Rectangle getInputRegion(ImageOperation operation, Rectangle region, Dimension size) {
+		if (operation instanceof OrientationOperation) {
+			Orientation orientation = ((OrientationOperation) operation).getOrientation();
+			return orientation.inverse().map(region, orientation.map(size));
+		}
+		int halo = ((TileableOperation) operation).getHalo();
+		Rectangle grown = new Rectangle(region);
+		grown.grow(halo, halo);
+		return grown.intersection(new Rectangle(size));
+	}
+
+	/**
+	 * Get the size of an operation's output
+	 * @param operation A tileable or orientation operation
+	 * @param size The size of its input
+	 * @return The size of its output
+	 */
+	private static Dimension getOutputSize(ImageOperation operation, Dimension size) {
+		if (operation instanceof OrientationOperation)
+			return ((OrientationOperation) operation).getOrientation().map(size);
+		return size;
+	}
+
+	/**
+	 * <p>Operations followed by a crop, drawn only on the part of the image the crop needs.</p>
+	 * <p>
+	 * Working back from the crop, each operation's needed input is its needed output with the operation's halo around it (for a
+	 * tileable operation), or moved back to where it came from (for a rotation or flip). The image is cut down to the region the
+	 * first operation needs, the operations are drawn on that (combined as usual), and the crop is taken from the result.
+	 * Tileable operations treat the edges of the image as repeating the edge pixels, and the cut only leaves an edge where the
+	 * image already had one or where the halo is wide enough for it not to matter, so every pixel the crop keeps is the same
+	 * as if the whole image had been drawn.
+	 * </p>
+	 */
+	private static class CroppedRegion implements ImageOperation {
+		private static final long serialVersionUID = -3529093702658612434L;
+
+		private List<ImageOperation> operations;
+		private Crop crop;
+
+		/**
+		 * Create a new CroppedRegion
+		 * @param operations The tileable and orientation operations before the crop
+		 * @param crop The crop
+		 */
+		CroppedRegion(List<ImageOperation> operations, Crop crop) {
+			this.operations = operations;
+			this.crop = crop;
+		}
+
+		@Override
+		public BufferedImage draw(BufferedImage input) throws ImageOperationException {
+			int count = operations.size();
+			Dimension[] sizes = new Dimension[count + 1];
+			sizes[0] = new Dimension(input.getWidth(), input.getHeight());
+			for (int i = 0; i < count; i++) {
+				sizes[i + 1] = getOutputSize(operations.get(i), sizes[i]);
+			}
+			Rectangle cropRegion = crop.getRegion();
+			if (cropRegion.isEmpty() || !new Rectangle(sizes[count]).contains(cropRegion)) {
+				// The crop reaches past the image (leaving part of it empty), so just draw everything
+				return crop.draw(Replayer.draw(operations, input));
+			}
+
+			Rectangle[] needed = new Rectangle[count + 1];
+			needed[count] = cropRegion;
+			for (int i = count - 1; i >= 0; i--) {
+				needed[i] = getInputRegion(operations.get(i), needed[i + 1], sizes[i]);
+			}
+
+			// The region the image currently holds, in the coordinates of the full image at that point
+			Rectangle bounds = needed[0];
+			WritableRaster region = input.getRaster().createCompatibleWritableRaster(bounds.width, bounds.height);
+			region.setRect(-bounds.x, -bounds.y, input.getRaster());
+			BufferedImage image = new BufferedImage(input.getColorModel(), region, input.isAlphaPremultiplied(), null);
+			for (Step step : plan(operations)) {
+				image = drawStep(step, operations, image);
+				for (int i = step.getStart(); i < step.getEnd(); i++) {
+					if (operations.get(i) instanceof OrientationOperation)
+						bounds = ((OrientationOperation) operations.get(i)).getOrientation().map(bounds, sizes[i]);
+				}
+			}
+			Point location = new Point(cropRegion.x - bounds.x, cropRegion.y - bounds.y);
+			return new Crop(location, cropRegion.getSize()).draw(image);
+		}
+
+		@Override
+		public BufferedImage drawPreview(BufferedImage input) throws ImageOperationException {
+			return draw(input);
+		}
+
+		@Override
+		public String operationDescription() {
+			return crop.operationDescription();
+		}
+	}
+
+	/**
+	 * One step of a replay, drawing one or more consecutive operations
+	 */
+	public static class Step {
+		private ImageOperation operation;
+		private int start;
+		private int end;
+
+		/**
+		 * Create a new Step
+		 * @param operation The operation to draw
+		 * @param start The index of the first operation the step draws
+		 * @param end The index after the last operation the step draws
+		 */
+		private Step(ImageOperation operation, int start, int end) {
+			this.operation = operation;
+			this.start = start;
+			this.end = end;
+		}
+
+		/**
+		 * Get the operation to draw for this step
+		 * @return The operation, which is either one of the replayed operations, or one combining several of them
+		 */
+		public ImageOperation getOperation() {
+			return operation;
+		}
+
+		/**
+		 * Get the index of the first operation the step draws
+		 * @return The index in the replayed operations
+		 */
+		public int getStart() {
+			return start;
+		}
+
+		/**
+		 * Get the index after the last operation the step draws
+		 * @return The index in the replayed operations
+		 */
+		public int getEnd() {
+			return end;
+		}
+	}
+}
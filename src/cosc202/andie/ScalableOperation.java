@@ -0,0 +1,33 @@
+package cosc202.andie;
+
+/**
+ * <p>
+ * Interface for {@link ImageOperation}s that can be previewed on a scaled down copy of an image.
+ * </p>
+ *
+ * <p>
+ * When the image is zoomed out, there is no point previewing an operation on every pixel of it, since most of them won't be seen.
+ * Instead, the preview can be drawn on a copy of the image scaled down to the size it's displayed at.
+ * For the preview to look the same, any parameters measured in pixels (e.g. a filter's radius) need to be scaled too.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @see cosc202.andie.models.Operations
+ *
+ * @author Jeb Nicholson
+ * @version 1.0
+ */
+public interface ScalableOperation extends ImageOperation {
+
+	/**
+	 * Get a version of this operation to draw on a copy of the image scaled by a given factor.
+	 * <p> Operations without any parameters measured in pixels can return themselves. </p>
+	 * @param scale The scale of the image the operation will be drawn on (e.g. 0.5 for half the width and height)
+	 * @return The scaled operation
+	 */
+	public ImageOperation scaled(double scale);
+
+}
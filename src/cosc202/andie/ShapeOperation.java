@@ -0,0 +1,33 @@
+package cosc202.andie;
+
+import java.awt.Graphics2D;
+
+/**
+ * <p>
+ * Interface for {@link RegionOperation}s that draw a vector shape (e.g. a rectangle or a line) onto the image.
+ * </p>
+ *
+ * <p>
+ * Since the shape is drawn with a {@link Graphics2D}, it can be drawn anywhere, not just into the image. While a shape is
+ * being dragged out, the shape tools draw it onto the overlay (scaled to the view), and only draw it into the image once the
+ * mouse is released, so dragging doesn't depend on the size of the image.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @see cosc202.andie.tools.ShapeTool
+ *
+ * @author Jeb Nicholson
+ * @version 1.0
+ */
+public interface ShapeOperation extends RegionOperation {
+
+	/**
+	 * Draw the shape, in image coordinates
+	 * @param g The graphics context to draw on, which may be transformed (e.g. to draw the shape onto the overlay)
+	 */
+	public void drawShape(Graphics2D g);
+
+}
@@ -0,0 +1,280 @@
+package cosc202.andie;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+
+import cosc202.andie.ImageOperation.ImageOperationException;
+
+/**
+ * <p>
+ * Draws {@link ImageOperation}s, splitting {@link TileableOperation}s into tiles that are drawn in parallel.
+ * </p>
+ *
+ * <p>
+ * The image is split into square tiles of (at least) {@link #TILE_SIZE} pixels. Each tile is copied out with a halo of
+ * {@link TileableOperation#getHalo()} pixels on every side (with edges expanded from the nearest pixel), drawn on a
+ * {@link ForkJoinPool}, and the centre of the result is copied into the output image. Every output pixel therefore sees exactly
+ * the input pixels it would have seen in the whole image, so the result is bit-identical to drawing the image in one go.
+ * Tiles are drawn with the {@link Cancellation} token of the thread that asked for them, and stop once it's cancelled.
+ * </p>
+ *
+ * <p>
+ * Operations that aren't tileable, images that fit in a single tile, and a parallelism of 1 are all drawn directly.
+ * The parallelism defaults to the number of processors, and can be set with the {@code andie.parallelism} system property
+ * or {@link #setParallelism(int)}.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @see TileableOperation
+ *
+ * @author Jeb Nicholson
+ * @version 1.0
+ */
+public class TileEngine {
+
+	/** The smallest width and height of a tile, in pixels */
+	public static final int TILE_SIZE = 256;
+
+	private static int parallelism = Math.max(1, Integer.getInteger("andie.parallelism", Runtime.getRuntime().availableProcessors()));
+	private static ForkJoinPool pool;
+
+	/**
+	 * Get the number of tiles that may be drawn at once
+	 * @return The parallelism
+	 */
+	public static synchronized int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Set the number of tiles that may be drawn at once. A parallelism of 1 draws every operation on the calling thread.
+	 * @param parallelism The parallelism (at least 1)
+	 */
+	public static synchronized void setParallelism(int parallelism) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("Parallelism must be at least 1");
+		if (parallelism == TileEngine.parallelism) return;
+		TileEngine.parallelism = parallelism;
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+
+	/**
+	 * Get the pool to draw tiles on, creating it if needed
+	 * @return The pool
+	 */
+	private static synchronized ForkJoinPool getPool() {
+		if (pool == null)
+			pool = new ForkJoinPool(parallelism);
+		return pool;
+	}
+
+	/**
+	 * Draw an operation, in parallel tiles if possible
+	 * @param operation The operation to draw
+	 * @param input The image to draw it on
+	 * @return The result of {@link ImageOperation#draw(BufferedImage)}
+	 * @throws ImageOperationException If the operation fails
+	 */
+	public static BufferedImage draw(ImageOperation operation, BufferedImage input) throws ImageOperationException {
+		return draw(operation, input, false, false);
+	}
+
+	/**
+	 * Draw the preview of an operation, in parallel tiles if possible
+	 * @param operation The operation to draw
+	 * @param input The image to draw it on
+	 * @return The result of {@link ImageOperation#drawPreview(BufferedImage)}
+	 * @throws ImageOperationException If the operation fails
+	 */
+	public static BufferedImage drawPreview(ImageOperation operation, BufferedImage input) throws ImageOperationException {
+		return draw(operation, input, true, false);
+	}
+
+	/**
+	 * <p>Draw the preview of an operation, leaving the image it's drawn on untouched</p>
+	 * <p>
+	 * Tiled operations never draw on their input, so the image is only copied when the operation is drawn directly
+	 * (and so may draw in place). This lets an image be shared between previews without each taking its own copy.
+	 * </p>
+	 * @param operation The operation to draw
+	 * @param input The image to draw it on, which isn't modified
+	 * @return The result of {@link ImageOperation#drawPreview(BufferedImage)} on a copy of the input
+	 * @throws ImageOperationException If the operation fails
+	 */
+	public static BufferedImage drawPreviewOf(ImageOperation operation, BufferedImage input) throws ImageOperationException {
+		return draw(operation, input, true, true);
+	}
+
+	/**
+	 * Draw an operation, in parallel tiles if possible
+	 * @param operation The operation to draw
+	 * @param input The image to draw it on
+	 * @param preview Whether to draw the preview version of the operation
+	 * @param keepInput Whether the input must be left untouched
+	 * @return The resulting image
+	 * @throws ImageOperationException If the operation fails
+	 */
+	private static BufferedImage draw(ImageOperation operation, BufferedImage input, boolean preview, boolean keepInput) throws ImageOperationException {
+		int halo = operation instanceof TileableOperation ? ((TileableOperation) operation).getHalo() : 0;
+		// Keep the halo small relative to the tile, so that tiles don't mostly repeat work
+		int tileSize = Math.max(TILE_SIZE, 4 * halo);
+		if (!(operation instanceof TileableOperation) || getParallelism() == 1 || (input.getWidth() <= tileSize && input.getHeight() <= tileSize)) {
+			if (keepInput)
+				input = Utils.deepCopy(input);
+			return preview ? operation.drawPreview(input) : operation.draw(input);
+		}
+
+		int width = input.getWidth();
+		int height = input.getHeight();
+		ArrayList<Rectangle> tiles = new ArrayList<Rectangle>();
+		for (int y = 0; y < height; y += tileSize) {
+			for (int x = 0; x < width; x += tileSize) {
+				tiles.add(new Rectangle(x, y, Math.min(tileSize, width - x), Math.min(tileSize, height - y)));
+			}
+		}
+		PixelBuffer output = new PixelBuffer(width, height);
+		drawRegions((TileableOperation) operation, PixelBuffer.of(input), output, tiles, preview);
+		return output.getImageLike(input);
+	}
+
+	/**
+	 * <p>Draw a tileable operation on some regions of an image, in parallel where possible.</p>
+	 * <p>
+	 * Each region is copied out of the source with the operation's halo, drawn, and written to the same place in the output.
+	 * Pixels of the output outside the regions are left as they were, so an image can be drawn a few regions at a time.
+	 * </p>
+	 * @param operation The operation to draw
+	 * @param source The image to draw it on (which isn't modified)
+	 * @param output The buffer to write the drawn regions to, the same size as the source
+	 * @param regions The regions to draw, which should lie inside the image and not overlap
+	 * @param preview Whether to draw the preview version of the operation
+	 * @throws ImageOperationException If the operation fails
+	 */
+	public static void drawRegions(TileableOperation operation, PixelBuffer source, PixelBuffer output, List<Rectangle> regions, boolean preview) throws ImageOperationException {
+		if (getParallelism() == 1 || regions.size() == 1) {
+			for (Rectangle region : regions) {
+				drawRegion(operation, source, output, region, preview);
+			}
+			return;
+		}
+
+		ForkJoinPool pool = getPool();
+		AtomicBoolean cancelled = new AtomicBoolean();
+		Cancellation token = Cancellation.current();
+		ArrayList<Future<?>> tiles = new ArrayList<Future<?>>();
+		for (Rectangle region : regions) {
+			tiles.add(pool.submit(() -> {
+				if (cancelled.get()) return null;
+				Cancellation previous = Cancellation.setCurrent(token);
+				try {
+					Cancellation.check();
+					drawRegion(operation, source, output, region, preview);
+				} finally {
+					Cancellation.setCurrent(previous);
+				}
+				return null;
+			}));
+		}
+
+		join(tiles, cancelled);
+	}
+
+	/**
+	 * <p>Run a task on each of a number of bands of an image (e.g. rows of blocks), in parallel where possible.</p>
+	 * <p>The tasks must only write to their own band, so that they don't need to synchronise.</p>
+	 * @param bands The number of bands
+	 * @param task Given the index of each band, from 0 to bands - 1
+	 */
+	public static void forEachBand(int bands, IntConsumer task) {
+		if (getParallelism() == 1 || bands <= 1) {
+			for (int band = 0; band < bands; band++) {
+				task.accept(band);
+			}
+			return;
+		}
+
+		ForkJoinPool pool = getPool();
+		AtomicBoolean cancelled = new AtomicBoolean();
+		Cancellation token = Cancellation.current();
+		ArrayList<Future<?>> tasks = new ArrayList<Future<?>>();
+		for (int band = 0; band < bands; band++) {
+			int index = band;
+			tasks.add(pool.submit(() -> {
+				if (cancelled.get()) return;
+				Cancellation previous = Cancellation.setCurrent(token);
+				try {
+					Cancellation.check();
+					task.accept(index);
+				} finally {
+					Cancellation.setCurrent(previous);
+				}
+			}));
+		}
+		try {
+			join(tasks, cancelled);
+		} catch (ImageOperationException ex) {
+			// The tasks can't throw checked exceptions, so this can't happen
+			throw new RuntimeException(ex);
+		}
+	}
+
+	/**
+	 * Wait for tasks submitted to the pool, cancelling the rest if one fails
+	 * @param tasks The tasks
+	 * @param cancelled Set if a task fails (or the calling thread is interrupted), so the remaining tasks can skip their work
+	 * @throws ImageOperationException If a task threw one
+	 */
+	private static void join(List<Future<?>> tasks, AtomicBoolean cancelled) throws ImageOperationException {
+		try {
+			for (Future<?> task : tasks) {
+				task.get();
+			}
+		} catch (InterruptedException ex) {
+			// Like the operations themselves, stop drawing when the calling thread is interrupted (e.g. by a newer preview)
+			cancelled.set(true);
+			throw new RuntimeException("Interrupted");
+		} catch (ExecutionException ex) {
+			cancelled.set(true);
+			// The pool wraps exceptions it rethrows, so report a cancelled token as it would be on this thread
+			Cancellation.check();
+			Throwable cause = ex.getCause();
+			if (cause instanceof ImageOperationException) throw (ImageOperationException) cause;
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * Draw a tileable operation on one region of an image
+	 * @param operation The operation to draw
+	 * @param source The image to draw it on
+	 * @param output The buffer to write the drawn region to
+	 * @param region The region to draw
+	 * @param preview Whether to draw the preview version of the operation
+	 * @throws ImageOperationException If the operation fails
+	 */
+	private static void drawRegion(TileableOperation operation, PixelBuffer source, PixelBuffer output, Rectangle region, boolean preview) throws ImageOperationException {
+		int halo = operation.getHalo();
+		PixelBuffer tile = source.region(region.x - halo, region.y - halo, region.width + 2 * halo, region.height + 2 * halo);
+		BufferedImage drawn = preview ? operation.drawPreview(tile.getImage()) : operation.draw(tile.getImage());
+		int[] drawnPixels = PixelBuffer.of(drawn).getPixels();
+		for (int row = 0; row < region.height; row++) {
+			System.arraycopy(drawnPixels, (row + halo) * tile.getWidth() + halo, output.getPixels(), (region.y + row) * output.getWidth() + region.x, region.width);
+		}
+	}
+
+}
@@ -0,0 +1,39 @@
+package cosc202.andie;
+
+/**
+ * <p>
+ * Interface for {@link ImageOperation}s that can be drawn one tile at a time.
+ * </p>
+ *
+ * <p>
+ * A tileable operation computes each output pixel from only the input pixels within {@link #getHalo()} pixels of it,
+ * treating pixels beyond the edges of the image as copies of the nearest edge pixel (as {@link PixelBuffer#expandEdges(int)} does).
+ * It must also return an image of the same size as its input.
+ * Filters like blurs and colour adjustments fit this, while transforms like rotation or resizing don't.
+ * </p>
+ *
+ * <p>
+ * The {@link TileEngine} uses this to split the image into tiles, each padded with a halo of neighbouring pixels,
+ * and draw them in parallel. Since every output pixel sees exactly the same input pixels as it would in the whole image,
+ * the result is identical to drawing the whole image at once.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
+ * </p>
+ *
+ * @see TileEngine
+ *
+ * @author Jeb Nicholson
+ * @version 1.0
+ */
+public interface TileableOperation extends ImageOperation {
+
+	/**
+	 * Get the number of pixels around each output pixel that the operation reads from.
+	 * <p> For a convolution, this is the radius of the kernel. For an operation that only reads the pixel itself, it is 0. </p>
+	 * @return The halo, in pixels
+	 */
+	public int getHalo();
+
+}
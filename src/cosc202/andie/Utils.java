@@ -1,6 +1,8 @@
 package cosc202.andie;
 
-import java.awt.Graphics;
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
 import java.awt.image.WritableRaster;
@@ -130,6 +132,35 @@ public class Utils {
 		return new BufferedImage(cm, raster, isAlphaPremultiplied, null);
 	}
 
+	/**
+	 * <p>Scale an image down to a given size.</p>
+	 * <p>
+	 * The image is halved repeatedly (each halving averages 2x2 blocks of pixels) until it is less than twice the target size,
+	 * and then scaled the rest of the way with bilinear interpolation. Scaling down in one step would skip most of the pixels,
+	 * and look noisy.
+	 * </p>
+	 * @param image The image to scale
+	 * @param width The width to scale to (no larger than the image's width)
+	 * @param height The height to scale to (no larger than the image's height)
+	 * @return A new TYPE_INT_ARGB image of the given size
+	 */
+	public static BufferedImage downsample(BufferedImage image, int width, int height) {
+		BufferedImage scaled = image;
+		int scaledWidth = image.getWidth(), scaledHeight = image.getHeight();
+		do {
+			scaledWidth = Math.max(scaledWidth / 2, width);
+			scaledHeight = Math.max(scaledHeight / 2, height);
+			BufferedImage next = new BufferedImage(scaledWidth, scaledHeight, BufferedImage.TYPE_INT_ARGB);
+			Graphics2D g = next.createGraphics();
+			g.setComposite(AlphaComposite.Src);
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g.drawImage(scaled, 0, 0, scaledWidth, scaledHeight, null);
+			g.dispose();
+			scaled = next;
+		} while (scaledWidth > width || scaledHeight > height);
+		return scaled;
+	}
+
 	/**
 	 * Read a file as string
 	 * @param file The file to read
@@ -178,53 +209,14 @@ public class Utils {
 
 	/**
 	 * Creates a new BufferedImage with each edge expanded by r pixels, taking the color values from the nearest pixel.
+	 * <p> The expanded image is always of type {@link BufferedImage#TYPE_INT_ARGB}. </p>
 	 * @param input The BufferedImage to expand.
 	 * @param r The number of pixels to expand each edge by.
 	 * @return A new BufferedImage with the expanded edges.
+	 * @see PixelBuffer#expandEdges(int)
 	 */
 	public static BufferedImage expandEdges(BufferedImage input, int r) {
-		BufferedImage output = new BufferedImage(input.getWidth() + 2 * r, input.getHeight() + 2 * r, input.getType());
-		Graphics g = output.createGraphics();
-		g.drawImage(input, r, r, null);
-		g.dispose();
-
-		int h = input.getHeight();
-		int w = input.getWidth();
-
-		// Top left corner padding 
-		for(int y = -r; y < 0; ++y)
-				for(int x = -r ; x < 0 ; ++x)
-						output.setRGB((x + r), (y + r), input.getRGB(0,0));
-		// Top right corner padding 
-		for(int y = -r; y < 0; ++y)
-				for(int x = 0; x < r; ++x)
-						output.setRGB((w + x + r), (y + r), input.getRGB((w - 1), 0));
-		// Bottom left corner padding
-		for(int y = 0; y < r; ++y)
-				for(int x = -r; x < 0; ++x)
-						output.setRGB((x + r), (h + y + r), input.getRGB(0, (h - 1)));
-		// Bottom right corner padding
-		for(int y = 0; y < r; ++y)
-				for(int x = 0; x < r; ++x)
-						output.setRGB((w + x + r), (h + y + r), input.getRGB((w - 1), (h - 1)));
-		// Top edge 
-		for(int y = 0 ; y < r; y++)
-				for(int x = 0; x < w ; ++x)
-						output.setRGB((x + r), y, input.getRGB(x,0)); 
-		// Bottom edge
-		for(int y = 0 ; y < r; ++y)
-				for(int x = 0; x < w ; ++x)
-						output.setRGB((x + r), (y + r + h) , input.getRGB(x, (h - 1))); 
-		// Left edge 
-		for(int y = 0 ; y < h; ++y)
-				for(int x = 0; x < r ; ++x)
-						output.setRGB(x, y+r, input.getRGB(0, y)); 
-		// Right edge 
-		for(int y = 0 ; y < h; ++y)
-				for(int x = 0; x < r ; ++x)
-						output.setRGB((x + r + w), (y + r), input.getRGB((w - 1), y)); 
-
-		return output;
+		return PixelBuffer.of(input).expandEdges(r).getImage();
 	}
 
 }
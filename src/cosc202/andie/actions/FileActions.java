@@ -140,12 +140,15 @@ public class FileActions extends MenuActions {
                 setEnabled(model.hasImage() && model.getImage().getModified());
             };
             model.registerImageListener(imageListener);
+            // Background saves finish by updating the filepath, not the image
+            model.registerFilepathListener(imageListener);
             imageListener.update();
         }
 
         @Override
         public void removeNotify() {
             model.unregisterImageListener(imageListener);
+            model.unregisterFilepathListener(imageListener);
         }
 
         /**
@@ -161,7 +164,7 @@ public class FileActions extends MenuActions {
          * @param e The event triggering this callback.
          */
         public void actionPerformed(ActionEvent e) {
-            controller.IO.save();
+            controller.IO.saveInBackground();
         }
 
     }
@@ -403,9 +406,9 @@ public class FileActions extends MenuActions {
                 return;
 
             String exportFilepath = fileChooser.getSelectedFile().getAbsolutePath();
-            if (controller.IO.export(exportFilepath, imageFormat)) {
+            controller.IO.export(exportFilepath, imageFormat, () -> {
                 JOptionPane.showMessageDialog(null, msg("File_Exit_Action_JPane"));
-            }
+            });
         }
     }
 
@@ -128,7 +128,7 @@ public class FilterActions extends MenuActions {
          * @param e The event triggering this callback.
          */
         public void actionPerformed(ActionEvent e) {
-            PopupSlider slider = new PopupSlider(msg("Radius_Popup_Label"), 1, 10, 1, "px", 1, 5, 1);
+            PopupSlider slider = new PopupSlider(msg("Radius_Popup_Label"), 1, 50, 1, "px", 5, 10, 1);
             ChangeListener listener = ((ev) -> {
                 controller.operations.update(new MeanFilter(slider.getValue()));
             });
@@ -271,7 +271,7 @@ public class FilterActions extends MenuActions {
          * @param e The event triggering this callback.
          */
         public void actionPerformed(ActionEvent e) {
-            PopupSlider slider = new PopupSlider(msg("Radius_Popup_Label"), 1, 5, 1, "px", 1, 5, 1);
+            PopupSlider slider = new PopupSlider(msg("Radius_Popup_Label"), 1, 25, 1, "px", 1, 5, 1);
             ChangeListener listener = (ev) -> {
                 controller.operations.update(new MedianFilter(slider.getValue()));
             };
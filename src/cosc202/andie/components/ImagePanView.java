@@ -27,6 +27,10 @@ import cosc202.andie.controllers.AndieController.ManualZoomListener;
  * <p>
  * Similar to an image viewer, or image editor like photoshop, this view allows the user to zoom by holding CTRL/CMD and scrolling the mouse wheel, and pan by scrolling. (Works best on trackpads)
  * </p>
+ * <p>
+ * When zoomed out, the image is drawn from the closest level of an {@link ImagePyramid}, rather than resampling the full resolution image on every repaint.
+ * The zoomed image is cached in tiles by a {@link ScreenTileCache}, so panning over parts of it that have already been drawn is just a copy.
+ * </p>
  * 
  * <p> 
  * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">cc by-nc-sa 4.0</a>
@@ -42,6 +46,8 @@ public class ImagePanView extends JPanel implements MouseWheelListener, MouseMot
 	private Point2D.Double mousePosition;
 	private Point2D.Double viewportOffset;
 	private BufferedImage image;
+	private ImagePyramid pyramid;
+	private ScreenTileCache screenCache = new ScreenTileCache();
 	private double zoom;
 	private Dimension imageDimensions;
 
@@ -61,6 +67,7 @@ public class ImagePanView extends JPanel implements MouseWheelListener, MouseMot
 		super();
 
 		this.image = image;
+		this.pyramid = new ImagePyramid(image);
 		this.imageDimensions = new Dimension(image.getWidth(), image.getHeight());
 
 		this.addMouseWheelListener(this);
@@ -90,9 +97,51 @@ public class ImagePanView extends JPanel implements MouseWheelListener, MouseMot
 	 * @param newImage The new image to display
 	 */
 	public void updateImage(BufferedImage newImage) {
-		boolean sizeChanged = newImage.getWidth() != imageDimensions.getWidth()
-				|| newImage.getHeight() != imageDimensions.getHeight();
-		this.imageDimensions = new Dimension(newImage.getWidth(), newImage.getHeight());
+		updateImage(newImage, new Dimension(newImage.getWidth(), newImage.getHeight()));
+	}
+
+	/**
+	 * <p>
+	 * Updates the image to be displayed by the view, drawn at a given size, and repaints the view.
+	 * </p>
+	 * <p>
+	 * The size may differ from the image's own size, e.g. for a preview drawn at a lower resolution than the image it represents.
+	 * It will center the viewport if the new size is different.
+	 * </p>
+	 * 
+	 * @param newImage The new image to display
+	 * @param size The size of the image, in image pixels
+	 */
+	public void updateImage(BufferedImage newImage, Dimension size) {
+		updateImage(newImage, size, null);
+	}
+
+	/**
+	 * <p>
+	 * Updates the image to be displayed by the view, drawn at a given size, and repaints the view.
+	 * </p>
+	 * <p>
+	 * If the new image is the image already being displayed, and only part of it has been drawn on, only that part of the zoomed out
+	 * copies of it is redrawn.
+	 * </p>
+	 * 
+	 * @param newImage The new image to display
+	 * @param size The size of the image, in image pixels
+	 * @param changed The part of the image that has changed (in the new image's pixels), or null if it may all have changed
+	 */
+	public void updateImage(BufferedImage newImage, Dimension size, Rectangle changed) {
+		boolean sizeChanged = size.width != imageDimensions.width || size.height != imageDimensions.height;
+		this.imageDimensions = new Dimension(size);
+		if (newImage == this.image && changed != null) {
+			pyramid.invalidate(changed);
+			// The screen cache works in image pixels, which the new image may be drawn at a lower resolution than
+			double scaleX = (double) size.width / newImage.getWidth(), scaleY = (double) size.height / newImage.getHeight();
+			screenCache.invalidate(new Rectangle((int) Math.floor(changed.x * scaleX), (int) Math.floor(changed.y * scaleY),
+					(int) Math.ceil(changed.width * scaleX) + 1, (int) Math.ceil(changed.height * scaleY) + 1));
+		} else {
+			pyramid.setImage(newImage);
+			screenCache.invalidate();
+		}
 		this.image = newImage;
 		if (sizeChanged)
 			centerViewport();
@@ -182,7 +231,7 @@ public class ImagePanView extends JPanel implements MouseWheelListener, MouseMot
 	/** Centers the image within the panel **/
 	private void centerViewport() {
 		Point2D.Double thisSize = new Point2D.Double(this.getWidth(), this.getHeight());
-		Point2D.Double imageSize = new Point2D.Double(image.getWidth(), image.getHeight());
+		Point2D.Double imageSize = new Point2D.Double(imageDimensions.width, imageDimensions.height);
 		Point2D.Double viewportOffset = new Point2D.Double((thisSize.getX() - imageSize.getX() * this.zoom) / 2,
 				(thisSize.getY() - imageSize.getY() * this.zoom) / 2);
 		updateViewport(viewportOffset);
@@ -192,7 +241,7 @@ public class ImagePanView extends JPanel implements MouseWheelListener, MouseMot
 	public void resetView() {
 		Point2D.Double margin = new Point2D.Double(20, 20);
 		Point2D.Double thisSize = new Point2D.Double(this.getWidth(), this.getHeight());
-		Point2D.Double imageSize = new Point2D.Double(image.getWidth(), image.getHeight());
+		Point2D.Double imageSize = new Point2D.Double(imageDimensions.width, imageDimensions.height);
 		double newZoom = Math.min((thisSize.getX() - 2 * margin.getX()) / imageSize.getX(),
 				(thisSize.getY() - 2 * margin.getY()) / imageSize.getY());
 
@@ -208,7 +257,7 @@ public class ImagePanView extends JPanel implements MouseWheelListener, MouseMot
 	 * @return The clamped zoom value
 	 */
 	private double getZoomClamp(double newZoom) {
-		double minZoom = 100f / Math.max(image.getWidth(), image.getHeight());
+		double minZoom = 100f / Math.max(imageDimensions.width, imageDimensions.height);
 		double maxZoom = 16;
 		return Math.min(Math.max(newZoom, minZoom), maxZoom);
 	}
@@ -250,11 +299,11 @@ public class ImagePanView extends JPanel implements MouseWheelListener, MouseMot
 
 		Point2D.Double anchorInImage = new Point2D.Double(anchorPos.getX() - viewportOffset.getX(),
 				anchorPos.getY() - viewportOffset.getY());
-		Point2D.Double imageSize = new Point2D.Double(image.getWidth() * zoom, image.getHeight() * zoom);
+		Point2D.Double imageSize = new Point2D.Double(imageDimensions.width * zoom, imageDimensions.height * zoom);
 		Point2D.Double anchorInImagePercent = new Point2D.Double(anchorInImage.getX() / imageSize.getX(),
 				anchorInImage.getY() / imageSize.getY());
 
-		Point2D.Double newImageSize = new Point2D.Double(image.getWidth() * newZoom, image.getHeight() * newZoom);
+		Point2D.Double newImageSize = new Point2D.Double(imageDimensions.width * newZoom, imageDimensions.height * newZoom);
 		Point2D.Double newAnchorInImage = new Point2D.Double(newImageSize.getX() * anchorInImagePercent.getX(),
 				newImageSize.getY() * anchorInImagePercent.getY());
 		Point2D.Double newViewportOffset = new Point2D.Double(anchorPos.getX() - newAnchorInImage.getX(),
@@ -285,7 +334,7 @@ public class ImagePanView extends JPanel implements MouseWheelListener, MouseMot
 	 */
 	private void updateViewport(Point2D.Double newViewportOffset) {
 		Point2D.Double thisSize = new Point2D.Double(this.getWidth(), this.getHeight());
-		Point2D.Double imageSize = new Point2D.Double(image.getWidth() * zoom, image.getHeight() * zoom);
+		Point2D.Double imageSize = new Point2D.Double(imageDimensions.width * zoom, imageDimensions.height * zoom);
 
 		Point2D.Double clampedViewportOffset = new Point2D.Double(
 				Math.min(Math.max(newViewportOffset.getX(), -imageSize.getX()), thisSize.getX()),
@@ -296,18 +345,48 @@ public class ImagePanView extends JPanel implements MouseWheelListener, MouseMot
 	@Override
 	public void paintComponent(Graphics g) {
 		super.paintComponent(g);
-		if (zoom >= 4) { // Pixel peeping mode (Smooth pan and zoom)
-			BufferedImage scene = new BufferedImage(this.getWidth(), this.getHeight(), BufferedImage.TYPE_INT_ARGB);
-			Graphics2D g2d = scene.createGraphics();
-			g2d.translate(viewportOffset.getX(), viewportOffset.getY());
-			g2d.scale(zoom, zoom);
-			g2d.drawImage(this.image, 0, 0, null);
-			g.drawImage(scene, 0, 0, null);
-			g2d.dispose();
-		} else { // Normal mode (Faster, better interpolation)
-			g.drawImage(this.image, (int) viewportOffset.getX(), (int) viewportOffset.getY(), (int) (image.getWidth() * zoom),
-					(int) (image.getHeight() * zoom), null);
-		}
+		int zoomedWidth = (int) (imageDimensions.width * zoom), zoomedHeight = (int) (imageDimensions.height * zoom);
+		screenCache.paint(g, this, zoom, (int) Math.floor(viewportOffset.getX()), (int) Math.floor(viewportOffset.getY()), zoomedWidth, zoomedHeight,
+				(Graphics2D tileGraphics, int x, int y, int width, int height) -> {
+			if (zoom >= 4) { // Pixel peeping mode (Smooth pan and zoom)
+				paintVisiblePixels(tileGraphics, -x, -y, width, height);
+			} else { // Normal mode (Faster, better interpolation)
+				// Draw from the smallest copy of the image that is still at least as large as it's displayed
+				int level = pyramid.getLevelFor(zoom * imageDimensions.width / image.getWidth());
+				tileGraphics.drawImage(pyramid.getLevel(level), -x, -y, zoomedWidth, zoomedHeight, null);
+			}
+		});
+	}
+
+	/**
+	 * <p>Draws only the pixels of the image that are visible in a region, each as a (nearest neighbour) block of screen pixels.</p>
+	 * <p>
+	 * The visible part of the image is drawn straight onto the graphics context, without drawing the whole image into an
+	 * intermediate buffer first. The cost depends only on the size of the region.
+	 * </p>
+	 * @param g The graphics context to draw on
+	 * @param offsetX Where the left edge of the image is, relative to the region
+	 * @param offsetY Where the top edge of the image is, relative to the region
+	 * @param width The width of the region
+	 * @param height The height of the region
+	 */
+	private void paintVisiblePixels(Graphics g, double offsetX, double offsetY, int width, int height) {
+		// Screen pixels per pixel of the image (which may be a preview drawn at a lower resolution)
+		double scaleX = zoom * imageDimensions.width / image.getWidth();
+		double scaleY = zoom * imageDimensions.height / image.getHeight();
+
+		int sx1 = Math.max(0, (int) Math.floor(-offsetX / scaleX));
+		int sy1 = Math.max(0, (int) Math.floor(-offsetY / scaleY));
+		int sx2 = Math.min(image.getWidth(), (int) Math.ceil((width - offsetX) / scaleX));
+		int sy2 = Math.min(image.getHeight(), (int) Math.ceil((height - offsetY) / scaleY));
+		if (sx2 <= sx1 || sy2 <= sy1)
+			return;
+
+		Graphics2D g2d = (Graphics2D) g.create();
+		g2d.translate(offsetX, offsetY);
+		g2d.scale(scaleX, scaleY);
+		g2d.drawImage(this.image, sx1, sy1, sx2, sy2, sx1, sy1, sx2, sy2, null);
+		g2d.dispose();
 	}
 
 	@Override
@@ -370,7 +449,7 @@ public class ImagePanView extends JPanel implements MouseWheelListener, MouseMot
 	 */
 	public void notifyViewRectListeners() {
 		Rectangle viewRect = new Rectangle((int) viewportOffset.getX(), (int) viewportOffset.getY(),
-				(int) (image.getWidth() * zoom), (int) (image.getHeight() * zoom));
+				(int) (imageDimensions.width * zoom), (int) (imageDimensions.height * zoom));
 		for (ViewRectListener listener : viewRectListeners) {
 			listener.viewRectChanged(viewRect);
 		}
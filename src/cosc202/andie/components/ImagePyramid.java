@@ -0,0 +1,188 @@
+package cosc202.andie.components;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+
+import cosc202.andie.PixelBuffer;
+
+/**
+ * <p>
+ * A mipmap pyramid of an image: the image itself, then copies of it at half the width and height, a quarter, and so on.
+ * </p>
+ *
+ * <p>
+ * Drawing a large image at a small size makes Java2D resample the whole image every time. Drawing the smallest level that is
+ * still at least as large as the displayed size instead means only a few pixels per screen pixel need to be read.
+ * </p>
+ *
+ * <p>
+ * Levels are built lazily, the first time they're needed, each from the level above it (each pixel is the average of a 2x2 block,
+ * weighted by alpha). When part of the image changes, only the matching part of each level is rebuilt, and only once it's needed.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">cc by-nc-sa 4.0</a>
+ * </p>
+ *
+ * @see ImagePanView
+ *
+ * @author Jeb Nicholson
+ * @version 1.0
+ */
+public class ImagePyramid {
+
+	/** Levels aren't built any smaller than this, in their largest dimension */
+	public static final int MIN_LEVEL_SIZE = 64;
+
+	private BufferedImage image;
+	/** The levels built so far. Level 0 is the image itself. */
+	private ArrayList<BufferedImage> levels = new ArrayList<BufferedImage>();
+	/** The part of each level that is out of date (empty if none), in that level's pixels */
+	private ArrayList<Rectangle> dirty = new ArrayList<Rectangle>();
+
+	/**
+	 * Create a new ImagePyramid
+	 * @param image The image at the base of the pyramid
+	 */
+	public ImagePyramid(BufferedImage image) {
+		setImage(image);
+	}
+
+	/**
+	 * Get the image at the base of the pyramid
+	 * @return The image
+	 */
+	public BufferedImage getImage() {
+		return image;
+	}
+
+	/**
+	 * Replace the image at the base of the pyramid. Levels already built are kept (and rebuilt when needed) if the new image is the same size.
+	 * @param image The new image
+	 */
+	public void setImage(BufferedImage image) {
+		boolean sameSize = this.image != null && image.getWidth() == this.image.getWidth() && image.getHeight() == this.image.getHeight();
+		this.image = image;
+		if (!sameSize) {
+			levels.clear();
+			dirty.clear();
+			levels.add(image);
+			dirty.add(new Rectangle());
+			return;
+		}
+		levels.set(0, image);
+		invalidate(new Rectangle(image.getWidth(), image.getHeight()));
+	}
+
+	/**
+	 * Mark part of the image as changed, so that the matching parts of the levels are rebuilt when they're next needed
+	 * @param changed The changed rectangle, in image pixels
+	 */
+	public void invalidate(Rectangle changed) {
+		for (int level = 1; level < levels.size(); level++) {
+			int scale = 1 << level;
+			int x0 = Math.floorDiv(changed.x, scale), y0 = Math.floorDiv(changed.y, scale);
+			int x1 = -Math.floorDiv(-(changed.x + changed.width), scale), y1 = -Math.floorDiv(-(changed.y + changed.height), scale);
+			BufferedImage levelImage = levels.get(level);
+			Rectangle levelChange = new Rectangle(x0, y0, x1 - x0, y1 - y0).intersection(new Rectangle(levelImage.getWidth(), levelImage.getHeight()));
+			if (levelChange.isEmpty()) continue;
+			Rectangle levelDirty = dirty.get(level);
+			dirty.set(level, levelDirty.isEmpty() ? levelChange : levelDirty.union(levelChange));
+		}
+	}
+
+	/**
+	 * Get the level to draw the image from, at a given scale
+	 * @param scale The number of screen pixels per image pixel
+	 * @return The index of the smallest level that is at least as large as the image drawn at the scale
+	 */
+	public int getLevelFor(double scale) {
+		int level = 0;
+		int width = image.getWidth(), height = image.getHeight();
+		while (scale <= 0.5 && Math.max(width, height) / 2 >= MIN_LEVEL_SIZE) {
+			scale *= 2;
+			width = (width + 1) / 2;
+			height = (height + 1) / 2;
+			level++;
+		}
+		return level;
+	}
+
+	/**
+	 * Get a level of the pyramid, building or updating it (and the levels above it) if needed
+	 * @param level The index of the level (0 for the image itself)
+	 * @return The level, which is a TYPE_INT_ARGB image (apart from level 0). It must not be modified.
+	 */
+	public BufferedImage getLevel(int level) {
+		if (level == 0) return image;
+		BufferedImage parent = getLevel(level - 1);
+		if (level == levels.size()) {
+			levels.add(new BufferedImage((parent.getWidth() + 1) / 2, (parent.getHeight() + 1) / 2, BufferedImage.TYPE_INT_ARGB));
+			BufferedImage levelImage = levels.get(level);
+			dirty.add(new Rectangle(levelImage.getWidth(), levelImage.getHeight()));
+		}
+		BufferedImage levelImage = levels.get(level);
+		Rectangle levelDirty = dirty.get(level);
+		if (!levelDirty.isEmpty()) {
+			halve(parent, levelImage, levelDirty);
+			dirty.set(level, new Rectangle());
+		}
+		return levelImage;
+	}
+
+	/**
+	 * Fill part of a level with the average of each 2x2 block of the level above it
+	 * @param parent The level above (at twice the size)
+	 * @param output The level to fill
+	 * @param region The part of the output to fill
+	 */
+	private static void halve(BufferedImage parent, BufferedImage output, Rectangle region) {
+		int parentWidth = parent.getWidth(), parentHeight = parent.getHeight();
+		int outputWidth = output.getWidth();
+		int[] outputPixels = ((DataBufferInt) output.getRaster().getDataBuffer()).getData();
+		int rowStart = 2 * region.x;
+		int rowLength = Math.min(2 * region.width, parentWidth - rowStart);
+		int[] top = new int[rowLength], bottom = new int[rowLength];
+		int[] parentPixels = PixelBuffer.isPlainArgb(parent) ? ((DataBufferInt) parent.getRaster().getDataBuffer()).getData() : null;
+
+		for (int y = region.y; y < region.y + region.height; y++) {
+			int bottomRow = Math.min(2 * y + 1, parentHeight - 1);
+			if (parentPixels != null) {
+				System.arraycopy(parentPixels, 2 * y * parentWidth + rowStart, top, 0, rowLength);
+				System.arraycopy(parentPixels, bottomRow * parentWidth + rowStart, bottom, 0, rowLength);
+			} else {
+				// One bulk conversion through the colour model per row, rather than one per pixel
+				parent.getRGB(rowStart, 2 * y, rowLength, 1, top, 0, rowLength);
+				parent.getRGB(rowStart, bottomRow, rowLength, 1, bottom, 0, rowLength);
+			}
+
+			for (int x = 0; x < region.width; x++) {
+				int left = 2 * x;
+				int right = Math.min(left + 1, rowLength - 1);
+				outputPixels[y * outputWidth + region.x + x] = average(top[left], top[right], bottom[left], bottom[right]);
+			}
+		}
+	}
+
+	/**
+	 * Average four ARGB pixels, weighting each colour by its alpha so that transparent pixels don't darken their neighbours
+	 * @param p1 The first pixel
+	 * @param p2 The second pixel
+	 * @param p3 The third pixel
+	 * @param p4 The fourth pixel
+	 * @return The average pixel
+	 */
+	private static int average(int p1, int p2, int p3, int p4) {
+		if (p1 == p2 && p1 == p3 && p1 == p4) return p1;
+		int a1 = p1 >>> 24, a2 = p2 >>> 24, a3 = p3 >>> 24, a4 = p4 >>> 24;
+		int alpha = a1 + a2 + a3 + a4;
+		if (alpha == 0) return 0;
+		int r = (((p1 >> 16) & 0xFF) * a1 + ((p2 >> 16) & 0xFF) * a2 + ((p3 >> 16) & 0xFF) * a3 + ((p4 >> 16) & 0xFF) * a4 + alpha / 2) / alpha;
+		int g = (((p1 >> 8) & 0xFF) * a1 + ((p2 >> 8) & 0xFF) * a2 + ((p3 >> 8) & 0xFF) * a3 + ((p4 >> 8) & 0xFF) * a4 + alpha / 2) / alpha;
+		int b = ((p1 & 0xFF) * a1 + (p2 & 0xFF) * a2 + (p3 & 0xFF) * a3 + (p4 & 0xFF) * a4 + alpha / 2) / alpha;
+		return ((alpha + 2) / 4) << 24 | r << 16 | g << 8 | b;
+	}
+
+}
@@ -0,0 +1,245 @@
+package cosc202.andie.components;
+
+import java.awt.AlphaComposite;
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * <p>
+ * A cache of an image as it's drawn on screen, split into square tiles of {@link #TILE_SIZE} pixels.
+ * </p>
+ *
+ * <p>
+ * Tiles are keyed by the zoom they were drawn at and their position in the zoomed image, so panning back over a part of the image
+ * that has already been seen (at the same zoom) is just a copy of the tiles. While the zoom is changing (e.g. during a zoom
+ * gesture), tiles would never be reused, so the image is drawn straight onto the component until the same zoom is painted twice.
+ * </p>
+ *
+ * <p>
+ * Tiles are {@link VolatileImage}s (which can live in video memory) where the screen supports them, and plain images otherwise
+ * (e.g. headless). They are evicted least recently used first, once they take up more than the byte budget.
+ * </p>
+ *
+ * <p>
+ * The byte budget defaults to 64 MB, and can be set with the {@code andie.screenCacheMB} system property or {@link #setByteBudget(long)}.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">cc by-nc-sa 4.0</a>
+ * </p>
+ *
+ * @see ImagePanView
+ *
+ * @author Jeb Nicholson
+ * @version 1.0
+ */
+public class ScreenTileCache {
+
+	/** The width and height of each tile, in screen pixels */
+	public static final int TILE_SIZE = 256;
+	private static final long TILE_BYTES = (long) TILE_SIZE * TILE_SIZE * 4;
+
+	private long byteBudget = Math.max(0, Integer.getInteger("andie.screenCacheMB", 64)) * 1024L * 1024L;
+	/** The cached tiles, in order of use (least recent first) */
+	private LinkedHashMap<TileKey, Image> tiles = new LinkedHashMap<TileKey, Image>(16, 0.75f, true);
+	/** The zoom of the last paint */
+	private double lastZoom = Double.NaN;
+
+	/**
+	 * Get the most memory the tiles may use
+	 * @return The byte budget
+	 */
+	public long getByteBudget() {
+		return byteBudget;
+	}
+
+	/**
+	 * Set the most memory the tiles may use. A budget smaller than a tile turns the cache off.
+	 * @param byteBudget The byte budget
+	 */
+	public void setByteBudget(long byteBudget) {
+		this.byteBudget = Math.max(0, byteBudget);
+		evict();
+	}
+
+	/**
+	 * Get the number of bytes used by the cached tiles
+	 * @return The number of bytes
+	 */
+	public long getBytesUsed() {
+		return tiles.size() * TILE_BYTES;
+	}
+
+	/** Forget every tile, e.g. because the image has changed */
+	public void invalidate() {
+		for (Image tile : tiles.values()) {
+			tile.flush();
+		}
+		tiles.clear();
+	}
+
+	/**
+	 * Forget the tiles covering part of the image
+	 * @param changed The changed part of the image, in image pixels (before zooming)
+	 */
+	public void invalidate(Rectangle changed) {
+		Iterator<Map.Entry<TileKey, Image>> iterator = tiles.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<TileKey, Image> entry = iterator.next();
+			TileKey key = entry.getKey();
+			// The zoomed rectangle, widened by a pixel to cover rounding at its edges
+			double x0 = changed.x * key.zoom - 1, y0 = changed.y * key.zoom - 1;
+			double x1 = (changed.x + changed.width) * key.zoom + 1, y1 = (changed.y + changed.height) * key.zoom + 1;
+			if (x1 > key.x * TILE_SIZE && x0 < (key.x + 1) * TILE_SIZE && y1 > key.y * TILE_SIZE && y0 < (key.y + 1) * TILE_SIZE) {
+				entry.getValue().flush();
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Draw the zoomed image onto a component, from cached tiles where possible
+	 * @param g The component's graphics context
+	 * @param component The component being drawn on
+	 * @param zoom The zoom the image is drawn at
+	 * @param originX Where the left edge of the zoomed image is drawn on the component
+	 * @param originY Where the top edge of the zoomed image is drawn on the component
+	 * @param zoomedWidth The width of the zoomed image
+	 * @param zoomedHeight The height of the zoomed image
+	 * @param renderer Draws the zoomed image, for tiles that aren't cached
+	 */
+	public void paint(Graphics g, Component component, double zoom, int originX, int originY, int zoomedWidth, int zoomedHeight, TileRenderer renderer) {
+		boolean zoomChanged = Double.compare(zoom, lastZoom) != 0;
+		lastZoom = zoom;
+		if (zoomChanged || byteBudget < TILE_BYTES) {
+			Graphics2D direct = (Graphics2D) g.create();
+			direct.clipRect(0, 0, component.getWidth(), component.getHeight());
+			renderer.render(direct, -originX, -originY, component.getWidth(), component.getHeight());
+			direct.dispose();
+			return;
+		}
+
+		GraphicsConfiguration configuration = GraphicsEnvironment.isHeadless() ? null : component.getGraphicsConfiguration();
+		int firstX = Math.max(0, Math.floorDiv(-originX, TILE_SIZE));
+		int firstY = Math.max(0, Math.floorDiv(-originY, TILE_SIZE));
+		int lastX = Math.floorDiv(Math.min(zoomedWidth, component.getWidth() - originX) - 1, TILE_SIZE);
+		int lastY = Math.floorDiv(Math.min(zoomedHeight, component.getHeight() - originY) - 1, TILE_SIZE);
+
+		for (int tileY = firstY; tileY <= lastY; tileY++) {
+			for (int tileX = firstX; tileX <= lastX; tileX++) {
+				TileKey key = new TileKey(zoom, tileX, tileY);
+				Image tile = tiles.get(key);
+				if (tile instanceof VolatileImage) {
+					int status = ((VolatileImage) tile).validate(configuration);
+					if (status == VolatileImage.IMAGE_INCOMPATIBLE) {
+						tile.flush();
+						tiles.remove(key);
+						tile = null;
+					} else if (status == VolatileImage.IMAGE_RESTORED) {
+						// The contents were lost (e.g. the screen mode changed), so draw them again
+						renderTile(tile, tileX, tileY, renderer);
+					}
+				}
+				if (tile == null) {
+					tile = createTile(configuration);
+					renderTile(tile, tileX, tileY, renderer);
+					tiles.put(key, tile);
+				}
+
+				g.drawImage(tile, originX + tileX * TILE_SIZE, originY + tileY * TILE_SIZE, null);
+				if (tile instanceof VolatileImage && ((VolatileImage) tile).contentsLost())
+					tiles.remove(key);
+			}
+		}
+		evict();
+	}
+
+	/**
+	 * Create an empty tile
+	 * @param configuration The screen's configuration, or null if there is no screen
+	 * @return A VolatileImage if the screen supports them, otherwise a TYPE_INT_ARGB image
+	 */
+	private static Image createTile(GraphicsConfiguration configuration) {
+		if (configuration != null) {
+			VolatileImage tile = configuration.createCompatibleVolatileImage(TILE_SIZE, TILE_SIZE, Transparency.TRANSLUCENT);
+			if (tile != null) return tile;
+		}
+		return new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_ARGB);
+	}
+
+	/**
+	 * Clear a tile, and draw its part of the zoomed image onto it
+	 * @param tile The tile
+	 * @param tileX The tile's column
+	 * @param tileY The tile's row
+	 * @param renderer Draws the zoomed image
+	 */
+	private static void renderTile(Image tile, int tileX, int tileY, TileRenderer renderer) {
+		Graphics2D g = (Graphics2D) tile.getGraphics();
+		g.setComposite(AlphaComposite.Clear);
+		g.fillRect(0, 0, TILE_SIZE, TILE_SIZE);
+		g.setComposite(AlphaComposite.SrcOver);
+		g.clipRect(0, 0, TILE_SIZE, TILE_SIZE);
+		renderer.render(g, tileX * TILE_SIZE, tileY * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+		g.dispose();
+	}
+
+	/** Evict the least recently used tiles until they fit in the byte budget */
+	private void evict() {
+		Iterator<Image> iterator = tiles.values().iterator();
+		while (getBytesUsed() > byteBudget && iterator.hasNext()) {
+			iterator.next().flush();
+			iterator.remove();
+		}
+	}
+
+	/** Draws part of the zoomed image onto a tile */
+	public interface TileRenderer {
+		/**
+		 * Draw part of the zoomed image
+		 * @param g The graphics context to draw on, whose origin is the top left of the part
+		 * @param x The left edge of the part, in the zoomed image
+		 * @param y The top edge of the part, in the zoomed image
+		 * @param width The width of the part
+		 * @param height The height of the part
+		 */
+		public void render(Graphics2D g, int x, int y, int width, int height);
+	}
+
+	/** The key of a tile: the zoom it was drawn at, and its column and row */
+	private static class TileKey {
+		final double zoom;
+		final int x, y;
+
+		TileKey(double zoom, int x, int y) {
+			this.zoom = zoom;
+			this.x = x;
+			this.y = y;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof TileKey)) return false;
+			TileKey key = (TileKey) other;
+			return Double.compare(zoom, key.zoom) == 0 && x == key.x && y == key.y;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(zoom, x, y);
+		}
+	}
+
+}
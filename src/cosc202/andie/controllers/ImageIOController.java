@@ -2,11 +2,14 @@ package cosc202.andie.controllers;
 
 import javax.imageio.ImageIO;
 import javax.swing.JOptionPane;
+import javax.swing.ProgressMonitor;
 import java.io.IOException;
 
 import cosc202.andie.Utils;
 import cosc202.andie.Utils.ExtensionException;
 import cosc202.andie.models.AndieModel;
+import cosc202.andie.models.ImageSaver;
+import cosc202.andie.models.ImageSaver.SaveListener;
 
 import static cosc202.andie.LanguageConfig.msg;
 
@@ -51,6 +54,8 @@ public class ImageIOController {
 	 * @return Whether the image was closed
 	 */
 	public boolean safeClose() {
+		// Background writes may still be saving the image, or writing files that shouldn't be cut short by quitting
+		model.finishSaving();
 		if (!model.hasImage()) return true;
 		if (model.getImage().getModified()) {
 			int result = JOptionPane.showConfirmDialog(controller.getContentPane(),msg("File_Close_Unsaved_Warning_Message"),msg("File_Close_Unsaved_Warning_Title"), JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.WARNING_MESSAGE, null);
@@ -89,10 +94,21 @@ public class ImageIOController {
 	}
 
 	/**
-	 * Saves the image at a specified filepath, showing an error message if the image has not been loaded, or something goes wrong with the file extension or IO
-	 * @see AndieModel#saveImageAs(String)
+	 * Save the current image in the background, showing its progress, and an error message if the image has not been loaded, or
+	 * something goes wrong with the file extension or IO
+	 * @see AndieModel#saveImageAsync(String, SaveListener)
+	 * @return Whether the image has started saving
+	 */
+	public boolean saveInBackground() {
+		return saveInBackground(model.getImageFilepath());
+	}
+
+	/**
+	 * Saves the image at a specified filepath in the background, showing its progress, and an error message if the image has not been
+	 * loaded, or something goes wrong with the file extension or IO
+	 * @see AndieModel#saveImageAsync(String, SaveListener)
 	 * @param imageFilepath The filepath to save the image to
-	 * @return Whether the image was saved
+	 * @return Whether the image has started saving
 	 */
 	public boolean saveAs(String imageFilepath) {
 		if (!model.hasImage()) { JOptionPane.showMessageDialog(controller.getContentPane(),msg("File_save_error")); return false; }
@@ -101,48 +117,117 @@ public class ImageIOController {
 			newExtension = newExtension == null ? "png" : newExtension;
 			imageFilepath = Utils.withFileExtension(imageFilepath, newExtension);
 		}
+		return saveInBackground(imageFilepath);
+	}
+
+	/**
+	 * Save the image at a filepath in the background, showing its progress, and an error message if something goes wrong
+	 * @param imageFilepath The filepath to save the image to
+	 * @return Whether the image has started saving
+	 */
+	private boolean saveInBackground(String imageFilepath) {
+		if (!model.hasImage()) { JOptionPane.showMessageDialog(controller.getContentPane(),msg("File_save_error")); return false; }
+		WriteProgress progress = new WriteProgress(msg("File_Saving"), msg("File_save_exception_err"), null);
 		try {
-			model.saveImageAs(imageFilepath);
+			progress.start(model.saveImageAsync(imageFilepath, progress));
 			return true;
 		} catch (ExtensionException err) {
 			JOptionPane.showMessageDialog(controller.getContentPane(), msg("File_save_extension_exception") + String.join(", ", ImageIO.getWriterFileSuffixes()));
-		} catch (IOException err) {
-			JOptionPane.showMessageDialog(controller.getContentPane(), msg("File_save_exception_err"));
 		}
 		return false;
 	}
 
 	/**
-	 * Open an image, showing an error message if the image cannot be opened
-	 * @see AndieModel#openImage(String)
+	 * Open an image in the background, showing an error message if the image cannot be opened
+	 * @see AndieModel#openImageAsync(String, java.util.function.Consumer)
 	 * @param filePath The filepath of the image to open
-	 * @return Whether the image was opened
+	 * @return Whether the image has started opening
 	 */
 	public boolean safeOpen(String filePath) {
-		try {
-			model.openImage(filePath);
-			return true;
-		} catch (IOException e) {
+		model.openImageAsync(filePath, (IOException e) -> {
 			JOptionPane.showMessageDialog(controller.getContentPane(), msg("File_Exception_e1"));
-			return false;
-		}
+		});
+		return true;
 	}
 
 	/**
-	 * Export the current image, showing an error message if there is an IO error
+	 * Export the current image in the background, showing its progress, then a message once it's exported, or an error message if
+	 * there is an IO error
 	 * @param exportFilepath The filepath to export the image to
 	 * @param imageFormat The image format to export the image as
-	 * @return Whether the image was exported
+	 * @param onExported Called once the image has been exported
+	 * @return Whether the image has started exporting
 	 */
-	public boolean export(String exportFilepath, String imageFormat) {
+	public boolean export(String exportFilepath, String imageFormat, Runnable onExported) {
 		String cleanPath = Utils.withFileExtension(exportFilepath, imageFormat);
-		try {
-			model.exportImage(cleanPath, imageFormat);
-		} catch (IOException err) {
-			JOptionPane.showMessageDialog(controller.getContentPane(), msg("File_IO_Exception_err"));
-			return false;
-		}
+		WriteProgress progress = new WriteProgress(msg("File_Exporting"), msg("File_IO_Exception_err"), onExported);
+		progress.start(model.exportImageAsync(cleanPath, imageFormat, progress));
 		return true;
 	}
 
+	/** Shows the progress of a background write in a {@link ProgressMonitor} (which can cancel it), and any error once it's over */
+	private class WriteProgress implements SaveListener {
+		private String note;
+		private String errorMessage;
+		private Runnable onSaved;
+		private ProgressMonitor monitor;
+		private ImageSaver saver;
+
+		/**
+		 * Create a new WriteProgress
+		 * @param note The note shown in the progress monitor
+		 * @param errorMessage The message shown if the write fails
+		 * @param onSaved Called once the write has succeeded, or null
+		 */
+		WriteProgress(String note, String errorMessage, Runnable onSaved) {
+			this.note = note;
+			this.errorMessage = errorMessage;
+			this.onSaved = onSaved;
+		}
+
+		/**
+		 * Start showing the write's progress. The monitor only pops up if the write looks like it will take a while.
+		 * @param saver The saver doing the write
+		 */
+		void start(ImageSaver saver) {
+			this.saver = saver;
+			monitor = new ProgressMonitor(controller.getContentPane(), note, saver.getFile().getName(), 0, 100);
+		}
+
+		@Override
+		public void progress(float percent) {
+			// Progress may arrive after the write is over, if it was finished off early by AndieModel#finishSaving()
+			if (monitor == null) return;
+			if (monitor.isCanceled()) {
+				saver.cancel();
+				return;
+			}
+			monitor.setProgress((int) percent);
+		}
+
+		@Override
+		public void saved() {
+			close();
+			if (onSaved != null) onSaved.run();
+		}
+
+		@Override
+		public void cancelled() {
+			close();
+		}
+
+		@Override
+		public void failed(IOException e) {
+			close();
+			JOptionPane.showMessageDialog(controller.getContentPane(), errorMessage);
+		}
+
+		/** Close the progress monitor, for good */
+		private void close() {
+			if (monitor != null)
+				monitor.close();
+			monitor = null;
+		}
+	}
+
 }
@@ -2,15 +2,20 @@ package cosc202.andie.models;
 
 import java.awt.Dimension;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.InputEvent;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.EventListener;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
-import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
 
 
 import cosc202.andie.ImageOperation;
@@ -18,6 +23,7 @@ import cosc202.andie.Utils;
 import cosc202.andie.Utils.ExtensionException;
 import cosc202.andie.models.EditableImage.ImageListener;
 import cosc202.andie.models.EditableImage.OperationListener;
+import cosc202.andie.models.ImageSaver.SaveListener;
 
 /**
  * <p>
@@ -46,8 +52,22 @@ public class AndieModel {
 
 	private EditableImage image;
 	private BufferedImage previewImage;
+	private Dimension previewSize;
+	private Rectangle workingImageChange;
 	private boolean isImageOpen = false;
 	private String imageFilepath;
+	/** The operation log of the current image's file */
+	private OpLog opLog;
+	/** The loader of the image being opened in the background, or null if none is */
+	private ImageLoader loader;
+	/** Writes images (and their operation logs) in the background, one at a time, so that writes to the same file can't overlap */
+	private ExecutorService saveExecutor = Executors.newSingleThreadExecutor((Runnable task) -> {
+		Thread thread = new Thread(task, "Image saver");
+		thread.setDaemon(true);
+		return thread;
+	});
+	/** What's left to do (on the event dispatch thread) for background writes that have finished */
+	private ArrayList<Runnable> saveCompletions = new ArrayList<Runnable>();
 
 	private Dimension frameSize;
 	private Point frameLocation;
@@ -74,9 +94,10 @@ public class AndieModel {
 
 	/** Create a new AndieModel */
 	public AndieModel() {
-		this.operations = new Operations(this);
 		this.mouse = new MouseModel(this);
 		this.overlay = new OverlayModel(this);
+		// After the overlay, which the operations model listens to
+		this.operations = new Operations(this);
 		this.tool = new ToolModel(this);
 		this.macros = new MacrosModel(this);
 		init();
@@ -84,10 +105,15 @@ public class AndieModel {
 
 	/** Initialize the model without an image */
 	public void init() {
+		if (loader != null)
+			loader.abort();
+		loader = null;
 		image = null;
 		previewImage = null;
+		previewSize = null;
 		isImageOpen = false;
 		imageFilepath = null;
+		opLog = null;
 
 		notifyListeners(imageStatusListeners);
 	}
@@ -151,6 +177,28 @@ public class AndieModel {
 		return image.getCurrentImage();
 	}
 
+	/**
+	 * <p>Get the size of the current working image, in image pixels</p>
+	 * <p>This is usually the size of {@link #getWorkingImage()}, but a preview may have been drawn at a lower resolution
+	 * than the image it represents (see {@link #setPreviewImage(BufferedImage, Dimension)}).</p>
+	 * @return The size the working image should be displayed at
+	 */
+	public Dimension getWorkingImageSize() {
+		if (previewImage != null && previewSize != null)
+			return new Dimension(previewSize);
+		BufferedImage workingImage = getWorkingImage();
+		return new Dimension(workingImage.getWidth(), workingImage.getHeight());
+	}
+
+	/**
+	 * <p>Get the part of the working image that has changed, while working image listeners are being notified</p>
+	 * <p>This is only known when a preview image has been drawn on in place (see {@link #setPreviewImage(BufferedImage, Dimension, Rectangle)}).</p>
+	 * @return The changed rectangle, in the working image's pixels, or null if it may all have changed
+	 */
+	public Rectangle getWorkingImageChange() {
+		return workingImageChange;
+	}
+
 	/**
 	 * Is there an image open?
 	 * @return True if there is an image open
@@ -159,6 +207,15 @@ public class AndieModel {
 		return isImageOpen;
 	}
 
+	/**
+	 * <p>Is an image being opened in the background?</p>
+	 * <p>While it is, {@link #hasImage()} is false, but a subsampled preview of it may be the working image.</p>
+	 * @return True if an image is being opened
+	 */
+	public boolean isImageLoading() {
+		return loader != null;
+	}
+
 	/**
 	 * Is there a preview image?
 	 * @return True if there is a preview image
@@ -169,8 +226,10 @@ public class AndieModel {
 
 	/** Closes the current image and notifies the relevant listeners */
 	public void closeImage() {
-		image.unregisterImageListener(imageListener);
-		image.unregisterOperationListener(imageOperationListener);
+		if (image != null) {
+			image.unregisterImageListener(imageListener);
+			image.unregisterOperationListener(imageOperationListener);
+		}
 		init();
 		notifyListeners(imageStatusListeners);
 		notifyListeners(workingImageListeners);
@@ -184,19 +243,126 @@ public class AndieModel {
 	 * @throws IOException If there is an error reading the image
 	 */
 	public void openImage(String filepath) throws IOException {
-		// Open image at filepath
-		BufferedImage newImage = ImageIO.read(new File(filepath));
-		File operationsFile = new File(filepath + ".ops");
-		String opsString = "";
-		if (operationsFile.exists()) {
+		ImageLoader newLoader = new ImageLoader(new File(filepath));
+		try {
+			BufferedImage newImage = newLoader.read();
+			OpLog newOpLog = readOpLog(filepath);
+			setImage(filepath, new EditableImage(newImage, newOpLog.getOperations()), newOpLog);
+		} finally {
+			newLoader.close();
+		}
+	}
+
+	/**
+	 * <p>Open a new image in the background, and notify the relevant listeners once it has been opened</p>
+	 * <p>
+	 * If the image is large, a subsampled preview of it is read first and shown as the working image (at the full image's size)
+	 * while the full image is read and its operations are replayed. Opening another image, or closing this one, abandons the open.
+	 * </p>
+	 * @param filepath The filepath of the image to open
+	 * @param onError Called (on the event dispatch thread) if the image can't be read
+	 */
+	public void openImageAsync(String filepath, Consumer<IOException> onError) {
+		if (loader != null)
+			loader.abort();
+		ImageLoader newLoader = new ImageLoader(new File(filepath));
+		loader = newLoader;
+
+		Thread thread = new Thread(() -> {
 			try {
-				opsString = Utils.readString(operationsFile, Charset.defaultCharset());
+				Dimension size = newLoader.readSize();
+				// Show the preview as it's read, since some formats take nearly as long to subsample as to read in full
+				BufferedImage preview = newLoader.readPreview(ImageLoader.PREVIEW_SIZE, (BufferedImage partial) -> {
+					SwingUtilities.invokeLater(() -> showLoadingPreview(newLoader, filepath, partial, size));
+				});
+				if (preview != null)
+					SwingUtilities.invokeLater(() -> showLoadingPreview(newLoader, filepath, preview, size));
+
+				BufferedImage newImage = newLoader.read();
+				OpLog newOpLog = readOpLog(filepath);
+				EditableImage newEditableImage = new EditableImage(newImage, newOpLog.getOperations());
+				SwingUtilities.invokeLater(() -> {
+					if (loader != newLoader) return;
+					loader = null;
+					setImage(filepath, newEditableImage, newOpLog);
+				});
 			} catch (IOException e) {
-				opsString = "";
+				failOpen(newLoader, e, onError);
+			} catch (RuntimeException | OutOfMemoryError e) {
+				// Decoders can throw these on corrupt or very large files, which are reported like any other unreadable image
+				failOpen(newLoader, new IOException("Can't read image: " + e, e), onError);
+			} finally {
+				newLoader.close();
 			}
+		}, "Image loader");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Abandon an image that couldn't be opened, and report the error (on the event dispatch thread)
+	 * @param imageLoader The loader that failed, which is ignored if the image is no longer being opened by it
+	 * @param e The error
+	 * @param onError Called with the error, if the image was still being opened
+	 */
+	private void failOpen(ImageLoader imageLoader, IOException e, Consumer<IOException> onError) {
+		SwingUtilities.invokeLater(() -> {
+			if (loader != imageLoader) return;
+			init();
+			notifyListeners(workingImageListeners);
+			notifyListeners(filepathListeners);
+			onError.accept(e);
+		});
+	}
+
+	/**
+	 * Show a preview of an image being opened as the working image, and notify the relevant listeners
+	 * @param imageLoader The loader the preview was read by, which is ignored if the image is no longer being opened by it
+	 * @param filepath The filepath of the image being opened
+	 * @param preview The preview, which may not be completely read yet
+	 * @param size The size of the image being opened
+	 */
+	private void showLoadingPreview(ImageLoader imageLoader, String filepath, BufferedImage preview, Dimension size) {
+		if (loader != imageLoader) return;
+		boolean firstPreview = previewImage == null;
+		previewImage = preview;
+		previewSize = size;
+		if (firstPreview) {
+			imageFilepath = filepath;
+			notifyListeners(imageStatusListeners);
+			notifyListeners(filepathListeners);
+		}
+		notifyListeners(workingImageListeners);
+	}
+
+	/**
+	 * Read the operation log saved alongside an image
+	 * @param filepath The filepath of the image
+	 * @return The log, which is empty if it doesn't exist or can't be read
+	 */
+	private static OpLog readOpLog(String filepath) {
+		File operationsFile = new File(filepath + ".ops");
+		try {
+			return OpLog.open(operationsFile);
+		} catch (IOException e) {
+			return new OpLog(operationsFile);
 		}
+	}
 
-		image = opsString != null ? new EditableImage(newImage, opsString) : new EditableImage(newImage);
+	/**
+	 * Make an opened image the current image, and notify the relevant listeners
+	 * @param filepath The filepath the image was opened from
+	 * @param newImage The image
+	 * @param newOpLog The image's operation log
+	 */
+	private void setImage(String filepath, EditableImage newImage, OpLog newOpLog) {
+		if (loader != null)
+			loader.abort();
+		loader = null;
+		image = newImage;
+		opLog = newOpLog;
+		previewImage = null;
+		previewSize = null;
 
 		this.imageFilepath = filepath;
 		isImageOpen = true;
@@ -207,6 +373,7 @@ public class AndieModel {
 
 		imageListener = () -> {
 			previewImage = null;
+			previewSize = null;
 			notifyListeners(workingImageListeners);
 			notifyListeners(imageListeners);
 		};
@@ -240,18 +407,132 @@ public class AndieModel {
 		if (!Utils.hasValidFileExtension(filepath)) {
 			throw new ExtensionException("SAVE_EXCEPTION");
 		}
+		// Let any background writes finish first, since they may be to the same files
+		finishSaving();
 		String extension = Utils.getFileExtension(filepath);
-		if (!ImageIO.write(image.getOriginalImage(), extension, new File(filepath))) {
-			throw new IOException("SAVE_EXCEPTION");
-		}
-		;
-		String opsFilename = filepath + ".ops";
-		Utils.writeString(new File(opsFilename), image.getOpsString(), Charset.defaultCharset());
+		new ImageSaver(image.getOriginalImage(), extension, new File(filepath)).write(null);
+		getOpLog(filepath).save(image.getOperations());
 		this.imageFilepath = filepath;
 		notifyListeners(filepathListeners);
 		image.saved();
 	}
 
+	/**
+	 * <p>Save the current image to a given filepath in the background</p>
+	 * <p>
+	 * The image's original and its operations are saved as they are now, so the image can be edited while they're written.
+	 * Once they have been, the image is marked as saved (as of now, not any edits made since) and its filepath is updated.
+	 * </p>
+	 * @param filepath The filepath to save the image to
+	 * @param listener Notified of the write's progress, and when it's over
+	 * @return The saver writing the image, which can cancel it
+	 * @throws ExtensionException If the filepath does not have a valid extension
+	 */
+	public ImageSaver saveImageAsync(String filepath, SaveListener listener) throws ExtensionException {
+		if (!Utils.hasValidFileExtension(filepath)) {
+			throw new ExtensionException("SAVE_EXCEPTION");
+		}
+		EditableImage savedImage = image;
+		long revision = savedImage.getRevision();
+		List<ImageOperation> operations = new ArrayList<ImageOperation>(savedImage.getOperations());
+		OpLog savedOpLog = getOpLog(filepath);
+		ImageSaver saver = new ImageSaver(savedImage.getOriginalImage(), Utils.getFileExtension(filepath), new File(filepath));
+
+		write(saver, listener, () -> savedOpLog.save(operations), () -> {
+			// The image may have been closed while it was saved
+			if (image != savedImage) return;
+			imageFilepath = filepath;
+			savedImage.saved(revision);
+			notifyListeners(filepathListeners);
+		});
+		return saver;
+	}
+
+	/**
+	 * Wait for any background writes to finish, and finish them off (e.g. marking the image as saved)
+	 * <p>Called on the event dispatch thread, e.g. before closing ANDIE.</p>
+	 */
+	public void finishSaving() {
+		try {
+			saveExecutor.submit(() -> {}).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// An empty task can't fail
+		}
+		runSaveCompletions();
+	}
+
+	/**
+	 * Get the operation log to save the current image's operations to
+	 * @param filepath The filepath the image is being saved to
+	 * @return The current log if it's for the filepath, otherwise a new log, which becomes the current one
+	 */
+	private OpLog getOpLog(String filepath) {
+		File operationsFile = new File(filepath + ".ops");
+		if (opLog == null || !opLog.getFile().equals(operationsFile)) {
+			opLog = new OpLog(operationsFile);
+		}
+		return opLog;
+	}
+
+	/**
+	 * Write an image in the background, then do something else in the background, then (on the event dispatch thread) finish off
+	 * @param saver The saver to write the image with
+	 * @param listener Notified of the write's progress, and when it's over
+	 * @param afterWrite Done in the background once the image has been written, or null
+	 * @param onSaved Done on the event dispatch thread once everything has been written (before the listener is told), or null
+	 */
+	private void write(ImageSaver saver, SaveListener listener, SaveTask afterWrite, Runnable onSaved) {
+		saveExecutor.execute(() -> {
+			IOException error = null;
+			float[] lastPercent = { -1 };
+			try {
+				saver.write((float percent) -> {
+					// ImageWriters may report progress for every row, which is far more often than it's worth showing
+					if (percent - lastPercent[0] < 1) return;
+					lastPercent[0] = percent;
+					SwingUtilities.invokeLater(() -> listener.progress(percent));
+				});
+				if (afterWrite != null)
+					afterWrite.run();
+			} catch (IOException e) {
+				error = e;
+			} catch (Throwable e) {
+				// Anything else (e.g. a writer's RuntimeException, or running out of memory) still has to end the save
+				error = new IOException("Can't save image: " + e, e);
+			}
+
+			IOException failure = error;
+			synchronized (saveCompletions) {
+				saveCompletions.add(() -> {
+					if (failure == null) {
+						if (onSaved != null)
+							onSaved.run();
+						listener.saved();
+					} else if (saver.isCancelled()) {
+						listener.cancelled();
+					} else {
+						listener.failed(failure);
+					}
+				});
+			}
+			SwingUtilities.invokeLater(this::runSaveCompletions);
+		});
+	}
+
+	/** Finish off background writes that have finished, on the event dispatch thread */
+	private void runSaveCompletions() {
+		ArrayList<Runnable> completions;
+		synchronized (saveCompletions) {
+			completions = new ArrayList<Runnable>(saveCompletions);
+			saveCompletions.clear();
+		}
+		for (Runnable completion : completions) {
+			completion.run();
+		}
+	}
+
 	/**
 	 * Save the current image to the current filepath
 	 * @see #saveImage(String)
@@ -280,11 +561,30 @@ public class AndieModel {
 	 * @throws IOException If there is an error writing the image
 	 */
 	public void exportImage(String filepath, String format) throws IOException {
-		BufferedImage exportImage = image.getExportImage(format);
-		File exportFile = new File(filepath);
-		boolean result = ImageIO.write(exportImage, format, exportFile);
-		if (!result)
-			throw new IOException();
+		new ImageSaver(image.getExportImage(format), format, new File(filepath)).write(null);
+	}
+
+	/**
+	 * Export the current image to a given filepath, with a given format, in the background
+	 * <p>A copy of the current image is exported, so the image can be edited while it's written.</p>
+	 * @param filepath The filepath to export the image to
+	 * @param format The format to export the image in
+	 * @param listener Notified of the write's progress, and when it's over
+	 * @return The saver writing the image, which can cancel it
+	 */
+	public ImageSaver exportImageAsync(String filepath, String format, SaveListener listener) {
+		ImageSaver saver = new ImageSaver(image.getExportImage(format), format, new File(filepath));
+		write(saver, listener, null, null);
+		return saver;
+	}
+
+	/** Something done in the background as part of a write */
+	private interface SaveTask {
+		/**
+		 * Do the task
+		 * @throws IOException If something can't be written
+		 */
+		public void run() throws IOException;
 	}
 
 	/**
@@ -388,8 +688,30 @@ public class AndieModel {
 	 * @param image The image to set the preview image to
 	 */
 	public void setPreviewImage(BufferedImage image) {
+		setPreviewImage(image, null);
+	}
+
+	/**
+	 * Sets the preview image, drawn at a lower resolution than the image it represents, and notifies relevant listeners
+	 * @param image The image to set the preview image to
+	 * @param size The size of the image the preview represents (i.e. the size to display it at), or null if it's full resolution
+	 */
+	public void setPreviewImage(BufferedImage image, Dimension size) {
+		setPreviewImage(image, size, null);
+	}
+
+	/**
+	 * Sets the preview image, which may be the current preview image with only part of it drawn on, and notifies relevant listeners
+	 * @param image The image to set the preview image to
+	 * @param size The size of the image the preview represents (i.e. the size to display it at), or null if it's full resolution
+	 * @param changed The part of the image that has changed since the last preview, or null if it may all have changed
+	 */
+	public void setPreviewImage(BufferedImage image, Dimension size, Rectangle changed) {
 		previewImage = image;
+		previewSize = size;
+		workingImageChange = changed;
 		notifyListeners(workingImageListeners);
+		workingImageChange = null;
 	}
 
 	/**
@@ -397,6 +719,7 @@ public class AndieModel {
 	 */
 	public void clearPreviewImage() {
 		previewImage = null;
+		previewSize = null;
 		notifyListeners(workingImageListeners);
 	}
 
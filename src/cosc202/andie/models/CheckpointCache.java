@@ -0,0 +1,209 @@
+package cosc202.andie.models;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>
+ * A cache of rendered snapshots ("checkpoints") part way through an {@link EditableImage}'s operation stack.
+ * </p>
+ *
+ * <p>
+ * A checkpoint at index n holds the result of applying the first n operations to the original image.
+ * When the image needs to be rebuilt (e.g. on undo), only the operations after the nearest checkpoint need to be replayed,
+ * rather than every operation since the original.
+ * </p>
+ *
+ * <p>
+ * Checkpoints are taken every {@link #getInterval()} operations, and after any operation that took longer than
+ * {@link #getExpensiveThreshold()} milliseconds to draw. The oldest checkpoints are evicted once the cache grows beyond its memory budget.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">cc by-nc-sa 4.0</a>
+ * </p>
+ *
+ * @see EditableImage
+ *
+ * @author Jeb Nicholson
+ * @version 1.0
+ */
+public class CheckpointCache {
+
+	/** The default number of operations between checkpoints */
+	public static final int DEFAULT_INTERVAL = 5;
+	/** The default draw time (in milliseconds) above which an operation is checkpointed regardless of the interval */
+	public static final long DEFAULT_EXPENSIVE_THRESHOLD = 250;
+	/** The default memory budget (in bytes), a quarter of the maximum heap */
+	public static final long DEFAULT_BUDGET = Runtime.getRuntime().maxMemory() / 4;
+
+	private TreeMap<Integer, BufferedImage> checkpoints = new TreeMap<Integer, BufferedImage>();
+	private long usedBytes;
+
+	private long budget;
+	private int interval;
+	private long expensiveThreshold;
+
+	/** Create a new CheckpointCache with the default settings */
+	public CheckpointCache() {
+		this(DEFAULT_BUDGET, DEFAULT_INTERVAL, DEFAULT_EXPENSIVE_THRESHOLD);
+	}
+
+	/**
+	 * Create a new CheckpointCache
+	 * @param budget The maximum number of bytes of image data to keep
+	 * @param interval The number of operations between checkpoints
+	 * @param expensiveThreshold The draw time (in milliseconds) above which an operation is always checkpointed
+	 */
+	public CheckpointCache(long budget, int interval, long expensiveThreshold) {
+		this.budget = budget;
+		this.interval = Math.max(1, interval);
+		this.expensiveThreshold = expensiveThreshold;
+	}
+
+	/**
+	 * Get the memory budget of the cache
+	 * @return The maximum number of bytes of image data to keep
+	 */
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Set the memory budget of the cache, evicting checkpoints if it is now over budget
+	 * @param budget The maximum number of bytes of image data to keep
+	 */
+	public void setBudget(long budget) {
+		this.budget = budget;
+		evict();
+	}
+
+	/**
+	 * Get the number of operations between checkpoints
+	 * @return The number of operations between checkpoints
+	 */
+	public int getInterval() {
+		return interval;
+	}
+
+	/**
+	 * Set the number of operations between checkpoints
+	 * @param interval The number of operations between checkpoints
+	 */
+	public void setInterval(int interval) {
+		this.interval = Math.max(1, interval);
+	}
+
+	/**
+	 * Get the draw time above which an operation is always checkpointed
+	 * @return The threshold in milliseconds
+	 */
+	public long getExpensiveThreshold() {
+		return expensiveThreshold;
+	}
+
+	/**
+	 * Set the draw time above which an operation is always checkpointed
+	 * @param expensiveThreshold The threshold in milliseconds
+	 */
+	public void setExpensiveThreshold(long expensiveThreshold) {
+		this.expensiveThreshold = expensiveThreshold;
+	}
+
+	/**
+	 * Get the number of bytes of image data currently held by the cache
+	 * @return The number of bytes held
+	 */
+	public long getUsedBytes() {
+		return usedBytes;
+	}
+
+	/**
+	 * Get the number of checkpoints currently held by the cache
+	 * @return The number of checkpoints
+	 */
+	public int size() {
+		return checkpoints.size();
+	}
+
+	/**
+	 * Should the result of the operation at a given index be checkpointed?
+	 * @param index The number of operations applied to produce the result
+	 * @param drawMillis How long the last operation took to draw
+	 * @return True if a checkpoint should be taken
+	 */
+	public boolean shouldCheckpoint(int index, long drawMillis) {
+		if (index <= 0 || checkpoints.containsKey(index)) return false;
+		return index % interval == 0 || drawMillis >= expensiveThreshold;
+	}
+
+	/**
+	 * <p>Store a checkpoint.</p>
+	 * <p>The cache takes ownership of the image, so it must not be modified after being stored.
+	 * Images larger than the whole budget are not stored.</p>
+	 * @param index The number of operations applied to produce the image
+	 * @param image The rendered image
+	 */
+	public void put(int index, BufferedImage image) {
+		long bytes = sizeOf(image);
+		if (bytes > budget) return;
+		remove(index);
+		checkpoints.put(index, image);
+		usedBytes += bytes;
+		evict();
+	}
+
+	/**
+	 * Get the checkpoint with the greatest index less than or equal to the given index
+	 * @param index The maximum index
+	 * @return The checkpoint (index and image), or null if there is none
+	 */
+	public Map.Entry<Integer, BufferedImage> floor(int index) {
+		return checkpoints.floorEntry(index);
+	}
+
+	/**
+	 * Remove the checkpoint at a given index
+	 * @param index The index of the checkpoint
+	 */
+	public void remove(int index) {
+		BufferedImage removed = checkpoints.remove(index);
+		if (removed != null)
+			usedBytes -= sizeOf(removed);
+	}
+
+	/**
+	 * Remove every checkpoint above a given index (e.g. after the operations above it have been undone)
+	 * @param index The greatest index to keep
+	 */
+	public void truncate(int index) {
+		while (!checkpoints.isEmpty() && checkpoints.lastKey() > index) {
+			remove(checkpoints.lastKey());
+		}
+	}
+
+	/** Remove every checkpoint */
+	public void clear() {
+		checkpoints.clear();
+		usedBytes = 0;
+	}
+
+	/** Evict the oldest checkpoints until the cache is within its budget */
+	private void evict() {
+		while (usedBytes > budget && !checkpoints.isEmpty()) {
+			remove(checkpoints.firstKey());
+		}
+	}
+
+	/**
+	 * Estimate the memory used by an image's pixel data
+	 * @param image The image to measure
+	 * @return The approximate size in bytes
+	 */
+	public static long sizeOf(BufferedImage image) {
+		DataBuffer buffer = image.getRaster().getDataBuffer();
+		return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+	}
+}
@@ -10,6 +10,9 @@ import java.awt.image.*;
 import javax.swing.JOptionPane;
 
 import cosc202.andie.ImageOperation;
+import cosc202.andie.RegionOperation;
+import cosc202.andie.Replayer;
+import cosc202.andie.TileEngine;
 import cosc202.andie.Utils;
 import cosc202.andie.ImageOperation.ImageOperationException;
 
@@ -34,6 +37,14 @@ import static cosc202.andie.LanguageConfig.msg;
  * being used to allow undone operations to be redone.
  * </p>
  * 
+ * <p>
+ * To keep undo fast on long edit sessions, a {@link CheckpointCache} holds snapshots of the image
+ * part way through the stack, so that only the operations after the nearest checkpoint need to be replayed.
+ * Operations that only touch a small region ({@link RegionOperation}s) are undone by restoring the tiles
+ * they overwrote from a {@link TileUndoStore}, and operations that change the image size leave
+ * the image from before them as a checkpoint.
+ * </p>
+ * 
  * <p> 
  * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
  * </p>
@@ -55,8 +66,18 @@ public class EditableImage {
     private Stack<ImageOperation> ops;
     /** A memory of 'undone' operations to support 'redo'. */
     private Stack<ImageOperation> redoOps;
-    /** The ops applied as of last save */
-    private String lastSavedOps;
+    /** The revision of each operation in {@link ops}. A revision is a number given to an operation when it's applied, never reused. */
+    private Stack<Long> revisions = new Stack<Long>();
+    /** The revision of each operation in {@link redoOps} */
+    private Stack<Long> redoRevisions = new Stack<Long>();
+    /** The last revision given to an operation */
+    private long lastRevision;
+    /** The revision of the image as of the last save: that of its last operation, or 0 if it had none */
+    private long savedRevision;
+    /** Rendered snapshots part way through {@link ops}, so that {@link refresh} doesn't need to start from {@link original}. */
+    private CheckpointCache checkpoints = new CheckpointCache();
+    /** The pixels overwritten by each {@link RegionOperation} in {@link ops}, so they can be undone without a {@link refresh}. */
+    private TileUndoStore tileUndo = new TileUndoStore();
 
     /**
      * <p>
@@ -70,7 +91,23 @@ public class EditableImage {
         this.ops = stringToOps(serializedOps);
         redoOps = new Stack<ImageOperation>();
         this.refresh();
-        lastSavedOps = opsToString(ops);
+        initRevisions();
+    }
+
+    /**
+     * <p>
+     * Create a new EditableImage.
+     * </p>
+     * @param image The original image
+     * @param operations The operations to be applied to the image, oldest first
+     */
+    public EditableImage(BufferedImage image, List<ImageOperation> operations) {
+        this.original = image;
+        this.ops = new Stack<ImageOperation>();
+        ops.addAll(operations);
+        redoOps = new Stack<ImageOperation>();
+        this.refresh();
+        initRevisions();
     }
 
     /**
@@ -82,7 +119,7 @@ public class EditableImage {
         this.ops = new Stack<ImageOperation>();
         redoOps = new Stack<ImageOperation>();
         this.refresh();
-        lastSavedOps = opsToString(ops);
+        initRevisions();
     }
 
     /**
@@ -98,10 +135,19 @@ public class EditableImage {
      * <p> Used to determine if the image has been modified since the last save. </p>
      */
     public void saved() {
-        lastSavedOps = opsToString(ops);
+        savedRevision = getRevision();
         notifyImageListeners(imageListeners);
     }
 
+    /**
+     * Informs the EditableImage that it has been saved as of an earlier revision, e.g. by a save that happened in the background.
+     * <p> Unlike {@link saved()}, image listeners aren't notified, since the image itself hasn't changed. </p>
+     * @param revision The {@link getRevision() revision} of the image that was saved
+     */
+    public void saved(long revision) {
+        savedRevision = revision;
+    }
+
     /**
      * Gets the current image's operations as an Base64 encoded string
      * @return The operations as an Base64 encoded string
@@ -110,6 +156,14 @@ public class EditableImage {
         return opsToString(ops);
     }
 
+    /**
+     * Gets the operations applied to the current image
+     * @return The operations, oldest first. The list can't be modified, and changes as operations are applied and undone.
+     */
+    public List<ImageOperation> getOperations() {
+        return Collections.unmodifiableList(ops);
+    }
+
     /**
      * Does the current image have any operations applied to it?
      * @return true if there are operations
@@ -126,17 +180,29 @@ public class EditableImage {
      * @return The image to export
      */
     public BufferedImage getExportImage(String format) {
-        boolean formatSupportsTransparency = format == "png" || format == "gif";
-        if (!formatSupportsTransparency && current.getTransparency() != Transparency.OPAQUE) {
-            BufferedImage exportImage = new BufferedImage(current.getWidth(), current.getHeight(), BufferedImage.TYPE_INT_RGB);
+        return getExportImage(current, format);
+    }
+
+    /**
+     * Creates an appropriately rendered copy of an image for export
+     * <p> If the image has transparency, and the format does not support transparency,
+     * the image will be rendered on a white background. </p>
+     * @param image The image to export
+     * @param format The image format to export as. (pngs and gifs support transparency, jpgs do not)
+     * @return The image to export, which is always a copy
+     */
+    public static BufferedImage getExportImage(BufferedImage image, String format) {
+        boolean formatSupportsTransparency = format.equalsIgnoreCase("png") || format.equalsIgnoreCase("gif");
+        if (!formatSupportsTransparency && image.getTransparency() != Transparency.OPAQUE) {
+            BufferedImage exportImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
             Graphics2D g = exportImage.createGraphics();
             g.setColor(Color.WHITE);
             g.fillRect(0, 0, exportImage.getWidth(), exportImage.getHeight());
-            g.drawImage(current, 0, 0, null);
+            g.drawImage(image, 0, 0, null);
             g.dispose();
             return exportImage;
         }
-        return Utils.deepCopy(current);
+        return Utils.deepCopy(image);
     }
 
     /**
@@ -151,14 +217,15 @@ public class EditableImage {
      */
     public boolean apply(ImageOperation imageOperation) {
         try {
-            current = imageOperation.draw(current);
+            draw(imageOperation);
             notifyImageListeners(imageListeners);
         } catch (ImageOperationException ex) {
             JOptionPane.showMessageDialog(null, msg("Apply_Exception") + "\n" + ex.getMessage(), msg("Apply_Exception_Title"), JOptionPane.WARNING_MESSAGE);
             return false;
         }
-        ops.add(imageOperation);
         redoOps.clear();
+        redoRevisions.clear();
+        revisions.push(++lastRevision);
         notifyImageListeners(imageListeners);
         for (OperationListener listener : operationListeners) {
             listener.operationApplied(imageOperation);
@@ -166,6 +233,57 @@ public class EditableImage {
         return true;
     }
 
+    /**
+     * <p>
+     * Apply a sequence of {@link ImageOperation}s to this image, e.g. the operations of a macro.
+     * </p>
+     * 
+     * <p>
+     * Each operation is applied (and can be undone) separately, but they are drawn by the {@link Replayer}, so runs of them
+     * that can be drawn together are. If an operation fails, a warning message will be shown, and neither it nor the operations
+     * after it will be applied.
+     * </p>
+     * 
+     * @param operations The operations to apply, in order.
+     * @return true if every operation was applied, and false otherwise.
+     */
+    public boolean apply(List<ImageOperation> operations) {
+        ArrayList<ImageOperation> applied = new ArrayList<ImageOperation>();
+        boolean failed = false;
+        for (Replayer.Step step : Replayer.plan(operations)) {
+            List<ImageOperation> stepOperations = operations.subList(step.getStart(), step.getEnd());
+            try {
+                if (stepOperations.size() == 1) {
+                    draw(stepOperations.get(0));
+                } else {
+                    long startTime = System.currentTimeMillis();
+                    current = TileEngine.draw(step.getOperation(), current);
+                    ops.addAll(stepOperations);
+                    checkpoint(System.currentTimeMillis() - startTime);
+                }
+            } catch (ImageOperationException ex) {
+                JOptionPane.showMessageDialog(null, msg("Apply_Exception") + "\n" + ex.getMessage(), msg("Apply_Exception_Title"), JOptionPane.WARNING_MESSAGE);
+                failed = true;
+                break;
+            }
+            for (ImageOperation operation : stepOperations) {
+                revisions.push(++lastRevision);
+                applied.add(operation);
+            }
+        }
+        if (applied.isEmpty()) return !failed;
+
+        redoOps.clear();
+        redoRevisions.clear();
+        notifyImageListeners(imageListeners);
+        for (ImageOperation operation : applied) {
+            for (OperationListener listener : operationListeners) {
+                listener.operationApplied(operation);
+            }
+        }
+        return !failed;
+    }
+
     /**
      * Registers a listener to be notified when the image content changes.
      * @param listener The listener to register
@@ -216,7 +334,10 @@ public class EditableImage {
     public void undo() {
         if (ops.isEmpty()) return;
         redoOps.push(ops.pop());
-        refresh();
+        redoRevisions.push(revisions.pop());
+        checkpoints.truncate(ops.size());
+        if (!tileUndo.restore(ops.size(), current))
+            refresh();
         notifyImageListeners(imageListeners);
         for (OperationListener listener : operationListeners) {
             listener.operationRemoved();
@@ -231,13 +352,14 @@ public class EditableImage {
     public void redo()  {
         if (redoOps.isEmpty()) return;
         ImageOperation operationToRedo = redoOps.pop();
+        revisions.push(redoRevisions.pop());
         try {
-            current = operationToRedo.draw(current);
+            draw(operationToRedo);
         } catch (ImageOperationException ex) {
             // No operation should fail when being redone.
+            ops.add(operationToRedo);
             return;
         } finally {
-            ops.add(operationToRedo);
             notifyImageListeners(imageListeners);
             for (OperationListener listener : operationListeners) {
                 listener.operationApplied(operationToRedo);
@@ -245,6 +367,44 @@ public class EditableImage {
         }
     }
 
+    /**
+     * <p>
+     * Draw an operation onto {@link current} and push it onto {@link ops}, recording what's needed to undo it.
+     * </p>
+     * 
+     * <p>
+     * For a {@link RegionOperation}, the tiles it is about to overwrite are recorded in the {@link TileUndoStore}.
+     * If the operation changes the size of the image, it will have drawn into a new image, so the previous
+     * image is kept as a checkpoint (a full snapshot) for free.
+     * </p>
+     * @param operation The operation to draw
+     * @throws ImageOperationException If the operation fails (in which case nothing is pushed)
+     */
+    private void draw(ImageOperation operation) throws ImageOperationException {
+        int index = ops.size();
+        BufferedImage previous = current;
+        if (operation instanceof RegionOperation)
+            tileUndo.record(index, previous, ((RegionOperation) operation).getAffectedArea());
+
+        long startTime = System.currentTimeMillis();
+        try {
+            current = TileEngine.draw(operation, previous);
+        } catch (ImageOperationException ex) {
+            tileUndo.remove(index);
+            throw ex;
+        }
+        long drawMillis = System.currentTimeMillis() - startTime;
+
+        if (current != previous) {
+            tileUndo.remove(index);
+            boolean resized = current.getWidth() != previous.getWidth() || current.getHeight() != previous.getHeight();
+            if (resized && index > 0)
+                checkpoints.put(index, previous);
+        }
+        ops.add(operation);
+        checkpoint(drawMillis);
+    }
+
     /**
     * Returns true if there are undoable operations, and false otherwise.
     */
@@ -279,6 +439,14 @@ public class EditableImage {
         return original;
     }
 
+    /**
+     * Get the cache of rendered checkpoints, e.g. to configure its memory budget
+     * @return The checkpoint cache
+     */
+    public CheckpointCache getCheckpointCache() {
+        return checkpoints;
+    }
+
     /**
      * <p>
      * Reapply the current list of operations to the original.
@@ -286,16 +454,22 @@ public class EditableImage {
      * 
      * <p>
      * While the latest version of the image is stored in {@link current}, this
-     * method makes a fresh copy of the original and applies the operations to it in sequence.
+     * method makes a fresh copy of the nearest checkpoint (or the original if there is none) and applies the 
+     * remaining operations to it in sequence, taking new checkpoints as it goes.
+     * The operations are replayed by the {@link Replayer}, so runs of them that can be drawn together are.
      * This is useful when undoing changes to the image, or in any other case where {@link current}
      * cannot be easily incrementally updated. 
      * </p>
      */
     private void refresh()  {
-        current = Utils.deepCopy(original);
+        Map.Entry<Integer, BufferedImage> checkpoint = checkpoints.floor(ops.size());
+        int start = checkpoint == null ? 0 : checkpoint.getKey();
+        current = Utils.deepCopy(checkpoint == null ? original : checkpoint.getValue());
         try {
-            for (ImageOperation op: ops) {
-                current = op.draw(current);
+            for (Replayer.Step step : Replayer.plan(ops.subList(start, ops.size()))) {
+                long startTime = System.currentTimeMillis();
+                current = TileEngine.draw(step.getOperation(), current);
+                checkpoint(start + step.getEnd(), System.currentTimeMillis() - startTime);
             }
         } catch (ImageOperationException ex) {
             // This should never happen, since the operations have already been applied once.
@@ -303,12 +477,48 @@ public class EditableImage {
         }
     }
 
+    /**
+     * Checkpoint the current image if the {@link CheckpointCache} wants it.
+     * @param drawMillis How long the last operation took to draw
+     */
+    private void checkpoint(long drawMillis) {
+        checkpoint(ops.size(), drawMillis);
+    }
+
+    /**
+     * Checkpoint the current image if the {@link CheckpointCache} wants it.
+     * <p>The checkpoint is a copy, since operations may draw into {@link current} in place.</p>
+     * @param index The number of operations applied to produce the current image
+     * @param drawMillis How long the last operation took to draw
+     */
+    private void checkpoint(int index, long drawMillis) {
+        if (checkpoints.shouldCheckpoint(index, drawMillis))
+            checkpoints.put(index, Utils.deepCopy(current));
+    }
+
     /**
      * Whether the image has been modified
      * @return True if the image has been modified since the last save / open, otherwise false.
      */
     public boolean getModified() {
-        return !getOpsString().equals(lastSavedOps);
+        return getRevision() != savedRevision;
+    }
+
+    /**
+     * Get the revision of the image, which changes whenever an operation is applied, undone or redone,
+     * and returns to an earlier value when the image is undone or redone back to the same operations.
+     * @return The revision of the last operation applied to the image, or 0 if there are none
+     */
+    public long getRevision() {
+        return revisions.isEmpty() ? 0 : revisions.peek();
+    }
+
+    /** Give each of the image's initial operations a revision, and mark the image as saved */
+    private void initRevisions() {
+        for (int i = 0; i < ops.size(); i++) {
+            revisions.push(++lastRevision);
+        }
+        savedRevision = getRevision();
     }
 
     /**
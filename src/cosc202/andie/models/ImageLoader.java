@@ -0,0 +1,214 @@
+package cosc202.andie.models;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+import javax.imageio.IIOException;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.event.IIOReadUpdateListener;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * <p>
+ * Reads an image file, first as a quick subsampled preview and then at full resolution.
+ * </p>
+ *
+ * <p>
+ * The preview is read with {@link ImageReadParam#setSourceSubsampling(int, int, int, int)}, keeping only every nth pixel of every
+ * nth row, so it needs far less memory (and colour conversion) than the full image, and can be shown while the full image is read.
+ * Both are read by the same {@link ImageReader}, so the file's header is only parsed once.
+ * </p>
+ *
+ * <p>
+ * Formats like PNG still have to decompress every row to subsample them, so the preview can also be shown as it's decoded
+ * (see {@link #readPreview(int, Consumer)}), a few rows at a time.
+ * </p>
+ *
+ * <p>
+ * A loader is meant to be used on a background thread. {@link #abort()} may be called from any thread, to stop a read part way through.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">cc by-nc-sa 4.0</a>
+ * </p>
+ *
+ * @see AndieModel#openImageAsync(String, java.util.function.Consumer)
+ *
+ * @author Jeb Nicholson
+ * @version 1.0
+ */
+public class ImageLoader {
+
+	/** The default largest dimension of a preview, in pixels */
+	public static final int PREVIEW_SIZE = 1024;
+	/** The least time between reports of a partly read preview, in milliseconds */
+	public static final long PROGRESS_INTERVAL = 100;
+
+	private File file;
+	private ImageInputStream stream;
+	private volatile ImageReader reader;
+	private volatile boolean aborted;
+
+	/**
+	 * Create a new ImageLoader. Nothing is read until it's needed.
+	 * @param file The image file to read
+	 */
+	public ImageLoader(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Get the image's size, which only needs its header to be read
+	 * @return The size of the full image
+	 * @throws IOException If the file can't be read, or isn't an image
+	 */
+	public Dimension readSize() throws IOException {
+		ImageReader reader = getReader();
+		return new Dimension(reader.getWidth(0), reader.getHeight(0));
+	}
+
+	/**
+	 * Read a subsampled copy of the image, no larger than a given size
+	 * @param maxSize The largest the preview's width and height may be
+	 * @return The preview, or null if the image already fits in the size (so there is no point previewing it)
+	 * @throws IOException If the file can't be read, or isn't an image
+	 */
+	public BufferedImage readPreview(int maxSize) throws IOException {
+		return readPreview(maxSize, null);
+	}
+
+	/**
+	 * Read a subsampled copy of the image, no larger than a given size, reporting it as it's read
+	 * @param maxSize The largest the preview's width and height may be
+	 * @param onProgress Given the preview (which is still being written to) every {@link #PROGRESS_INTERVAL} milliseconds while it's
+	 * read, on the thread reading it. May be null.
+	 * @return The preview, or null if the image already fits in the size (so there is no point previewing it)
+	 * @throws IOException If the file can't be read, or isn't an image
+	 */
+	public BufferedImage readPreview(int maxSize, Consumer<BufferedImage> onProgress) throws IOException {
+		Dimension size = readSize();
+		int largest = Math.max(size.width, size.height);
+		if (largest <= maxSize) return null;
+
+		int subsampling = (largest + maxSize - 1) / maxSize;
+		ImageReader reader = getReader();
+		ImageReadParam param = reader.getDefaultReadParam();
+		param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+		if (onProgress == null)
+			return read(param);
+
+		ProgressListener listener = new ProgressListener(onProgress);
+		reader.addIIOReadUpdateListener(listener);
+		try {
+			return read(param);
+		} finally {
+			reader.removeIIOReadUpdateListener(listener);
+		}
+	}
+
+	/**
+	 * Read the full image
+	 * @return The image
+	 * @throws IOException If the file can't be read, isn't an image, or the read was aborted
+	 */
+	public BufferedImage read() throws IOException {
+		return read(getReader().getDefaultReadParam());
+	}
+
+	/**
+	 * Stop reading the image, as soon as possible. Any read in progress or afterwards fails.
+	 */
+	public void abort() {
+		aborted = true;
+		ImageReader reader = this.reader;
+		if (reader != null)
+			reader.abort();
+	}
+
+	/**
+	 * Release the file and the reader. The loader can't be used afterwards.
+	 */
+	public void close() {
+		if (reader != null)
+			reader.dispose();
+		try {
+			if (stream != null)
+				stream.close();
+		} catch (IOException e) {
+			// Nothing more to do with the stream either way
+		}
+	}
+
+	/**
+	 * Read the image with some parameters
+	 * @param param The parameters
+	 * @return The image
+	 * @throws IOException If the image can't be read, or the read was aborted
+	 */
+	private BufferedImage read(ImageReadParam param) throws IOException {
+		BufferedImage image = getReader().read(0, param);
+		if (aborted || image == null)
+			throw new IIOException("Image read aborted");
+		return image;
+	}
+
+	/**
+	 * Get the reader for the file, opening it the first time
+	 * @return The reader
+	 * @throws IOException If the file can't be read, or no reader supports it
+	 */
+	private ImageReader getReader() throws IOException {
+		if (aborted)
+			throw new IIOException("Image read aborted");
+		if (reader != null)
+			return reader;
+		if (!file.canRead())
+			throw new IIOException("Can't read input file!");
+		stream = ImageIO.createImageInputStream(file);
+		if (stream == null)
+			throw new IIOException("Can't create an ImageInputStream!");
+		Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+		if (!readers.hasNext())
+			throw new IIOException("Unsupported image format");
+		ImageReader newReader = readers.next();
+		// Not seek forward only, so the full image can be read after the preview
+		newReader.setInput(stream, false, true);
+		reader = newReader;
+		return reader;
+	}
+
+	/** Reports the image being read, at most every {@link #PROGRESS_INTERVAL} milliseconds */
+	private static class ProgressListener implements IIOReadUpdateListener {
+		private Consumer<BufferedImage> onProgress;
+		private long lastReport = System.currentTimeMillis();
+
+		ProgressListener(Consumer<BufferedImage> onProgress) {
+			this.onProgress = onProgress;
+		}
+
+		@Override
+		public void imageUpdate(ImageReader source, BufferedImage image, int minX, int minY, int width, int height, int periodX, int periodY, int[] bands) {
+			long now = System.currentTimeMillis();
+			if (now - lastReport < PROGRESS_INTERVAL) return;
+			lastReport = now;
+			onProgress.accept(image);
+		}
+
+		@Override
+		public void passStarted(ImageReader source, BufferedImage image, int pass, int minPass, int maxPass, int minX, int minY, int periodX, int periodY, int[] bands) {}
+		@Override
+		public void passComplete(ImageReader source, BufferedImage image) {}
+		@Override
+		public void thumbnailPassStarted(ImageReader source, BufferedImage thumbnail, int pass, int minPass, int maxPass, int minX, int minY, int periodX, int periodY, int[] bands) {}
+		@Override
+		public void thumbnailUpdate(ImageReader source, BufferedImage thumbnail, int minX, int minY, int width, int height, int periodX, int periodY, int[] bands) {}
+		@Override
+		public void thumbnailPassComplete(ImageReader source, BufferedImage thumbnail) {}
+	}
+}
@@ -0,0 +1,203 @@
+package cosc202.andie.models;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.event.IIOWriteProgressListener;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * <p>
+ * Writes an image to a file, reporting its progress, in a way that can be cancelled part way through.
+ * </p>
+ *
+ * <p>
+ * The image is written to a temporary file next to the destination, which then replaces the destination in one step, so the
+ * destination is never left half written (e.g. if the write fails, is cancelled, or ANDIE quits during it).
+ * </p>
+ *
+ * <p>
+ * The image must not change while it's written. It's usually a snapshot taken before the write, so that editing can carry on
+ * while the write happens on a background thread. {@link #cancel()} may be called from any thread.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">cc by-nc-sa 4.0</a>
+ * </p>
+ *
+ * @see AndieModel#saveImageAsync(String, SaveListener)
+ * @see AndieModel#exportImageAsync(String, String, SaveListener)
+ *
+ * @author Jeb Nicholson
+ * @version 1.0
+ */
+public class ImageSaver {
+
+	private BufferedImage image;
+	private String format;
+	private File file;
+	private volatile ImageWriter writer;
+	private volatile boolean cancelled;
+
+	/**
+	 * Create a new ImageSaver. Nothing is written until {@link #write(ProgressListener)} is called.
+	 * @param image The image to write, which must not change while it's written
+	 * @param format The informal name of the format to write, e.g. "png"
+	 * @param file The file to write to
+	 */
+	public ImageSaver(BufferedImage image, String format, File file) {
+		this.image = image;
+		this.format = format;
+		this.file = file;
+	}
+
+	/**
+	 * Get the file the image is written to
+	 * @return The file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Write the image to the file
+	 * @param listener Given the percentage of the image written so far, on the writing thread. May be null.
+	 * @throws IOException If there is no writer for the format, or the image can't be written, or the write was cancelled (in which
+	 * case the file is unchanged)
+	 */
+	public void write(ProgressListener listener) throws IOException {
+		if (cancelled) throw new IIOException("Image write cancelled");
+		Iterator<ImageWriter> writers = ImageIO.getImageWriters(ImageTypeSpecifier.createFromRenderedImage(image), format);
+		if (!writers.hasNext()) throw new IIOException("No writer for format " + format);
+		writer = writers.next();
+		if (listener != null) writer.addIIOWriteProgressListener(new ProgressAdapter(listener));
+
+		File temp = createTempFile(file);
+		boolean written = false;
+		try {
+			try (ImageOutputStream out = ImageIO.createImageOutputStream(temp)) {
+				if (out == null) throw new IIOException("Can't create an ImageOutputStream!");
+				writer.setOutput(out);
+				writer.write(null, new IIOImage(image, null, null), writer.getDefaultWriteParam());
+			}
+			if (cancelled) throw new IIOException("Image write cancelled");
+			replace(temp, file);
+			written = true;
+		} finally {
+			writer.dispose();
+			if (!written) temp.delete();
+		}
+	}
+
+	/**
+	 * Create an empty temporary file next to a destination. Unlike {@link File#createTempFile(String, String, File)}, it gets the
+	 * same permissions as any other new file, which the destination will end up with.
+	 * @param file The destination
+	 * @return The temporary file
+	 * @throws IOException If the file can't be created
+	 */
+	static File createTempFile(File file) throws IOException {
+		File directory = file.getAbsoluteFile().getParentFile();
+		while (true) {
+			File temp = new File(directory, "." + file.getName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+			if (temp.createNewFile()) return temp;
+		}
+	}
+
+	/**
+	 * Replace a destination with a temporary file, in one step where the file system allows it
+	 * @param temp The temporary file, from {@link #createTempFile(File)}
+	 * @param file The destination
+	 * @throws IOException If the file can't be moved
+	 */
+	static void replace(File temp, File file) throws IOException {
+		try {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Cancel the write, as soon as possible. The file is left unchanged.
+	 */
+	public void cancel() {
+		cancelled = true;
+		ImageWriter writer = this.writer;
+		if (writer != null)
+			writer.abort();
+	}
+
+	/**
+	 * Has the write been cancelled?
+	 * @return True if {@link #cancel()} has been called
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/** A listener for the progress of a write */
+	public interface ProgressListener {
+		/**
+		 * Called as the image is written
+		 * @param percent The percentage of the image written so far
+		 */
+		public void progress(float percent);
+	}
+
+	/**
+	 * <p>A listener for a write happening in the background. Its methods are called on the event dispatch thread.</p>
+	 * <p>Exactly one of {@link #saved()}, {@link #cancelled()} and {@link #failed(IOException)} is called, once the write is over.</p>
+	 */
+	public interface SaveListener extends ProgressListener {
+		/** Called when the image has been written */
+		public void saved();
+
+		/** Called when the write was cancelled, leaving the file unchanged */
+		public void cancelled();
+
+		/**
+		 * Called when the image couldn't be written, leaving the file unchanged
+		 * @param e The reason the image couldn't be written
+		 */
+		public void failed(IOException e);
+	}
+
+	/** Passes an {@link ImageWriter}'s progress to a {@link ProgressListener} */
+	private static class ProgressAdapter implements IIOWriteProgressListener {
+		private ProgressListener listener;
+
+		ProgressAdapter(ProgressListener listener) {
+			this.listener = listener;
+		}
+
+		@Override
+		public void imageProgress(ImageWriter source, float percentageDone) {
+			listener.progress(percentageDone);
+		}
+
+		@Override
+		public void imageStarted(ImageWriter source, int imageIndex) {}
+		@Override
+		public void imageComplete(ImageWriter source) {}
+		@Override
+		public void thumbnailStarted(ImageWriter source, int imageIndex, int thumbnailIndex) {}
+		@Override
+		public void thumbnailProgress(ImageWriter source, float percentageDone) {}
+		@Override
+		public void thumbnailComplete(ImageWriter source) {}
+		@Override
+		public void writeAborted(ImageWriter source) {}
+	}
+}
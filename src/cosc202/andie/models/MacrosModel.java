@@ -163,10 +163,7 @@ public class MacrosModel {
 	 */
 	public boolean applyMacroString(String opsString) {
 		Stack<ImageOperation> macroOpsStack = EditableImage.stringToOps(opsString);
-		for (ImageOperation op : macroOpsStack) {
-			if (!model.operations.apply(op)) return false;
-		}
-		return true;
+		return model.operations.apply(macroOpsStack);
 	}
 
 	/** Notify the model that it is being removed. Unregisters relevant listeners */
@@ -107,6 +107,7 @@ public class MouseModel {
 	}
 
 	// All positions are with respect to the current working image
+	// Events are ignored until an image has finished opening, since there is nothing to edit yet
 
 	/**
 	 * Notify the MouseModel of a mouseMoved event
@@ -114,6 +115,7 @@ public class MouseModel {
 	 * @param e The MouseEvent
 	 */
 	public void mouseMoved(Point position, MouseEvent e) {
+		if (!model.hasImage()) return;
 		ArrayList<MouseModelListener> listeners = new ArrayList<MouseModelListener>(mouseModelListeners);
 		for (MouseModelListener listener : listeners) {
 			listener.mouseMoved(new MouseStatus(position, e));
@@ -126,6 +128,7 @@ public class MouseModel {
 	 * @param e The MouseEvent
 	 */
 	public void mouseDragged(Point position, MouseEvent e) {
+		if (!model.hasImage()) return;
 		ArrayList<MouseModelListener> listeners = new ArrayList<MouseModelListener>(mouseModelListeners);
 		for (MouseModelListener listener : listeners) {
 			listener.mouseDragged(new MouseStatus(position, e));
@@ -138,6 +141,7 @@ public class MouseModel {
 	 * @param e The MouseEvent
 	 */
 	public void mouseClicked(Point position, MouseEvent e) {
+		if (!model.hasImage()) return;
 		ArrayList<MouseModelListener> listeners = new ArrayList<MouseModelListener>(mouseModelListeners);
 		for (MouseModelListener listener : listeners) {
 			listener.mouseClicked(new MouseStatus(position, e));
@@ -150,6 +154,7 @@ public class MouseModel {
 	 * @param e The MouseEvent
 	 */
 	public void mouseUp(Point position, MouseEvent e) {
+		if (!model.hasImage()) return;
 		ArrayList<MouseModelListener> listeners = new ArrayList<MouseModelListener>(mouseModelListeners);
 		for (MouseModelListener listener : listeners) {
 			listener.mouseUp(new MouseStatus(position, e));
@@ -162,6 +167,7 @@ public class MouseModel {
 	 * @param e The MouseEvent
 	 */
 	public void mouseDown(Point position, MouseEvent e) {
+		if (!model.hasImage()) return;
 		ArrayList<MouseModelListener> listeners = new ArrayList<MouseModelListener>(mouseModelListeners);
 		for (MouseModelListener listener : listeners) {
 			listener.mouseDown(new MouseStatus(position, e));
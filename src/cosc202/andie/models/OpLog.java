@@ -0,0 +1,339 @@
+package cosc202.andie.models;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import cosc202.andie.EncodableOperation;
+import cosc202.andie.ImageOperation;
+import cosc202.andie.operations.colour.BrightnessAndContrast;
+import cosc202.andie.operations.colour.ConvertToGrey;
+import cosc202.andie.operations.filter.EmbossFilter;
+import cosc202.andie.operations.filter.GaussianBlur;
+import cosc202.andie.operations.filter.MeanFilter;
+import cosc202.andie.operations.filter.MedianFilter;
+import cosc202.andie.operations.filter.SharpenFilter;
+import cosc202.andie.operations.filter.SobelFilter;
+import cosc202.andie.operations.shapes.Elipse;
+import cosc202.andie.operations.shapes.Line;
+import cosc202.andie.operations.shapes.RectangleShape;
+import cosc202.andie.operations.transform.Crop;
+import cosc202.andie.operations.transform.FlipHorizontal;
+import cosc202.andie.operations.transform.FlipVertical;
+import cosc202.andie.operations.transform.Resize;
+import cosc202.andie.operations.transform.Rotate180;
+import cosc202.andie.operations.transform.RotateLeft;
+import cosc202.andie.operations.transform.RotateRight;
+
+/**
+ * <p>
+ * The operation log saved alongside an image (its {@code .ops} file), holding the operations applied to it.
+ * </p>
+ *
+ * <p>
+ * The log is a binary file: a header (the bytes {@code 0x89 'O' 'P' 'S'}, then a version number), followed by a record for each
+ * change to the operation stack. A push record holds the operation's tag and its parameters (see {@link EncodableOperation}), and a
+ * pop record removes the last operation. Operations that aren't encodable are pushed with the tag {@code "java"}, as serialized objects.
+ * </p>
+ *
+ * <p>
+ * Saving only appends the records needed to get from the operations last saved to the current ones, rather than rewriting the
+ * whole file. Once the pops and pushes make up most of the file, or the file was changed by something else, it is rewritten with
+ * just a push for each operation. A rewrite is written to a temporary file which then replaces the log in one step, and reading
+ * stops at the last complete record, so a save that was cut short loses at most the operations it was saving.
+ * </p>
+ *
+ * <p>
+ * Older versions of ANDIE saved the whole operation stack as Base64 encoded Java serialization. Those files are still read, and
+ * replaced with a binary log the next time the image is saved.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">cc by-nc-sa 4.0</a>
+ * </p>
+ *
+ * @see EncodableOperation
+ *
+ * @author Jeb Nicholson
+ * @version 1.0
+ */
+public class OpLog {
+
+	/** The version of the format written by this class */
+	public static final int VERSION = 1;
+
+	private static final byte[] MAGIC = { (byte) 0x89, 'O', 'P', 'S' };
+	private static final int HEADER_LENGTH = MAGIC.length + 4;
+	private static final byte PUSH = 1;
+	private static final byte POP = 2;
+	/** The tag of operations saved as serialized objects */
+	private static final String SERIALIZED_TAG = "java";
+
+	private static HashMap<String, OperationReader> readers = new HashMap<String, OperationReader>();
+	private static HashMap<Class<?>, String> tags = new HashMap<Class<?>, String>();
+
+	static {
+		// Tags are written to saved logs, so must never change
+		register("brightness-contrast", BrightnessAndContrast.class, BrightnessAndContrast::new);
+		register("greyscale", ConvertToGrey.class, ConvertToGrey::new);
+		register("emboss", EmbossFilter.class, EmbossFilter::new);
+		register("gaussian-blur", GaussianBlur.class, GaussianBlur::new);
+		register("mean", MeanFilter.class, MeanFilter::new);
+		register("median", MedianFilter.class, MedianFilter::new);
+		register("sharpen", SharpenFilter.class, SharpenFilter::new);
+		register("sobel", SobelFilter.class, SobelFilter::new);
+		register("ellipse", Elipse.class, Elipse::new);
+		register("line", Line.class, Line::new);
+		register("rectangle", RectangleShape.class, RectangleShape::new);
+		register("crop", Crop.class, Crop::new);
+		register("flip-horizontal", FlipHorizontal.class, FlipHorizontal::new);
+		register("flip-vertical", FlipVertical.class, FlipVertical::new);
+		register("resize", Resize.class, Resize::new);
+		register("rotate-180", Rotate180.class, Rotate180::new);
+		register("rotate-left", RotateLeft.class, RotateLeft::new);
+		register("rotate-right", RotateRight.class, RotateRight::new);
+	}
+
+	private File file;
+	/** The operations in the file, as of the last read or save */
+	private ArrayList<ImageOperation> logged = new ArrayList<ImageOperation>();
+	/** The number of records in the file */
+	private int records;
+	/** Whether the file is a binary log that can be appended to */
+	private boolean appendable;
+	/** The length of the file after the last read or save, to notice changes made by something else */
+	private long length;
+
+	/**
+	 * Create a new, empty OpLog. Nothing is written until it's saved.
+	 * @param file The file to save the log to
+	 */
+	public OpLog(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Read the operation log in a file, either a binary log or a legacy Base64 encoded one
+	 * <p> If the file doesn't exist, the log is empty. If part of the log can't be read, the operations before it are kept. </p>
+	 * @param file The file to read
+	 * @return The log
+	 * @throws IOException If the file can't be read, or is a newer version of the format
+	 */
+	public static OpLog open(File file) throws IOException {
+		OpLog log = new OpLog(file);
+		if (!file.exists()) return log;
+		try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+			byte[] magic = in.readNBytes(MAGIC.length);
+			if (Arrays.equals(magic, MAGIC)) {
+				log.read(new DataInputStream(in));
+			} else {
+				String legacy = new String(magic, StandardCharsets.ISO_8859_1) + new String(in.readAllBytes(), StandardCharsets.ISO_8859_1);
+				log.logged.addAll(EditableImage.stringToOps(legacy.trim()));
+			}
+		}
+		return log;
+	}
+
+	/**
+	 * Get the operations in the log, as of the last read or save
+	 * @return The operations, oldest first
+	 */
+	public List<ImageOperation> getOperations() {
+		return Collections.unmodifiableList(logged);
+	}
+
+	/**
+	 * Get the file the log is saved to
+	 * @return The file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Save a new list of operations to the log, appending only the records needed to get to them from the operations last saved
+	 * @param ops The operations to save, oldest first
+	 * @throws IOException If the log can't be written
+	 */
+	public void save(List<ImageOperation> ops) throws IOException {
+		// Operations are compared by identity: an undone and reapplied operation is a different operation
+		int common = 0;
+		while (common < logged.size() && common < ops.size() && logged.get(common) == ops.get(common)) {
+			common++;
+		}
+		int pops = logged.size() - common;
+		int pushes = ops.size() - common;
+		if (pops == 0 && pushes == 0 && appendable && file.length() == length) return;
+
+		boolean rewrite = !appendable || file.length() != length || records + pops + pushes > 2 * ops.size() + 16;
+		if (rewrite) {
+			common = 0;
+			pops = 0;
+			pushes = ops.size();
+			records = 0;
+		}
+
+		// Appending can only cut the new records short, but a rewrite mustn't truncate the log before the new one is written
+		File target = rewrite ? ImageSaver.createTempFile(file) : file;
+		boolean written = false;
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(target, !rewrite)))) {
+				if (rewrite) {
+					out.write(MAGIC);
+					out.writeInt(VERSION);
+				}
+				for (int i = 0; i < pops; i++) {
+					out.writeByte(POP);
+				}
+				for (int i = common; i < ops.size(); i++) {
+					writePush(out, ops.get(i));
+				}
+			}
+			if (rewrite)
+				ImageSaver.replace(target, file);
+			written = true;
+		} finally {
+			if (rewrite && !written) target.delete();
+		}
+		records += pops + pushes;
+		logged = new ArrayList<ImageOperation>(ops);
+		appendable = true;
+		length = file.length();
+	}
+
+	/**
+	 * Read the records after the header, stopping at the first one that can't be read
+	 * @param in The input, positioned after the magic bytes
+	 * @throws IOException If the log is a newer version of the format
+	 */
+	private void read(DataInputStream in) throws IOException {
+		int version;
+		try {
+			version = in.readInt();
+		} catch (EOFException e) {
+			return;
+		}
+		if (version > VERSION) {
+			throw new IOException("Unsupported operation log version " + version);
+		}
+
+		long position = HEADER_LENGTH;
+		try {
+			while (true) {
+				int kind = in.read();
+				if (kind == -1) {
+					// Reached the end cleanly, so later saves can append
+					appendable = true;
+					length = position;
+					return;
+				}
+				if (kind == POP) {
+					if (logged.isEmpty()) return;
+					logged.remove(logged.size() - 1);
+					position += 1;
+				} else if (kind == PUSH) {
+					String tag = in.readUTF();
+					byte[] parameters = new byte[in.readInt()];
+					in.readFully(parameters);
+					ImageOperation operation = decode(tag, parameters);
+					if (operation == null) return;
+					logged.add(operation);
+					position += 1 + 2 + tag.getBytes(StandardCharsets.UTF_8).length + 4 + parameters.length;
+				} else {
+					return;
+				}
+				records++;
+			}
+		} catch (EOFException e) {
+			// A truncated record, e.g. from a save that was cut short
+		}
+	}
+
+	/**
+	 * Write a push record for an operation
+	 * @param out The output to write to
+	 * @param operation The operation
+	 * @throws IOException If the record can't be written
+	 */
+	private static void writePush(DataOutputStream out, ImageOperation operation) throws IOException {
+		ByteArrayOutputStream parameters = new ByteArrayOutputStream();
+		String tag = tags.get(operation.getClass());
+		if (tag != null) {
+			DataOutputStream parametersOut = new DataOutputStream(parameters);
+			((EncodableOperation) operation).writeParameters(parametersOut);
+			parametersOut.flush();
+		} else {
+			tag = SERIALIZED_TAG;
+			ObjectOutputStream objOut = new ObjectOutputStream(parameters);
+			objOut.writeObject(operation);
+			objOut.close();
+		}
+		out.writeByte(PUSH);
+		out.writeUTF(tag);
+		out.writeInt(parameters.size());
+		parameters.writeTo(out);
+	}
+
+	/**
+	 * Create the operation in a push record
+	 * @param tag The record's tag
+	 * @param parameters The record's parameters
+	 * @return The operation, or null if the tag is unknown or the parameters can't be read
+	 */
+	private static ImageOperation decode(String tag, byte[] parameters) {
+		try {
+			if (tag.equals(SERIALIZED_TAG)) {
+				ObjectInputStream objIn = new ObjectInputStream(new ByteArrayInputStream(parameters));
+				ImageOperation operation = (ImageOperation) objIn.readObject();
+				objIn.close();
+				return operation;
+			}
+			OperationReader reader = readers.get(tag);
+			if (reader == null) return null;
+			return reader.read(new DataInputStream(new ByteArrayInputStream(parameters)));
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Register an encodable operation, so it can be written to and read from logs
+	 * @param <T> The type of the operation
+	 * @param tag The tag the operation is saved with, which must never change
+	 * @param type The class of the operation
+	 * @param reader Creates the operation from its parameters, usually its {@link DataInput} constructor
+	 */
+	private static <T extends EncodableOperation> void register(String tag, Class<T> type, OperationReader reader) {
+		readers.put(tag, reader);
+		tags.put(type, tag);
+	}
+
+	/** Creates an operation from the parameters it wrote with {@link EncodableOperation#writeParameters(java.io.DataOutput)} */
+	public interface OperationReader {
+		/**
+		 * Read an operation
+		 * @param in The operation's parameters
+		 * @return The operation
+		 * @throws IOException If the parameters can't be read
+		 */
+		public ImageOperation read(DataInput in) throws IOException;
+	}
+}
@@ -1,33 +1,92 @@
 package cosc202.andie.models;
 
+import java.awt.Dimension;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
-import java.util.function.Function;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+
+import cosc202.andie.Cancellation;
 import cosc202.andie.ImageOperation;
+import cosc202.andie.PixelBuffer;
+import cosc202.andie.ScalableOperation;
+import cosc202.andie.TileEngine;
+import cosc202.andie.TileableOperation;
 import cosc202.andie.Utils;
 import cosc202.andie.ImageOperation.ImageOperationException;
 import cosc202.andie.controllers.OpsController;
+import cosc202.andie.models.AndieModel.ModelListener;
+
+import static cosc202.andie.LanguageConfig.msg;
 
 /**
  * <p>
  * The operations model for ANDIE. Handles applying operation lifecycles (Previewing and applying with threading)
  * </p>
- * 
- * <p> 
+ *
+ * <p>
+ * Threaded previews of {@link ScalableOperation}s are progressive: the operation is first drawn on a small, coarse copy of the image
+ * so that something is shown almost immediately, and then redrawn at double the resolution each pass until it reaches the
+ * resolution the image is displayed at. Each pass replaces the preview as soon as it's done. Updating the operation (e.g. by
+ * moving a slider) cancels the passes that are still running, and any result from an earlier update is discarded.
+ * </p>
+ *
+ * <p>
+ * Threaded previews all run on one {@link PreviewScheduler}, which only ever runs the latest preview, so updating quickly
+ * doesn't start a thread per update or queue up previews that are already out of date. Previews draw on the current image
+ * without copying it (see {@link TileEngine#drawPreviewOf(ImageOperation, BufferedImage)}), so it's shared between every
+ * preview until the image changes.
+ * </p>
+ *
+ * <p>
+ * When only part of the image is visible (e.g. it's zoomed in), previews of {@link TileableOperation}s are only drawn where
+ * they can be seen. The image is split into tiles of {@link #VIEWPORT_TILE_SIZE} pixels, the visible tiles are drawn (with the
+ * operation's halo) over a copy of the current image, and more tiles are drawn as they're panned into view.
+ * </p>
+ *
+ * <p>
  * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">cc by-nc-sa 4.0</a>
  * </p>
- * 
+ *
  * @see AndieModel
  * @see OpsController
- * 
+ * @see PreviewScheduler
+ *
  * @author Jeb Nicholson
  * @version 1.0
  */
 public class Operations {
+		/** The most pixels to draw in the first (coarsest) pass of a progressive preview */
+		public static final int COARSE_PREVIEW_PIXELS = 32 * 1024;
+		/** The width and height of the tiles a viewport preview is drawn in, in image pixels */
+		public static final int VIEWPORT_TILE_SIZE = 128;
+
 		private ImageOperation lastOperation;
-		private Thread operationThread;
+		private boolean lastThreadRequired;
+		private PreviewScheduler scheduler;
+		private boolean proxyPreviews = true;
+		private boolean progressivePreviews = true;
+		private boolean viewportPreviews = true;
+		/** The preview drawn only where the image has been visible, or null if the preview covers the whole image */
+		private ViewportPreview viewportPreview;
+		/** The current image as ARGB pixels, for viewport previews (which would otherwise convert it on every update) */
+		private PixelBuffer viewportSource;
+		private BufferedImage viewportSourceImage;
+
+		/** Incremented whenever the preview is updated or cancelled, so that results from older previews can be ignored */
+		private int previewGeneration = 0;
+		/** Scaled down copies of the current image, by size. Cleared whenever the image changes. */
+		private HashMap<Dimension, BufferedImage> proxies = new HashMap<Dimension, BufferedImage>();
+		/** Incremented whenever the proxies are cleared, so that previews started before the image changed can't add to them */
+		private int proxiesVersion = 0;
 
 		private AndieModel model;
+		private ModelListener imageListener;
+		private ModelListener viewListener;
 
 		/**
 		 * Create a new Operations model
@@ -35,6 +94,28 @@ public class Operations {
 		 */
 		public Operations(AndieModel model) {
 			this.model = model;
+			scheduler = new PreviewScheduler((Throwable e) -> {
+				SwingUtilities.invokeLater(() -> {
+					JOptionPane.showMessageDialog(null, msg("Apply_Exception") + "\n" + e, msg("Apply_Exception_Title"), JOptionPane.WARNING_MESSAGE);
+				});
+			});
+			imageListener = () -> {
+				clearProxies();
+				viewportPreview = null;
+				viewportSource = null;
+				viewportSourceImage = null;
+			};
+			model.registerImageListener(imageListener);
+			viewListener = () -> {
+				if (viewportPreview == null) return;
+				// Zoomed out far enough that previewing the whole image is cheaper, so start again
+				if (!useViewportPreview(lastOperation, model.getImage().getCurrentImage(), model.overlay.getVisibleImageRect())) {
+					update(lastOperation, lastThreadRequired);
+					return;
+				}
+				extendViewportPreview(lastThreadRequired);
+			};
+			model.overlay.registerViewListener(viewListener);
 		}
 
 		/**
@@ -47,7 +128,228 @@ public class Operations {
 		}
 
 		/**
-		 * Update the current operation and preview it once it's done
+		 * Are previews drawn on a proxy of the image (scaled down to the size it's displayed at) when zoomed out?
+		 * @return True if proxy previews are enabled
+		 */
+		public boolean getProxyPreviews() {
+			return proxyPreviews;
+		}
+
+		/**
+		 * Set whether previews are drawn on a proxy of the image (scaled down to the size it's displayed at) when zoomed out.
+		 * <p> Applying an operation always draws it at full resolution. </p>
+		 * @param proxyPreviews True to enable proxy previews
+		 */
+		public void setProxyPreviews(boolean proxyPreviews) {
+			this.proxyPreviews = proxyPreviews;
+		}
+
+		/**
+		 * Are threaded previews drawn progressively, from a coarse pass up to full resolution?
+		 * @return True if progressive previews are enabled
+		 */
+		public boolean getProgressivePreviews() {
+			return progressivePreviews;
+		}
+
+		/**
+		 * Set whether threaded previews are drawn progressively, from a coarse pass up to full resolution.
+		 * @param progressivePreviews True to enable progressive previews
+		 */
+		public void setProgressivePreviews(boolean progressivePreviews) {
+			this.progressivePreviews = progressivePreviews;
+		}
+
+		/**
+		 * Are previews drawn only on the visible part of the image, when that's less work than previewing all of it?
+		 * @return True if viewport previews are enabled
+		 */
+		public boolean getViewportPreviews() {
+			return viewportPreviews;
+		}
+
+		/**
+		 * Set whether previews are drawn only on the visible part of the image, when that's less work than previewing all of it.
+		 * @param viewportPreviews True to enable viewport previews
+		 */
+		public void setViewportPreviews(boolean viewportPreviews) {
+			this.viewportPreviews = viewportPreviews;
+		}
+
+		/**
+		 * Get the scale the image is currently displayed at
+		 * @param image The image being displayed
+		 * @return The number of screen pixels per image pixel (e.g. 0.25 if the image is shown at a quarter of its size)
+		 */
+		private double getDisplayScale(BufferedImage image) {
+			Rectangle imageBounds = model.overlay.getImageBounds();
+			if (imageBounds == null || imageBounds.width <= 0) return 1;
+			return (double) imageBounds.width / image.getWidth();
+		}
+
+		/**
+		 * Get the scales to draw each pass of a preview at
+		 * @param operation The operation being previewed
+		 * @param image The image being previewed
+		 * @param progressive Whether to include coarse passes before the final one
+		 * @return The scales of each pass, from coarsest to finest. The last pass is at the scale the image is displayed at (or 1, if it's zoomed in)
+		 */
+		private ArrayList<Double> getPreviewScales(ImageOperation operation, BufferedImage image, boolean progressive) {
+			ArrayList<Double> scales = new ArrayList<Double>();
+			if (!(operation instanceof ScalableOperation)) {
+				scales.add(1.0);
+				return scales;
+			}
+			double scale = proxyPreviews ? Math.min(1, getDisplayScale(image)) : 1;
+			scales.add(scale);
+			if (!progressive) return scales;
+			double pixels = (double) image.getWidth() * image.getHeight() * scale * scale;
+			while (pixels > COARSE_PREVIEW_PIXELS && image.getWidth() * scale >= 2 && image.getHeight() * scale >= 2) {
+				scale /= 2;
+				pixels /= 4;
+				scales.add(0, scale);
+			}
+			return scales;
+		}
+
+		/**
+		 * Should an operation be previewed only on the visible part of the image?
+		 * <p>
+		 * This is the case when it's a {@link TileableOperation}, and there are fewer visible pixels than a whole preview would draw
+		 * (i.e. the whole image, or its proxy when zoomed out).
+		 * </p>
+		 * @param operation The operation being previewed
+		 * @param image The image being previewed
+		 * @param visible The visible part of the image, or null if it isn't known
+		 * @return True if the operation should be previewed only where it's visible
+		 */
+		private boolean useViewportPreview(ImageOperation operation, BufferedImage image, Rectangle visible) {
+			if (!viewportPreviews || !(operation instanceof TileableOperation) || visible == null) return false;
+			double scale = operation instanceof ScalableOperation && proxyPreviews ? Math.min(1, getDisplayScale(image)) : 1;
+			double previewPixels = (double) image.getWidth() * image.getHeight() * scale * scale;
+			return (double) visible.width * visible.height < previewPixels;
+		}
+
+		/**
+		 * Draw the tiles of the viewport preview that have come into view, and show the preview once they're done
+		 * @param threadRequired Whether to draw them on a separate thread
+		 */
+		private void extendViewportPreview(boolean threadRequired) {
+			ViewportPreview viewport = viewportPreview;
+			Rectangle visible = model.overlay.getVisibleImageRect();
+			if (viewport == null || visible == null) return;
+
+			if (!threadRequired) {
+				ViewportTiles tiles = viewport.extend(visible);
+				if (tiles != null)
+					model.setPreviewImage(viewport.preview.getImage(), null, viewport.show(tiles));
+				return;
+			}
+
+			int generation = previewGeneration;
+			// Queued behind the tiles already being drawn, rather than cancelling them. If the view moves again before this
+			// runs, only the tiles visible by then are drawn.
+			scheduler.queue(() -> {
+				ViewportTiles tiles = viewport.extend(visible);
+				if (tiles == null) return;
+				Cancellation.check();
+				SwingUtilities.invokeLater(() -> {
+					// Ignore tiles from previews that have since been updated or cancelled
+					if (generation == previewGeneration)
+						model.setPreviewImage(viewport.preview.getImage(), null, viewport.show(tiles));
+				});
+			});
+		}
+
+		/**
+		 * Get the size of a proxy of an image
+		 * @param image The image
+		 * @param scale The scale of the proxy
+		 * @return The size of the proxy (at least 1x1)
+		 */
+		private static Dimension getProxySize(BufferedImage image, double scale) {
+			return new Dimension(Math.max(1, (int) Math.round(image.getWidth() * scale)), Math.max(1, (int) Math.round(image.getHeight() * scale)));
+		}
+
+		/**
+		 * Get a copy of an image scaled down to a given size, reusing earlier copies of the current image where possible
+		 * @param image The image to scale
+		 * @param size The size to scale to
+		 * @param version The {@link #proxiesVersion} when the image was taken. If it has changed since, the copy isn't kept.
+		 * @return The scaled copy. It must not be modified.
+		 */
+		private synchronized BufferedImage getProxy(BufferedImage image, Dimension size, int version) {
+			BufferedImage proxy = proxies.get(size);
+			if (proxy == null) {
+				// Scale down from the smallest proxy that is still larger, rather than from the full image
+				BufferedImage source = image;
+				for (BufferedImage other : proxies.values()) {
+					if (other.getWidth() >= size.width && other.getHeight() >= size.height && other.getWidth() < source.getWidth())
+						source = other;
+				}
+				proxy = Utils.downsample(source, size.width, size.height);
+				if (version == proxiesVersion)
+					proxies.put(size, proxy);
+			}
+			return proxy;
+		}
+
+		/**
+		 * Get the current version of the proxies
+		 * @return The number of times the proxies have been cleared
+		 */
+		private synchronized int getProxiesVersion() {
+			return proxiesVersion;
+		}
+
+		/** Forget the scaled down copies of the image */
+		private synchronized void clearProxies() {
+			proxies.clear();
+			proxiesVersion++;
+		}
+
+		/**
+		 * Draw one pass of a preview
+		 * @param operation The operation to preview
+		 * @param image The current image (which is not modified)
+		 * @param scale The scale to draw the pass at
+		 * @param version The {@link #proxiesVersion} when the image was taken
+		 * @return The pass
+		 */
+		private PreviewPass drawPreviewPass(ImageOperation operation, BufferedImage image, double scale, int version) {
+			BufferedImage base = image;
+			ImageOperation previewOperation = operation;
+			if (scale < 1) {
+				Dimension proxySize = getProxySize(image, scale);
+				base = getProxy(image, proxySize, version);
+				previewOperation = ((ScalableOperation) operation).scaled((double) proxySize.width / image.getWidth());
+			}
+			// How many image pixels each pixel of the (possibly scaled down) preview represents
+			double scaleX = (double) image.getWidth() / base.getWidth();
+			double scaleY = (double) image.getHeight() / base.getHeight();
+
+			BufferedImage result;
+			try {
+				// The image and its proxies are shared with other previews, so they're only copied if the operation would draw in place
+				result = TileEngine.drawPreviewOf(previewOperation, base);
+			} catch (ImageOperationException e) {
+				result = base;
+			}
+			if (scale >= 1) return new PreviewPass(result, null);
+			return new PreviewPass(result, new Dimension((int) Math.round(result.getWidth() * scaleX), (int) Math.round(result.getHeight() * scaleY)));
+		}
+
+		/**
+		 * <p>Update the current operation and preview it once it's done</p>
+		 * <p>
+		 * If the image is zoomed out and the operation is a {@link ScalableOperation}, the preview is drawn on a copy of
+		 * the image scaled down to the size it's displayed at (with the operation scaled to match), which is much faster for large images.
+		 * The full resolution image is only drawn when the operation is applied.
+		 * </p>
+		 * <p>
+		 * If only part of the image is visible, {@link TileableOperation}s are only drawn on that part, and threaded previews of
+		 * other operations are drawn progressively (see {@link Operations}).
+		 * </p>
 		 * @param operation The {@link ImageOperation} to update
 		 * @param threadRequired Whether the operation should be run on a separate thread (If it's slow)
 		 */
@@ -56,37 +358,44 @@ public class Operations {
 			if (lastOperation != null && lastOperation.getClass() != operation.getClass()) {
 				cancel();
 			}
-			//Cancel any previous operation thread
-			if(operationThread != null) {
-				operationThread.interrupt();
-				operationThread = null;
-
-			}
+			//Cancel the previous preview, if it's still being drawn
+			scheduler.cancel();
+			previewGeneration++;
 			this.lastOperation = operation;
+			this.lastThreadRequired = threadRequired;
 
-			BufferedImage baseImage = Utils.deepCopy(model.getImage().getCurrentImage());
-
-			Function<BufferedImage, BufferedImage> operationFunction = (image) -> {
-				try {
-					return operation.drawPreview(image);
-				} catch (ImageOperationException e) {
-					return image;
+			BufferedImage currentImage = model.getImage().getCurrentImage();
+			if (useViewportPreview(operation, currentImage, model.overlay.getVisibleImageRect())) {
+				// The image's pixels are shared between viewport previews, and only converted again once the image changes
+				if (viewportSourceImage != currentImage) {
+					viewportSource = PixelBuffer.of(currentImage);
+					viewportSourceImage = currentImage;
 				}
-			};
+				viewportPreview = new ViewportPreview((TileableOperation) operation, viewportSource);
+				extendViewportPreview(threadRequired);
+				return;
+			}
+			viewportPreview = null;
+
+			int version = getProxiesVersion();
+			ArrayList<Double> scales = getPreviewScales(operation, currentImage, threadRequired && progressivePreviews);
 
 			if (!threadRequired) {
-				model.setPreviewImage(operationFunction.apply(baseImage));
+				PreviewPass pass = drawPreviewPass(operation, currentImage, scales.get(scales.size() - 1), version);
+				model.setPreviewImage(pass.image, pass.size);
 				return;
 			}
 
-			OperationRunnableListener listener = (result) -> {
-				model.setPreviewImage(result);
+			int generation = previewGeneration;
+			OperationRunnableListener listener = (pass) -> {
+				SwingUtilities.invokeLater(() -> {
+					// Ignore passes from previews that have since been updated or cancelled
+					if (generation == previewGeneration)
+						model.setPreviewImage(pass.image, pass.size);
+				});
 			};
 
-			OperationRunnable operationRunable = new OperationRunnable(operationFunction, baseImage, listener);
-			operationThread = new Thread(operationRunable);
-			operationThread.start();
-
+			scheduler.submit(new OperationRunnable(operation, currentImage, version, scales, listener));
 		}
 
 		/**
@@ -107,52 +416,221 @@ public class Operations {
 			return applyOperation(operation);
 		}
 
+		/**
+		 * Apply a sequence of operations, e.g. the operations of a macro, drawing runs of them together where possible
+		 * @param operations The operations to apply, in order
+		 * @return Whether every operation was successful
+		 */
+		public boolean apply(List<ImageOperation> operations) {
+			cancel();
+			return model.getImage().apply(operations);
+		}
+
 		/** Cancel the operation */
 		public void cancel() {
-			if(operationThread != null) {
-				operationThread.interrupt();
-				operationThread = null;
-			}
+			scheduler.cancel();
+			previewGeneration++;
+			viewportPreview = null;
 			model.clearPreviewImage();
 		}
 
-	
-	/** The class used in instantiating a new thread for running an operation */ 
+	/** One pass of a preview */
+	private static class PreviewPass {
+		/** The image drawn by the pass */
+		BufferedImage image;
+		/** The size of the image the pass represents, or null if the pass is at full resolution */
+		Dimension size;
+
+		/**
+		 * Create a new PreviewPass
+		 * @param image The image drawn by the pass
+		 * @param size The size of the image the pass represents, or null if the pass is at full resolution
+		 */
+		PreviewPass(BufferedImage image, Dimension size) {
+			this.image = image;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * <p>A preview drawn only on the tiles of the image that have been visible.</p>
+	 * <p>
+	 * Tiles are drawn (on the preview thread, if there is one) into a buffer of their own, and only copied into the preview
+	 * being shown by {@link #show(ViewportTiles)}, on the event dispatch thread. So the preview is never written to while
+	 * it's being painted.
+	 * </p>
+	 */
+	private static class ViewportPreview {
+		/** The operation being previewed */
+		TileableOperation operation;
+		/** The current image */
+		PixelBuffer source;
+		/** The current image, with the operation drawn over the tiles that have been shown (copied when the first tiles are shown) */
+		PixelBuffer preview;
+		/** The number of tiles across and down the image */
+		int tilesX, tilesY;
+		/** Which tiles have been taken to be drawn, in row-major order */
+		boolean[] taken;
+
+		/**
+		 * Create a new ViewportPreview, with no tiles drawn yet
+		 * @param operation The operation being previewed
+		 * @param source The current image (which is not modified)
+		 */
+		ViewportPreview(TileableOperation operation, PixelBuffer source) {
+			this.operation = operation;
+			this.source = source;
+			this.tilesX = (source.getWidth() + VIEWPORT_TILE_SIZE - 1) / VIEWPORT_TILE_SIZE;
+			this.tilesY = (source.getHeight() + VIEWPORT_TILE_SIZE - 1) / VIEWPORT_TILE_SIZE;
+			this.taken = new boolean[tilesX * tilesY];
+		}
+
+		/**
+		 * Take the tiles overlapping a rectangle that haven't been taken yet, so that they're only drawn once
+		 * @param visible The rectangle, in image-space
+		 * @return The tiles to draw
+		 */
+		ArrayList<Rectangle> takeTiles(Rectangle visible) {
+			ArrayList<Rectangle> tiles = new ArrayList<Rectangle>();
+			if (visible.isEmpty()) return tiles;
+			int width = source.getWidth(), height = source.getHeight();
+			int firstX = Math.max(0, visible.x / VIEWPORT_TILE_SIZE), lastX = Math.min(tilesX - 1, (visible.x + visible.width - 1) / VIEWPORT_TILE_SIZE);
+			int firstY = Math.max(0, visible.y / VIEWPORT_TILE_SIZE), lastY = Math.min(tilesY - 1, (visible.y + visible.height - 1) / VIEWPORT_TILE_SIZE);
+			for (int tileY = firstY; tileY <= lastY; tileY++) {
+				for (int tileX = firstX; tileX <= lastX; tileX++) {
+					if (taken[tileY * tilesX + tileX]) continue;
+					taken[tileY * tilesX + tileX] = true;
+					int x = tileX * VIEWPORT_TILE_SIZE, y = tileY * VIEWPORT_TILE_SIZE;
+					tiles.add(new Rectangle(x, y, Math.min(VIEWPORT_TILE_SIZE, width - x), Math.min(VIEWPORT_TILE_SIZE, height - y)));
+				}
+			}
+			return tiles;
+		}
+
+		/**
+		 * Draw the tiles overlapping a rectangle that haven't been drawn yet. The preview isn't changed until they're shown.
+		 * If the operation fails, the tiles are left showing the current image.
+		 * @param visible The rectangle, in image-space
+		 * @return The drawn tiles, or null if there were none to draw
+		 */
+		ViewportTiles extend(Rectangle visible) {
+			ArrayList<Rectangle> tiles = takeTiles(visible);
+			if (tiles.isEmpty()) return null;
+
+			Rectangle bounds = new Rectangle(tiles.get(0));
+			for (Rectangle tile : tiles) {
+				bounds.add(tile);
+			}
+			// Copy out just the tiles and the halo around them (with the image's edges extended as the whole image would be),
+			// and draw the tiles in that copy's coordinates
+			int halo = operation.getHalo();
+			PixelBuffer around = source.region(bounds.x - halo, bounds.y - halo, bounds.width + 2 * halo, bounds.height + 2 * halo);
+			PixelBuffer drawn = PixelBuffer.copyOf(around.getImage());
+			ArrayList<Rectangle> aroundTiles = new ArrayList<Rectangle>();
+			for (Rectangle tile : tiles) {
+				Rectangle aroundTile = new Rectangle(tile);
+				aroundTile.translate(halo - bounds.x, halo - bounds.y);
+				aroundTiles.add(aroundTile);
+			}
+			try {
+				TileEngine.drawRegions(operation, around, drawn, aroundTiles, true);
+			} catch (ImageOperationException e) {
+				// Leave the tiles showing the current image
+			}
+			return new ViewportTiles(tiles, bounds, drawn, halo);
+		}
+
+		/**
+		 * Copy drawn tiles into the preview. Must be called on the event dispatch thread, as the preview is painted there.
+		 * @param tiles The tiles drawn by {@link #extend(Rectangle)}
+		 * @return The region of the preview that changed, or null if this is the first time it's been shown (so all of it needs to be shown)
+		 */
+		Rectangle show(ViewportTiles tiles) {
+			boolean first = preview == null;
+			if (first)
+				preview = PixelBuffer.copyOf(source.getImage());
+			Rectangle bounds = tiles.bounds;
+			int[] drawnPixels = tiles.pixels.getPixels();
+			int drawnWidth = tiles.pixels.getWidth();
+			// Only the tiles themselves, as their bounds may also cover tiles that were shown before
+			for (Rectangle tile : tiles.tiles) {
+				int drawnX = tile.x - bounds.x + tiles.halo, drawnY = tile.y - bounds.y + tiles.halo;
+				for (int row = 0; row < tile.height; row++) {
+					System.arraycopy(drawnPixels, (drawnY + row) * drawnWidth + drawnX, preview.getPixels(), (tile.y + row) * preview.getWidth() + tile.x, tile.width);
+				}
+			}
+			return first ? null : bounds;
+		}
+	}
+
+	/** Tiles of a {@link ViewportPreview} that have been drawn, but not shown yet */
+	private static class ViewportTiles {
+		/** The tiles, in image-space */
+		ArrayList<Rectangle> tiles;
+		/** The bounds of the tiles, in image-space */
+		Rectangle bounds;
+		/** The drawn tiles, with a margin of {@link #halo} pixels around their bounds */
+		PixelBuffer pixels;
+		/** The width of the margin around the tiles */
+		int halo;
+
+		/**
+		 * Create a new ViewportTiles
+		 * @param tiles The tiles, in image-space
+		 * @param bounds The bounds of the tiles, in image-space
+		 * @param pixels The drawn tiles, with a margin of halo pixels around their bounds
+		 * @param halo The width of the margin around the tiles
+		 */
+		ViewportTiles(ArrayList<Rectangle> tiles, Rectangle bounds, PixelBuffer pixels, int halo) {
+			this.tiles = tiles;
+			this.bounds = bounds;
+			this.pixels = pixels;
+			this.halo = halo;
+		}
+	}
+
+	/** The class used for previewing an operation on the {@link PreviewScheduler} */
 	private class OperationRunnable implements Runnable {
 		OperationRunnableListener listener;
-		Function<BufferedImage, BufferedImage> operation;
+		ImageOperation operation;
 		BufferedImage baseImage;
+		int version;
+		ArrayList<Double> scales;
 
 		/**
 		 * Create a new OperationRunnable
 		 * @param operation The operation to run
-		 * @param baseImage The base image to run the operation on
-		 * @param listener The listener to call when the operation is finished
+		 * @param baseImage The base image to run the operation on (which is not modified)
+		 * @param version The version of the proxies when the base image was taken
+		 * @param scales The scales to draw each pass at, from coarsest to finest
+		 * @param listener The listener to call when each pass is finished
 		 */
-		public OperationRunnable(Function<BufferedImage, BufferedImage> operation, BufferedImage baseImage, OperationRunnableListener listener) {
+		public OperationRunnable(ImageOperation operation, BufferedImage baseImage, int version, ArrayList<Double> scales, OperationRunnableListener listener) {
 			this.operation = operation;
 			this.baseImage = baseImage;
+			this.version = version;
+			this.scales = scales;
 			this.listener = listener;
 		}
 
-		/** Run the operation */
+		/** Run the operation, one pass at a time, stopping as soon as the preview is cancelled */
 		public void run() {
-			try {
-			BufferedImage result = operation.apply(baseImage);
-			if (Thread.interrupted()) return;
-			listener.filterThreadFinished(result);
-			} catch (RuntimeException e) {
-				if (e.getMessage().equals("Interrupted") || Thread.interrupted()) return;
-				e.printStackTrace();
+			// Scale the image down for the finest pass first, so the coarser passes can be scaled down from it rather than from the full image
+			double finestScale = scales.get(scales.size() - 1);
+			if (finestScale < 1)
+				getProxy(baseImage, getProxySize(baseImage, finestScale), version);
+			for (double scale : scales) {
+				PreviewPass pass = drawPreviewPass(operation, baseImage, scale, version);
+				Cancellation.check();
+				listener.filterThreadFinished(pass);
 			}
 		}
 
-
 	}
 
-	/** A listener for when OperationRunnables finish */
-	public interface OperationRunnableListener {
-		public void filterThreadFinished(BufferedImage result);
+	/** A listener for when OperationRunnables finish each pass */
+	private interface OperationRunnableListener {
+		public void filterThreadFinished(PreviewPass pass);
 	}
 
 }
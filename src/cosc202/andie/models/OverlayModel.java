@@ -5,8 +5,13 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
+import java.awt.geom.Area;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 
 import cosc202.andie.models.AndieModel.ModelListener;
 import cosc202.andie.tools.SelectTool;
@@ -17,6 +22,12 @@ import cosc202.andie.tools.SelectTool;
  * The overlay model for ANDIE. Handles the overlay (currently exclusively used for the selection rectangle)
  * </p>
  * 
+ * <p>
+ * Drawers declare the regions they draw within, so when only one of them changes (e.g. the selection's marching ants move),
+ * only the parts of the overlay it has drawn over, before and after, need to be cleared and redrawn (see {@link #repaint(OverlayDrawer)}).
+ * A drawer that only draws an outline can declare just the strips along its edges, so the inside isn't redrawn.
+ * </p>
+ * 
  * <p> 
  * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">cc by-nc-sa 4.0</a>
  * </p>
@@ -38,7 +49,12 @@ public class OverlayModel {
 	private ModelListener imageStatusListener;
 
 	private ArrayList<ModelListener> overlayListeners = new ArrayList<ModelListener>();
+	private ArrayList<ModelListener> viewListeners = new ArrayList<ModelListener>();
 	private ArrayList<OverlayDrawer> overlayDrawers = new ArrayList<OverlayDrawer>();
+	/** The regions each drawer had drawn within, the last time it was fully drawn */
+	private HashMap<OverlayDrawer, List<Rectangle>> drawnRegions = new HashMap<OverlayDrawer, List<Rectangle>>();
+	/** The parts of the overlay being repainted, while the overlay listeners are notified (null for all of it) */
+	private List<Rectangle> repaintRegions;
 
 	/**
 	 * Creates a new OverlayModel
@@ -77,6 +93,7 @@ public class OverlayModel {
 		this.size = size;
 		overlayImage = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_ARGB);
 		repaint();
+		notifyViewListeners();
 	}
 
 	/**
@@ -94,6 +111,7 @@ public class OverlayModel {
 	public void setImageBounds(Rectangle imageBounds) {
 		this.imageBounds = imageBounds;
 		repaint();
+		notifyViewListeners();
 	}
 
 	/**
@@ -110,28 +128,123 @@ public class OverlayModel {
 	 */
 	public double getImageScale() {
 		if (imageBounds == null || !model.hasImage()) return 1;
-		return (double) imageBounds.width / model.getWorkingImage().getWidth();
+		return (double) imageBounds.width / model.getWorkingImageSize().width;
+	}
+
+	/**
+	 * Get the part of the image that is visible within the overlay, in image-space
+	 * @return The visible rectangle of the image (empty if none of it is visible), or null if the view isn't known yet
+	 */
+	public Rectangle getVisibleImageRect() {
+		if (imageBounds == null || size == null || !model.hasImage()) return null;
+		Dimension imageSize = model.getWorkingImageSize();
+		double scale = getImageScale();
+		Rectangle visible = imageBounds.intersection(new Rectangle(size));
+		if (visible.isEmpty()) return new Rectangle();
+		int x0 = (int) Math.floor((visible.x - imageBounds.x) / scale);
+		int y0 = (int) Math.floor((visible.y - imageBounds.y) / scale);
+		int x1 = (int) Math.ceil((visible.x + visible.width - imageBounds.x) / scale);
+		int y1 = (int) Math.ceil((visible.y + visible.height - imageBounds.y) / scale);
+		return new Rectangle(x0, y0, x1 - x0, y1 - y0).intersection(new Rectangle(imageSize));
 	}
 
 	/**
 	 * Repaints the overlay
 	 */
 	public void repaint() {
+		paint(null, null);
+	}
+
+	/**
+	 * <p>Repaints the parts of the overlay a drawer has changed</p>
+	 * <p>
+	 * The regions the drawer drew within last time, and the regions it will draw within now, are cleared, and every drawer is
+	 * redrawn within them. If the drawer doesn't declare its regions, the whole overlay is repainted.
+	 * </p>
+	 * @param drawer The drawer that has changed
+	 */
+	public void repaint(OverlayDrawer drawer) {
+		if (overlayImage == null) return;
+		List<Rectangle> before = drawnRegions.get(drawer);
+		List<Rectangle> after = drawer.getOverlayRegions();
+		if (before == null || after == null) {
+			repaint();
+			return;
+		}
+		ArrayList<Rectangle> regions = new ArrayList<Rectangle>();
+		Rectangle overlayBounds = new Rectangle(size);
+		for (List<Rectangle> drawn : Arrays.asList(before, after)) {
+			for (Rectangle region : drawn) {
+				Rectangle visible = region.intersection(overlayBounds);
+				if (!visible.isEmpty()) regions.add(visible);
+			}
+		}
+		if (regions.isEmpty()) {
+			drawnRegions.put(drawer, after);
+			return;
+		}
+		paint(regions, drawer);
+	}
+
+	/**
+	 * Get the parts of the overlay being repainted, while the overlay listeners are being notified
+	 * @return The repainted regions, or null if the whole overlay has been repainted
+	 */
+	public List<Rectangle> getRepaintRegions() {
+		return repaintRegions;
+	}
+
+	/**
+	 * Clears parts of the overlay, redraws every drawer within them, and notifies the overlay listeners
+	 * @param regions The regions to repaint, or null for the whole overlay
+	 * @param changed The drawer that has changed, or null if the whole overlay is repainted
+	 */
+	private void paint(List<Rectangle> regions, OverlayDrawer changed) {
 		if (overlayImage == null) return;
 		Graphics2D g = overlayImage.createGraphics();
+		Area area = null;
+		if (regions != null) {
+			area = new Area();
+			for (Rectangle region : regions) {
+				area.add(new Area(region));
+			}
+			g.clip(area);
+		}
 		//Clear the image 
 		g.setPaint(new Color(0, 0, 0, 0));
 		g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC));
-		g.fillRect(0, 0, size.width, size.height);
+		if (area != null)
+			g.fill(area);
+		else
+			g.fillRect(0, 0, size.width, size.height);
 		g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER));
 
 		for (OverlayDrawer drawer : overlayDrawers) {
 			drawer.drawOverlay(g);
+			// Drawers only partly redrawn within the regions still have their old drawing outside them
+			List<Rectangle> drawn = drawer.getOverlayRegions();
+			if (area == null || drawer == changed || (drawn != null && isWithin(drawn, area)))
+				drawnRegions.put(drawer, drawn);
 		}
 		g.dispose();
+		repaintRegions = regions == null ? null : Collections.unmodifiableList(regions);
 		for (ModelListener listener : overlayListeners) {
 			listener.update();
 		}
+		repaintRegions = null;
+	}
+
+	/**
+	 * Do some regions lie entirely within an area?
+	 * @param regions The regions
+	 * @param area The area
+	 * @return True if every region is within the area
+	 */
+	private static boolean isWithin(List<Rectangle> regions, Area area) {
+		for (Rectangle region : regions) {
+			if (!region.isEmpty() && !area.contains(region)) return false;
+		}
+		return true;
 	}
 
 	/**
@@ -158,12 +271,36 @@ public class OverlayModel {
 		overlayListeners.remove(listener);
 	}
 
+	/**
+	 * Registers a view listener (Which will be notified when the overlay is resized, or the image is panned or zoomed)
+	 * @param listener The view listener to register
+	 */
+	public void registerViewListener(ModelListener listener) {
+		viewListeners.add(listener);
+	}
+
+	/**
+	 * Unregisters a view listener
+	 * @param listener The view listener to unregister
+	 */
+	public void unregisterViewListener(ModelListener listener) {
+		viewListeners.remove(listener);
+	}
+
+	/** Notifies the view listeners that the view has changed */
+	private void notifyViewListeners() {
+		for (ModelListener listener : viewListeners) {
+			listener.update();
+		}
+	}
+
 	/**
 	 * Unregisters an overlay drawer
 	 * @param drawer The overlay drawer to unregister
 	 */
 	public void unregisterOverlayDrawer(OverlayDrawer drawer) {
 		overlayDrawers.remove(drawer);
+		drawnRegions.remove(drawer);
 	}
 
 	/**
@@ -180,6 +317,24 @@ public class OverlayModel {
 		 * @param g The graphics context to draw on
 		 */
 		public void drawOverlay(Graphics2D g);
+
+		/** Get the bounds of everything {@link #drawOverlay(Graphics2D)} would draw now, in overlay-space
+		 * @return The bounds (empty if it would draw nothing), or null if they aren't known (in which case the whole overlay is repainted)
+		 */
+		public default Rectangle getOverlayBounds() {
+			return null;
+		}
+
+		/** Get the regions everything {@link #drawOverlay(Graphics2D)} would draw now lies within, in overlay-space
+		 * <p> By default this is just {@link #getOverlayBounds()}. Drawers that leave most of their bounds untouched (e.g. an outline) can list smaller regions. </p>
+		 * @return The regions (empty if it would draw nothing), or null if they aren't known (in which case the whole overlay is repainted)
+		 */
+		public default List<Rectangle> getOverlayRegions() {
+			Rectangle bounds = getOverlayBounds();
+			if (bounds == null) return null;
+			if (bounds.isEmpty()) return Collections.emptyList();
+			return Collections.singletonList(bounds);
+		}
 	}
 
 	/** List listeners. For debugging purposes */
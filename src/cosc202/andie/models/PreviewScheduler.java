@@ -0,0 +1,136 @@
+package cosc202.andie.models;
+
+import java.util.function.Consumer;
+
+import cosc202.andie.Cancellation;
+
+/**
+ * <p>
+ * Runs previews on a single background thread, one at a time, always running the latest one.
+ * </p>
+ *
+ * <p>
+ * At most one preview is running and one is waiting. Scheduling a new preview with {@link #submit(Runnable)} replaces the one
+ * waiting (which is then never run) and cancels the one running, so scrubbing a slider quickly never builds up a queue of
+ * stale previews or starts a thread per update. Each preview runs with its own {@link Cancellation} token as the thread's
+ * current token, so the operations it draws stop as soon as it's cancelled.
+ * </p>
+ *
+ * <p>
+ * The thread is started when the first preview is scheduled, and is reused for every preview after it. A preview that fails
+ * (even with an {@link Error}, e.g. running out of memory) is reported, and the thread carries on with the next one.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">cc by-nc-sa 4.0</a>
+ * </p>
+ *
+ * @see Operations
+ * @see Cancellation
+ *
+ * @author Jeb Nicholson
+ * @version 1.0
+ */
+public class PreviewScheduler {
+	/** The preview waiting to run, or null if there is none */
+	private Runnable pending;
+	/** The token of the preview running, or null if none is running */
+	private Cancellation running;
+	private Thread worker;
+	private Consumer<Throwable> onError;
+
+	/**
+	 * Create a new PreviewScheduler. Its thread isn't started until a preview is scheduled.
+	 * @param onError Called (on the scheduler's thread) with the reason a preview failed, unless it failed by being cancelled
+	 */
+	public PreviewScheduler(Consumer<Throwable> onError) {
+		this.onError = onError;
+	}
+
+	/**
+	 * Schedule a preview, replacing the one waiting to run and cancelling the one running
+	 * @param preview The preview to run
+	 */
+	public synchronized void submit(Runnable preview) {
+		if (running != null)
+			running.cancel();
+		queue(preview);
+	}
+
+	/**
+	 * Schedule a preview to run after the one running (e.g. more of the same preview), replacing the one waiting to run
+	 * @param preview The preview to run
+	 */
+	public synchronized void queue(Runnable preview) {
+		pending = preview;
+		if (worker == null) {
+			worker = new Thread(this::work, "ANDIE preview");
+			worker.setDaemon(true);
+			worker.start();
+		}
+		notifyAll();
+	}
+
+	/**
+	 * Cancel the preview running, and forget the one waiting to run
+	 */
+	public synchronized void cancel() {
+		pending = null;
+		if (running != null)
+			running.cancel();
+	}
+
+	/**
+	 * Is a preview running or waiting to run?
+	 * @return True if there is nothing left to run
+	 */
+	public synchronized boolean isIdle() {
+		return pending == null && running == null;
+	}
+
+	/** Run previews as they're scheduled, forever */
+	private void work() {
+		try {
+			runPreviews();
+		} finally {
+			// Should the thread end anyway, let the next preview start a new one
+			synchronized (this) {
+				if (worker == Thread.currentThread())
+					worker = null;
+			}
+		}
+	}
+
+	/** Wait for each preview to be scheduled, and run it */
+	private void runPreviews() {
+		while (true) {
+			Runnable preview;
+			Cancellation token = new Cancellation();
+			synchronized (this) {
+				while (pending == null) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						// Nothing interrupts the worker, but if something does, keep waiting
+					}
+				}
+				preview = pending;
+				pending = null;
+				running = token;
+			}
+
+			Cancellation.setCurrent(token);
+			try {
+				preview.run();
+			} catch (Throwable e) {
+				if (!token.isCancelled() && !"Interrupted".equals(e.getMessage()))
+					onError.accept(e);
+			} finally {
+				Cancellation.setCurrent(null);
+				synchronized (this) {
+					running = null;
+				}
+			}
+		}
+	}
+}
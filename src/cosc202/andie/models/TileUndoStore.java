@@ -0,0 +1,182 @@
+package cosc202.andie.models;
+
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.util.ArrayList;
+import java.util.TreeMap;
+
+import cosc202.andie.RegionOperation;
+
+/**
+ * <p>
+ * A reverse-delta undo store for {@link RegionOperation}s.
+ * </p>
+ *
+ * <p>
+ * Before a region operation is drawn, the store records the pixels of every tile (of {@link #TILE_SIZE} pixels square) that
+ * the operation's affected area touches. Undoing the operation then only requires those tiles to be written back into the image,
+ * making undo proportional to the changed area rather than to the whole image.
+ * </p>
+ *
+ * <p>
+ * Operations that aren't region operations (e.g. filters and transforms) aren't recorded here, and are undone using the
+ * {@link CheckpointCache} instead.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">cc by-nc-sa 4.0</a>
+ * </p>
+ *
+ * @see EditableImage
+ * @see RegionOperation
+ *
+ * @author Jeb Nicholson
+ * @version 1.0
+ */
+public class TileUndoStore {
+
+	/** The width and height of each tile, in pixels */
+	public static final int TILE_SIZE = 64;
+	/** The default memory budget (in bytes) */
+	public static final long DEFAULT_BUDGET = 64L * 1024 * 1024;
+
+	private TreeMap<Integer, TileDelta> deltas = new TreeMap<Integer, TileDelta>();
+	private long usedBytes;
+	private long budget;
+
+	/** Create a new TileUndoStore with the default budget */
+	public TileUndoStore() {
+		this(DEFAULT_BUDGET);
+	}
+
+	/**
+	 * Create a new TileUndoStore
+	 * @param budget The maximum number of bytes of tile data to keep
+	 */
+	public TileUndoStore(long budget) {
+		this.budget = budget;
+	}
+
+	/**
+	 * Get the memory budget of the store
+	 * @return The maximum number of bytes of tile data to keep
+	 */
+	public long getBudget() {
+		return budget;
+	}
+
+	/**
+	 * Set the memory budget of the store, evicting the oldest deltas if it is now over budget
+	 * @param budget The maximum number of bytes of tile data to keep
+	 */
+	public void setBudget(long budget) {
+		this.budget = budget;
+		evict();
+	}
+
+	/**
+	 * Get the number of bytes of tile data currently held by the store
+	 * @return The number of bytes held
+	 */
+	public long getUsedBytes() {
+		return usedBytes;
+	}
+
+	/**
+	 * Record the tiles of an image that an operation is about to change.
+	 * @param index The index the operation will have in the operation stack
+	 * @param image The image, before the operation is drawn
+	 * @param area The area the operation may change
+	 */
+	public void record(int index, BufferedImage image, Shape area) {
+		TileDelta delta = new TileDelta(image, area);
+		if (delta.bytes > budget) return;
+		remove(index);
+		deltas.put(index, delta);
+		usedBytes += delta.bytes;
+		evict();
+	}
+
+	/**
+	 * <p>Undo the operation at a given index by restoring the tiles recorded before it was drawn.</p>
+	 * <p>The delta is removed from the store whether or not it could be restored.</p>
+	 * @param index The index of the operation in the operation stack
+	 * @param image The image, as it was after the operation was drawn. Restored in place.
+	 * @return True if the image was restored, or false if there was no (usable) delta for the operation
+	 */
+	public boolean restore(int index, BufferedImage image) {
+		TileDelta delta = deltas.get(index);
+		remove(index);
+		return delta != null && delta.restore(image);
+	}
+
+	/**
+	 * Remove the delta at a given index
+	 * @param index The index of the operation in the operation stack
+	 */
+	public void remove(int index) {
+		TileDelta removed = deltas.remove(index);
+		if (removed != null)
+			usedBytes -= removed.bytes;
+	}
+
+	/** Evict the oldest deltas until the store is within its budget */
+	private void evict() {
+		while (usedBytes > budget && !deltas.isEmpty()) {
+			remove(deltas.firstKey());
+		}
+	}
+
+	/** The pre-image of the tiles touched by a single operation */
+	private static class TileDelta {
+		private int imageWidth;
+		private int imageHeight;
+		private int imageType;
+		private ArrayList<Raster> tiles = new ArrayList<Raster>();
+		private long bytes;
+
+		/**
+		 * Copy the tiles of an image touched by an area
+		 * @param image The image to copy from
+		 * @param area The area to copy
+		 */
+		TileDelta(BufferedImage image, Shape area) {
+			this.imageWidth = image.getWidth();
+			this.imageHeight = image.getHeight();
+			this.imageType = image.getType();
+
+			Rectangle bounds = area.getBounds().intersection(new Rectangle(0, 0, imageWidth, imageHeight));
+			if (bounds.isEmpty()) return;
+			int firstColumn = bounds.x / TILE_SIZE, lastColumn = (bounds.x + bounds.width - 1) / TILE_SIZE;
+			int firstRow = bounds.y / TILE_SIZE, lastRow = (bounds.y + bounds.height - 1) / TILE_SIZE;
+			for (int row = firstRow; row <= lastRow; row++) {
+				for (int column = firstColumn; column <= lastColumn; column++) {
+					Rectangle tile = new Rectangle(column * TILE_SIZE, row * TILE_SIZE, TILE_SIZE, TILE_SIZE).intersection(bounds);
+					if (!area.intersects(tile)) continue;
+					// getData copies the pixels in the image's own format, so no colour conversion is needed either way
+					Raster copy = image.getData(tile);
+					DataBuffer buffer = copy.getDataBuffer();
+					bytes += (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+					tiles.add(copy);
+				}
+			}
+		}
+
+		/**
+		 * Write the tiles back into an image
+		 * @param image The image to restore
+		 * @return False if the image is not the one the tiles were taken from (e.g. it has been resized since)
+		 */
+		boolean restore(BufferedImage image) {
+			if (image.getWidth() != imageWidth || image.getHeight() != imageHeight || image.getType() != imageType)
+				return false;
+			for (Raster tile : tiles) {
+				image.setData(tile);
+			}
+			return true;
+		}
+	}
+}
@@ -6,6 +6,9 @@ import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
 
@@ -65,17 +68,8 @@ public class ToolModel {
 
 		overlayDrawer = new OverlayDrawer() {
 			public void drawOverlay(Graphics2D g) {
-				if (selection != null && !pauseSelectionPaint) {
-					Rectangle imageBounds = model.overlay.getImageBounds();
-					double imageScale = model.overlay.getImageScale();
-
-					Rectangle adjustedSelection = new Rectangle(
-						(int) (selection.x * imageScale)+imageBounds.x,
-						(int) (selection.y * imageScale)+imageBounds.y,
-						(int) (selection.width * imageScale),
-						(int) (selection.height * imageScale)
-					);
-
+				Rectangle adjustedSelection = getOverlaySelection();
+				if (adjustedSelection != null) {
 					g.setColor(Color.gray);
 					g.setStroke(new BasicStroke(1));
 					g.drawRect(adjustedSelection.x, adjustedSelection.y, adjustedSelection.width, adjustedSelection.height);
@@ -88,6 +82,26 @@ public class ToolModel {
 					g.drawRect(adjustedSelection.x, adjustedSelection.y, adjustedSelection.width, adjustedSelection.height);
 				}
 			}
+
+			public Rectangle getOverlayBounds() {
+				Rectangle adjustedSelection = getOverlaySelection();
+				if (adjustedSelection == null) return new Rectangle();
+				// drawRect covers the pixels on both edges
+				return new Rectangle(adjustedSelection.x, adjustedSelection.y, adjustedSelection.width + 1, adjustedSelection.height + 1);
+			}
+
+			public List<Rectangle> getOverlayRegions() {
+				Rectangle adjustedSelection = getOverlaySelection();
+				if (adjustedSelection == null) return Collections.emptyList();
+				// Only the 1px outline is drawn, so the inside of the selection never needs to be repainted
+				int x = adjustedSelection.x, y = adjustedSelection.y, width = adjustedSelection.width, height = adjustedSelection.height;
+				return Arrays.asList(
+					new Rectangle(x, y, width + 1, 1),
+					new Rectangle(x, y + height, width + 1, 1),
+					new Rectangle(x, y + 1, 1, Math.max(0, height - 1)),
+					new Rectangle(x + width, y + 1, 1, Math.max(0, height - 1))
+				);
+			}
 		};
 
 		model.overlay.registerOverlayDrawer(overlayDrawer);
@@ -96,7 +110,7 @@ public class ToolModel {
 			public void run(){
 				SwingUtilities.invokeLater(() -> {
 					if (selection != null && !pauseSelectionPaint)
-						model.overlay.repaint();
+						model.overlay.repaint(overlayDrawer);
 				});
 			}
 		};
@@ -115,7 +129,7 @@ public class ToolModel {
 				Dimension imageSize = model.getImage().getSize();
 				if (lastImageSize == null || !imageSize.equals(lastImageSize)) {
 					restrictSelection();
-					lastImageSize = new Dimension(model.getWorkingImage().getWidth(), model.getWorkingImage().getHeight());
+					lastImageSize = model.getWorkingImageSize();
 				}
 			}
 		};
@@ -219,10 +233,26 @@ public class ToolModel {
 		this.strokeWidth = strokeWidth;
 	}
 
+	/**
+	 * Get the selection as it's drawn on the overlay
+	 * @return The selection, in overlay-space, or null if it isn't drawn
+	 */
+	private Rectangle getOverlaySelection() {
+		Rectangle imageBounds = model.overlay.getImageBounds();
+		if (selection == null || pauseSelectionPaint || imageBounds == null) return null;
+		double imageScale = model.overlay.getImageScale();
+		return new Rectangle(
+			(int) (selection.x * imageScale)+imageBounds.x,
+			(int) (selection.y * imageScale)+imageBounds.y,
+			(int) (selection.width * imageScale),
+			(int) (selection.height * imageScale)
+		);
+	}
+
 	/** Unselect the current selection */
 	public void unsetSelection() {
 		this.selection = null;
-		model.overlay.repaint();
+		model.overlay.repaint(overlayDrawer);
 		notifySelectionListeners();
 	}
 
@@ -236,7 +266,7 @@ public class ToolModel {
 			return;
 		}
 		this.selection = rectangle;
-		model.overlay.repaint();
+		model.overlay.repaint(overlayDrawer);
 		notifySelectionListeners();
 	}
 
@@ -254,13 +284,13 @@ public class ToolModel {
 	public void restrictSelection() {
 		//Restricts the selection to be within the image bounds
 		if (!model.hasImage() || selection == null) return;
-		Dimension imageSize = new Dimension(model.getWorkingImage().getWidth(), model.getWorkingImage().getHeight());
+		Dimension imageSize = model.getWorkingImageSize();
 		if (selection.x < 0) selection.x = 0;
 		if (selection.y < 0) selection.y = 0;
 		if (selection.x + selection.width > imageSize.width) selection.width = imageSize.width - selection.x;
 		if (selection.y + selection.height > imageSize.height) selection.height = imageSize.height - selection.y;
 		if (selection.width == 0 || selection.height == 0) unsetSelection();
-		model.overlay.repaint();
+		model.overlay.repaint(overlayDrawer);
 	}
 
 	/**
@@ -1,8 +1,15 @@
 package cosc202.andie.operations.colour;
 
 import java.awt.image.*;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 import cosc202.andie.ImageOperation;
+import cosc202.andie.ScalableOperation;
+import cosc202.andie.ColourMap;
+import cosc202.andie.PointOperation;
+import cosc202.andie.EncodableOperation;
 /**
  * <p>
  * ImageOperation to adjust an images brightness and contrast.
@@ -17,7 +24,9 @@ import cosc202.andie.ImageOperation;
  * @author Oliver Peyroux
  * @version 1.0
  */
-public class BrightnessAndContrast implements ImageOperation  {
+public class BrightnessAndContrast implements PointOperation, ScalableOperation, EncodableOperation  {
+
+    private static final long serialVersionUID = -2829602341121951679L;
 
     private int brightness;
     private int contrast;
@@ -50,35 +59,42 @@ public class BrightnessAndContrast implements ImageOperation  {
      * @return The resulting adjusted image.
      */
     public BufferedImage draw(BufferedImage input) throws ImageOperationException {
+        return getColourMap().draw(input);
+    }
 
-        //brightness change b
-        //contrast change c
-        //if pixel v is in range [0,255], this gets updated to new value v'
-
-        for (int y = 0; y < input.getHeight(); ++y) {
-            for (int x = 0; x < input.getWidth(); ++x) {
-
-                int pixel = input.getRGB(x, y);
-                int a = (pixel & 0xFF000000) >> 24;
-                int r = (pixel & 0x00FF0000) >> 16;
-                int g = (pixel & 0x0000FF00) >> 8;
-                int b = (pixel & 0x000000FF);
+    /**
+     * getColourMap, gets the adjusted value of each red, green and blue value.
+     * <p>
+     * If pixel value v is in range [0,255], it gets updated to
+     * v' = (1 + contrast/100) * (v - 127.5) + 127.5 * (1 + brightness/100), clamped to [0,255].
+     * </p>
+     */
+    @Override
+    public ColourMap getColourMap() {
+        int[] table = new int[256];
+        for (int v = 0; v < 256; v++) {
+            int adjusted = (int)((1 + (contrast / 100.0)) * (v - 127.5) + 127.5 * (1 + (brightness/100.0)));
+            table[v] = Math.max(0, Math.min(255, adjusted));
+        }
+        return ColourMap.lookup(table);
+    }
 
-                int red = (int)((1 + (contrast / 100.0)) * (r - 127.5) + 127.5 * (1 + (brightness/100.0)));   
-                int green = (int)((1 + (contrast / 100.0 )) * (g - 127.5) + 127.5 * (1 + (brightness/100.0)));
-                int blue = (int)((1 + (contrast / 100.0 )) * (b - 127.5) + 127.5 * (1 + (brightness/100.0)));
-                //need it to be within 0-255 for red,green,blue. (hence code below)
-                red = (int)Math.max(0, Math.min(255, red));
-                green = (int)Math.max(0, Math.min(255, green));
-                blue = (int)Math.max(0, Math.min(255, blue));
+    /**
+     * getHalo, gets how far around each pixel the operation reads from.
+     * Brightness and contrast only read the pixel itself, so it can be drawn in tiles by the {@link cosc202.andie.TileEngine}.
+     */
+    @Override
+    public int getHalo() {
+        return 0;
+    }
 
-                pixel = (a << 24) | (red << 16) | (green << 8) | blue;
-                input.setRGB(x, y, pixel);
-            }
-        }
-                    
-        return input;
-        
+    /**
+     * scaled, gets a version of the operation for previewing on a scaled copy of the image.
+     * Brightness and contrast don't depend on the size of the image, so this is the same operation.
+     */
+    @Override
+    public ImageOperation scaled(double scale) {
+        return this;
     }
 
     /**
@@ -98,4 +114,23 @@ public class BrightnessAndContrast implements ImageOperation  {
         String contrast = (this.contrast >= 0 ? "+" + this.contrast : "" + this.contrast) + "%";
         return String.format("Brightness & Contrast filter [Brightness: %s, Contrast: %s]", brightness, contrast);
     }
+
+    /**
+     * Construct a Brightness and Contrast adjustment from the parameters written by {@link #writeParameters(DataOutput)}
+     * @param in The input to read the parameters from
+     * @throws IOException If the parameters can't be read
+     */
+    public BrightnessAndContrast(DataInput in) throws IOException {
+        this(in.readInt(), in.readInt());
+    }
+
+    /**
+     * writeParameters, writes the operation's parameters to an operation log
+     */
+    @Override
+    public void writeParameters(DataOutput out) throws IOException {
+        out.writeInt(brightness);
+        out.writeInt(contrast);
+    }
+
 }
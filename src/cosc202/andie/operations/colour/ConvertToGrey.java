@@ -1,8 +1,13 @@
 package cosc202.andie.operations.colour;
 
 import java.awt.image.*;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
-import cosc202.andie.ImageOperation;
+import cosc202.andie.ColourMap;
+import cosc202.andie.PointOperation;
+import cosc202.andie.EncodableOperation;
 
 /**
  * <p>
@@ -22,7 +27,9 @@ import cosc202.andie.ImageOperation;
  * @author Steven Mills
  * @version 1.0
  */
-public class ConvertToGrey implements ImageOperation {
+public class ConvertToGrey implements PointOperation, EncodableOperation {
+
+    private static final long serialVersionUID = 4965390690613388113L;
 
     /**
      * <p>
@@ -49,25 +56,27 @@ public class ConvertToGrey implements ImageOperation {
      * @return The resulting greyscale image.
      */
     public BufferedImage draw(BufferedImage input) throws ImageOperationException {
-  
-        for (int y = 0; y < input.getHeight(); ++y) {
-            for (int x = 0; x < input.getWidth(); ++x) {
-                int argb = input.getRGB(x, y);
-                int a = (argb & 0xFF000000) >> 24;
-                int r = (argb & 0x00FF0000) >> 16;
-                int g = (argb & 0x0000FF00) >> 8;
-                int b = (argb & 0x000000FF);
+        return getColourMap().draw(input);
+    }
 
-                int grey = (int) Math.round(0.3*r + 0.6*g + 0.1*b);
+    /**
+     * getColourMap, gets the weighted average of red, green and blue that every channel is set to
+     */
+    @Override
+    public ColourMap getColourMap() {
+        double[] weights = { 0.3, 0.6, 0.1 };
+        return ColourMap.matrix(new double[][] { weights, weights, weights });
+    }
 
-                argb = (a << 24) | (grey << 16) | (grey << 8) | grey;
-                input.setRGB(x, y, argb);
-            }
-        }
-        
-        return input;
+    /**
+     * getHalo, gets how far around each pixel the operation reads from.
+     * Converting to greyscale only reads the pixel itself, so it can be drawn in tiles by the {@link cosc202.andie.TileEngine}.
+     */
+    @Override
+    public int getHalo() {
+        return 0;
     }
-    
+
     /**
      * drawPreview, previews the ConvertToGrey action before it is actually applied to the image
      */
@@ -83,5 +92,22 @@ public class ConvertToGrey implements ImageOperation {
     public String operationDescription() {
         return "Greyscale filter";
     }
-    
+
+    /**
+     * Construct a greyscale conversion from the parameters written by {@link #writeParameters(DataOutput)}
+     * @param in The input to read the parameters from
+     * @throws IOException If the parameters can't be read
+     */
+    public ConvertToGrey(DataInput in) throws IOException {
+        this();
+    }
+
+    /**
+     * writeParameters, writes the operation's parameters to an operation log
+     */
+    @Override
+    public void writeParameters(DataOutput out) throws IOException {
+        // No parameters
+    }
+
 }
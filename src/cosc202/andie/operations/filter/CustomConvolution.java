@@ -1,8 +1,10 @@
 package cosc202.andie.operations.filter;
 
 import java.awt.image.*;
+import java.util.Arrays;
 
-import cosc202.andie.Utils;
+import cosc202.andie.Cancellation;
+import cosc202.andie.PixelBuffer;
 
 /**
  * <p>
@@ -37,23 +39,26 @@ public class CustomConvolution {
         int r = (int)Math.floor(kernelDiameter / 2);
     
         //create enlarged image with all existing argb pixel values of old image set to the new images values 
-        BufferedImage enlargedImage = Utils.expandEdges(input, r);
+        PixelBuffer enlarged = PixelBuffer.of(input).expandEdges(r);
+        int[] enlargedPixels = enlarged.getPixels();
+        int enlargedWidth = enlarged.getWidth();
 
-        BufferedImage output = new BufferedImage(input.getColorModel(), input.copyData(null), input.isAlphaPremultiplied(), null);
+        PixelBuffer output = new PixelBuffer(input.getWidth(), input.getHeight());
+        int[] outputPixels = output.getPixels();
 
         for(int y = 0 ; y < output.getHeight(); ++y){
             for(int x = 0 ; x < output.getWidth(); ++x){
 
-                int argb = enlargedImage.getRGB(x+r,y+r); 
+                int argb = enlargedPixels[(y + r) * enlargedWidth + (x + r)]; 
                 int rResult = 0; 
                 int gResult = 0; 
                 int bResult = 0; 
                 int a = (argb & 0xFF000000) >> 24; 
                 for(int k = 0 ; k < kernelDiameter*kernelDiameter; k++) {
 
-                    int i = (k % kernelDiameter) -1; 
-                    int j = (k / kernelDiameter) -1; 
-                    int iargb = enlargedImage.getRGB((x + r + i), (y + r + j));
+                    int i = (k % kernelDiameter) - r; 
+                    int j = (k / kernelDiameter) - r; 
+                    int iargb = enlargedPixels[(y + r + j) * enlargedWidth + (x + r + i)];
                     int rValue = (iargb & 0x00FF0000) >> 16;
                     int gValue = (iargb & 0x0000FF00) >> 8;
                     int bValue = (iargb & 0x000000FF);
@@ -68,14 +73,246 @@ public class CustomConvolution {
                 int outputG = Math.min(Math.max((gResult+128), 0), 255);
                 int outputB = Math.min(Math.max((bResult+128), 0), 255);
 
-                int outputARGB = (outputA << 24) | (outputR << 16) | (outputG << 8) | (outputB);
+                outputPixels[y * output.getWidth() + x] = (outputA << 24) | (outputR << 16) | (outputG << 8) | (outputB);
+            }
+        }
+
+        return output.getImageLike(input);
+
+    }
 
-                output.setRGB(x, y, outputARGB);
+    /**
+     * <p>
+     * convolve, applies a (square) convolution kernel to every channel of an image, including alpha.
+     * </p>
+     * 
+     * <p>
+     * Pixels beyond the edges of the image take the value of the nearest edge pixel, as in {@link PixelBuffer#expandEdges(int)}.
+     * Results are rounded to the nearest value and clamped to [0, 255].
+     * </p>
+     * 
+     * @param input The pixels to convolve
+     * @param kernel The kernel values, row by row. Its length must be a square of an odd number.
+     * @return A new PixelBuffer holding the result
+     */
+    public static PixelBuffer convolve(PixelBuffer input, float[] kernel) {
+        int kernelDiameter = (int)Math.sqrt(kernel.length);
+        int r = kernelDiameter / 2;
+
+        PixelBuffer enlarged = input.expandEdges(r);
+        int[] enlargedPixels = enlarged.getPixels();
+        int enlargedWidth = enlarged.getWidth();
+
+        // Offset of each (non-zero) kernel element from the top-left of its window in the enlarged image
+        int taps = 0;
+        int[] offsets = new int[kernel.length];
+        float[] weights = new float[kernel.length];
+        for (int k = 0; k < kernel.length; k++) {
+            if (kernel[k] == 0) continue;
+            offsets[taps] = (k / kernelDiameter) * enlargedWidth + (k % kernelDiameter);
+            weights[taps++] = kernel[k];
+        }
+
+        PixelBuffer output = new PixelBuffer(input.getWidth(), input.getHeight());
+        int[] outputPixels = output.getPixels();
+        for (int y = 0; y < output.getHeight(); ++y) {
+            Cancellation.check();
+            for (int x = 0; x < output.getWidth(); ++x) {
+                int window = y * enlargedWidth + x;
+                float aResult = 0, rResult = 0, gResult = 0, bResult = 0;
+                for (int k = 0; k < taps; k++) {
+                    int argb = enlargedPixels[window + offsets[k]];
+                    float weight = weights[k];
+                    aResult += weight * (argb >>> 24);
+                    rResult += weight * ((argb >> 16) & 0xFF);
+                    gResult += weight * ((argb >> 8) & 0xFF);
+                    bResult += weight * (argb & 0xFF);
+                }
+                outputPixels[y * output.getWidth() + x] = (clamp(aResult) << 24) | (clamp(rResult) << 16) | (clamp(gResult) << 8) | clamp(bResult);
             }
         }
+        return output;
+    }
+
+    /**
+     * <p>
+     * convolveSeparable, applies a separable convolution kernel to every channel of an image, including alpha.
+     * </p>
+     * 
+     * <p>
+     * The result is the same as {@link #convolve(PixelBuffer, float[])} with the square kernel whose values are
+     * {@code kernel[row] * kernel[column]}, but the image is convolved with the 1D kernel horizontally and then vertically,
+     * so each pixel costs O(r) rather than O(r^2).
+     * The intermediate result is kept at full precision, and rounded only once at the end.
+     * </p>
+     * 
+     * @param input The pixels to convolve
+     * @param kernel The 1D kernel values. Its length must be odd.
+     * @return A new PixelBuffer holding the result
+     */
+    public static PixelBuffer convolveSeparable(PixelBuffer input, float[] kernel) {
+        int r = kernel.length / 2;
+        int width = input.getWidth();
+        int height = input.getHeight();
+        int[] inputPixels = input.getPixels();
 
-        return output; 
+        // Horizontal pass, into four interleaved float channels (a, r, g, b) per pixel
+        float[] horizontal = new float[width * height * 4];
+        float[] row = new float[(width + 2 * r) * 4];
+        for (int y = 0; y < height; y++) {
+            Cancellation.check();
+            // Unpack the row, with its edges expanded from the nearest pixel
+            for (int x = -r; x < width + r; x++) {
+                int argb = inputPixels[y * width + Math.min(Math.max(x, 0), width - 1)];
+                int i = (x + r) * 4;
+                row[i] = argb >>> 24;
+                row[i + 1] = (argb >> 16) & 0xFF;
+                row[i + 2] = (argb >> 8) & 0xFF;
+                row[i + 3] = argb & 0xFF;
+            }
+            int rowStart = y * width * 4;
+            for (int k = 0; k < kernel.length; k++) {
+                float weight = kernel[k];
+                if (weight == 0) continue;
+                int offset = k * 4;
+                for (int i = 0; i < width * 4; i++) {
+                    horizontal[rowStart + i] += weight * row[offset + i];
+                }
+            }
+        }
 
+        // Vertical pass, accumulating whole rows at a time
+        PixelBuffer output = new PixelBuffer(width, height);
+        int[] outputPixels = output.getPixels();
+        float[] sums = new float[width * 4];
+        for (int y = 0; y < height; y++) {
+            Cancellation.check();
+            Arrays.fill(sums, 0);
+            for (int k = 0; k < kernel.length; k++) {
+                float weight = kernel[k];
+                if (weight == 0) continue;
+                int sourceStart = Math.min(Math.max(y + k - r, 0), height - 1) * width * 4;
+                for (int i = 0; i < width * 4; i++) {
+                    sums[i] += weight * horizontal[sourceStart + i];
+                }
+            }
+            for (int x = 0; x < width; x++) {
+                int i = x * 4;
+                outputPixels[y * width + x] = (clamp(sums[i]) << 24) | (clamp(sums[i + 1]) << 16) | (clamp(sums[i + 2]) << 8) | clamp(sums[i + 3]);
+            }
+        }
+        return output;
+    }
+
+    /**
+     * <p>
+     * boxMean, replaces every channel of each pixel (including alpha) with its mean over the surrounding (2r+1)x(2r+1) square.
+     * </p>
+     * 
+     * <p>
+     * The result is the same as {@link #convolve(PixelBuffer, float[])} with a uniform kernel, with the same edge handling,
+     * but the sums are kept as running totals of the pixels entering and leaving the window, first along each row and then
+     * down each column. Each pixel therefore costs the same no matter how large the radius is.
+     * </p>
+     * 
+     * @param input The pixels to average
+     * @param r The radius of the window
+     * @return A new PixelBuffer holding the result
+     */
+    public static PixelBuffer boxMean(PixelBuffer input, int r) {
+        int width = input.getWidth();
+        int height = input.getHeight();
+        int[] inputPixels = input.getPixels();
+
+        // Horizontal pass: sums over each row's window, as four interleaved int channels (a, r, g, b) per pixel
+        int[] horizontal = new int[width * height * 4];
+        int[] sum = new int[4];
+        for (int y = 0; y < height; y++) {
+            Cancellation.check();
+            int rowStart = y * width;
+            Arrays.fill(sum, 0);
+            for (int x = -r; x <= r; x++) {
+                addChannels(sum, inputPixels[rowStart + Math.min(Math.max(x, 0), width - 1)], 1);
+            }
+            for (int x = 0; x < width; x++) {
+                int i = (rowStart + x) * 4;
+                horizontal[i] = sum[0];
+                horizontal[i + 1] = sum[1];
+                horizontal[i + 2] = sum[2];
+                horizontal[i + 3] = sum[3];
+                addChannels(sum, inputPixels[rowStart + Math.min(x + r + 1, width - 1)], 1);
+                addChannels(sum, inputPixels[rowStart + Math.max(x - r, 0)], -1);
+            }
+        }
+
+        // Vertical pass: running sums of whole rows of the horizontal sums
+        PixelBuffer output = new PixelBuffer(width, height);
+        int[] outputPixels = output.getPixels();
+        int[] sums = new int[width * 4];
+        for (int y = -r; y <= r; y++) {
+            addRow(sums, horizontal, Math.min(Math.max(y, 0), height - 1));
+        }
+        int count = (2 * r + 1) * (2 * r + 1);
+        for (int y = 0; y < height; y++) {
+            Cancellation.check();
+            for (int x = 0; x < width; x++) {
+                int i = x * 4;
+                // Rounded integer division, since the sums are never negative
+                outputPixels[y * width + x] = ((sums[i] + count / 2) / count << 24) | ((sums[i + 1] + count / 2) / count << 16)
+                        | ((sums[i + 2] + count / 2) / count << 8) | ((sums[i + 3] + count / 2) / count);
+            }
+            addRow(sums, horizontal, Math.min(y + r + 1, height - 1));
+            subtractRow(sums, horizontal, Math.max(y - r, 0));
+        }
+        return output;
+    }
+
+    /**
+     * Add (or subtract) the channels of a packed ARGB pixel to a running sum
+     * @param sum The sum of each channel (a, r, g, b)
+     * @param argb The pixel
+     * @param sign 1 to add the pixel, or -1 to subtract it
+     */
+    private static void addChannels(int[] sum, int argb, int sign) {
+        sum[0] += sign * (argb >>> 24);
+        sum[1] += sign * ((argb >> 16) & 0xFF);
+        sum[2] += sign * ((argb >> 8) & 0xFF);
+        sum[3] += sign * (argb & 0xFF);
+    }
+
+    /**
+     * Add one row of interleaved channel sums to a running total
+     * @param sums The running total of each channel in the row
+     * @param rows The interleaved channel sums of every row
+     * @param y The row to add
+     */
+    private static void addRow(int[] sums, int[] rows, int y) {
+        int start = y * sums.length;
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] += rows[start + i];
+        }
+    }
+
+    /**
+     * Subtract one row of interleaved channel sums from a running total
+     * @param sums The running total of each channel in the row
+     * @param rows The interleaved channel sums of every row
+     * @param y The row to subtract
+     */
+    private static void subtractRow(int[] sums, int[] rows, int y) {
+        int start = y * sums.length;
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] -= rows[start + i];
+        }
+    }
+
+    /**
+     * Round a channel value to the nearest integer in [0, 255]
+     * @param value The raw channel value
+     * @return The rounded and clamped value
+     */
+    static int clamp(float value) {
+        return Math.min(Math.max(Math.round(value), 0), 255);
     }
 
 }
@@ -1,8 +1,14 @@
 package cosc202.andie.operations.filter;
 
 import java.awt.image.*;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 import cosc202.andie.ImageOperation;
+import cosc202.andie.ScalableOperation;
+import cosc202.andie.TileableOperation;
+import cosc202.andie.EncodableOperation;
 
 /**
  * <p>
@@ -28,7 +34,9 @@ import cosc202.andie.ImageOperation;
  * @version 1.0
  */
 
-public class EmbossFilter implements ImageOperation  {
+public class EmbossFilter implements TileableOperation, ScalableOperation, EncodableOperation  {
+
+    private static final long serialVersionUID = -1860449037193206526L;
     
     int angle; 
 
@@ -80,6 +88,24 @@ public class EmbossFilter implements ImageOperation  {
 
     }// end draw method 
 
+    /**
+     * getHalo, gets how far around each pixel the operation reads from.
+     * The filter reads the pixels within 1 pixel of each pixel, so it can be drawn in tiles by the {@link cosc202.andie.TileEngine}.
+     */
+    @Override
+    public int getHalo() {
+        return 1;
+    }
+
+    /**
+     * scaled, gets a version of the operation for previewing on a scaled copy of the image.
+     * The emboss kernel is only 3x3, which is as small as a kernel gets, so the filter is left as it is.
+     */
+    @Override
+    public ImageOperation scaled(double scale) {
+        return this;
+    }
+
     /**
      * drawPreview, previews the EmbossFilter before it is actually applied to the image
      */
@@ -96,5 +122,21 @@ public class EmbossFilter implements ImageOperation  {
         return String.format("Emboss Filter [Angle: %ddeg]", angle);
     }
 
+    /**
+     * Construct a Emboss filter from the parameters written by {@link #writeParameters(DataOutput)}
+     * @param in The input to read the parameters from
+     * @throws IOException If the parameters can't be read
+     */
+    public EmbossFilter(DataInput in) throws IOException {
+        this(in.readInt());
+    }
+
+    /**
+     * writeParameters, writes the operation's parameters to an operation log
+     */
+    @Override
+    public void writeParameters(DataOutput out) throws IOException {
+        out.writeInt(angle);
+    }
 
 }
@@ -1,9 +1,15 @@
 package cosc202.andie.operations.filter;
 
 import java.awt.image.*;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 import cosc202.andie.ImageOperation;
-import cosc202.andie.Utils;
+import cosc202.andie.ScalableOperation;
+import cosc202.andie.TileableOperation;
+import cosc202.andie.PixelBuffer;
+import cosc202.andie.EncodableOperation;
 
 /**
  * <p>
@@ -18,17 +24,25 @@ import cosc202.andie.Utils;
  * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
  * </p>
  * 
- * @see java.awt.image.ConvolveOp
+ * @see CustomConvolution
  * @author Blake Leahy
  * @version 1.0
  */
-public class GaussianBlur implements ImageOperation {
+public class GaussianBlur implements TileableOperation, ScalableOperation, EncodableOperation {
+
+    private static final long serialVersionUID = 2496196874149689837L;
     
     /**
      * The size of filter to apply. A radius of 1 is a 3x3 filter, a radius of 2 a 5x5 filter, and so forth.
      */
     private int radius;
 
+    /**
+     * Whether to convolve with the full (2r+1)x(2r+1) kernel, rather than the equivalent horizontal and vertical 1D kernels.
+     * The results are the same (up to rounding), but the full kernel is much slower, so it is only used for comparison.
+     */
+    private boolean fullKernel;
+
     /**
      * <p>
      * Construct a Gaussian Blur filter with the given size.
@@ -43,7 +57,21 @@ public class GaussianBlur implements ImageOperation {
      * @param radius The radius of the newly constructed MeanFilter
      */
     public GaussianBlur(int radius) {
-        this.radius = radius;    
+        this(radius, false);
+    }
+
+    /**
+     * <p>
+     * Construct a Gaussian Blur filter with the given size, choosing how it is convolved.
+     * </p>
+     * 
+     * @param radius The radius of the newly constructed GaussianBlur
+     * @param fullKernel True to convolve with the full 2D kernel, or false to use two 1D passes
+     * @see GaussianBlur(int)
+     */
+    public GaussianBlur(int radius, boolean fullKernel) {
+        this.radius = radius;
+        this.fullKernel = fullKernel;
     }
 
     /**
@@ -72,6 +100,11 @@ public class GaussianBlur implements ImageOperation {
      * Larger radius' lead to stronger blurring.
      * </p>
      * 
+     * <p>
+     * Since a Gaussian is separable, the image is blurred horizontally and then vertically with a 1D kernel,
+     * which costs O(r) per pixel rather than O(r^2). The full 2D kernel is used instead if {@link fullKernel} is set.
+     * </p>
+     * 
      * @param input The image to apply the Gaussian filter to.
      * @return The resulting (blurred)) image.
      */
@@ -83,6 +116,11 @@ public class GaussianBlur implements ImageOperation {
         }
         //assuming acceptable image is selected as input: 
 
+        if (!fullKernel) {
+            PixelBuffer output = CustomConvolution.convolveSeparable(PixelBuffer.of(input), separableKernel());
+            return output.getImageLike(input);
+        }
+
         // set size using users radius and create array of this size
         int size = (2 * radius + 1) * (2 * radius + 1);
         float[] array = new float[size];
@@ -111,20 +149,32 @@ public class GaussianBlur implements ImageOperation {
             newKernelArray[i] = value;
         }   
 
-        //create enlarged image with all existing argb pixel values of old image set to the new images values 
-        BufferedImage enlargedImage = Utils.expandEdges(input, radius);
-
-        // Implement convolution on new enlargedImage from input 
+        // Implement convolution (with edges expanded from the nearest pixel) on the input
 
-        Kernel kernel = new Kernel(2*radius+1, 2*radius+1, newKernelArray);
-        ConvolveOp convOp = new ConvolveOp(kernel);
-        BufferedImage output = new BufferedImage(input.getColorModel(), input.copyData(null), input.isAlphaPremultiplied(), null);
-        convOp.filter(enlargedImage, output);
+        PixelBuffer output = CustomConvolution.convolve(PixelBuffer.of(input), newKernelArray);
 
         // return final MeanFiltered output iamge
-        return output; 
+        return output.getImageLike(input);
 
     }
+
+    /**
+     * Build the normalised 1D kernel, whose outer product with itself is the normalised 2D kernel
+     * @return The 1D kernel, of length 2 * radius + 1
+     */
+    private float[] separableKernel() {
+        float[] kernel = new float[2 * radius + 1];
+        float kernelTotal = 0;
+        for (int x = -radius; x <= radius; x++) {
+            kernel[x + radius] = (float)gaussianEquation(x, 0, radius);
+            kernelTotal += kernel[x + radius];
+        }
+        for (int i = 0; i < kernel.length; i++) {
+            kernel[i] /= kernelTotal;
+        }
+        return kernel;
+    }
+
     // gaussian equation method for easy access 
     public double gaussianEquation(int x, int y, int radius){
         double sigma = 1.0 / 3.0 * radius;
@@ -135,6 +185,24 @@ public class GaussianBlur implements ImageOperation {
         double result = oneOverTwoPiSigmaSquared * Math.exp(exponent);
         return result;
     }
+    /**
+     * getHalo, gets how far around each pixel the operation reads from.
+     * The filter reads the pixels within {@link radius} of each pixel, so it can be drawn in tiles by the {@link cosc202.andie.TileEngine}.
+     */
+    @Override
+    public int getHalo() {
+        return radius;
+    }
+
+    /**
+     * scaled, gets a version of the filter for previewing on a scaled copy of the image,
+     * with its radius scaled to match (but at least 1).
+     */
+    @Override
+    public ImageOperation scaled(double scale) {
+        return new GaussianBlur(Math.max(1, (int) Math.round(radius * scale)), fullKernel);
+    }
+
     /**
      * drawPreview, previews the GaussianBlur before it is actually applied to the image
      */
@@ -151,5 +219,22 @@ public class GaussianBlur implements ImageOperation {
         return String.format("Mean Filter [Radius: %dpx]", radius);
     }
 
+    /**
+     * Construct a Gaussian blur from the parameters written by {@link #writeParameters(DataOutput)}
+     * @param in The input to read the parameters from
+     * @throws IOException If the parameters can't be read
+     */
+    public GaussianBlur(DataInput in) throws IOException {
+        this(in.readInt(), in.readBoolean());
+    }
+
+    /**
+     * writeParameters, writes the operation's parameters to an operation log
+     */
+    @Override
+    public void writeParameters(DataOutput out) throws IOException {
+        out.writeInt(radius);
+        out.writeBoolean(fullKernel);
+    }
 
-}
\ No newline at end of file
+}
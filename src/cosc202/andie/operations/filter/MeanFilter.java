@@ -1,10 +1,15 @@
 package cosc202.andie.operations.filter;
 
 import java.awt.image.*;
-import java.util.*;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 import cosc202.andie.ImageOperation;
-import cosc202.andie.Utils;
+import cosc202.andie.ScalableOperation;
+import cosc202.andie.TileableOperation;
+import cosc202.andie.PixelBuffer;
+import cosc202.andie.EncodableOperation;
 
 /**
  * <p>
@@ -20,11 +25,13 @@ import cosc202.andie.Utils;
  * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
  * </p>
  * 
- * @see java.awt.image.ConvolveOp
+ * @see CustomConvolution
  * @author Steven Mills
  * @version 1.0
  */
-public class MeanFilter implements ImageOperation {
+public class MeanFilter implements TileableOperation, ScalableOperation, EncodableOperation {
+
+    private static final long serialVersionUID = -640454890929435433L;
     
     /**
      * The size of filter to apply. A radius of 1 is a 3x3 filter, a radius of 2 a 5x5 filter, and so forth.
@@ -69,11 +76,16 @@ public class MeanFilter implements ImageOperation {
      * </p>
      * 
      * <p>
-     * As with many filters, the Mean filter is implemented via convolution.
+     * As with many filters, the Mean filter is equivalent to a convolution.
      * The size of the convolution kernel is specified by the {@link radius}.  
      * Larger radii lead to stronger blurring.
      * </p>
      * 
+     * <p>
+     * Rather than convolving with a uniform kernel, the filter keeps running sums of the pixels in the window
+     * (see {@link CustomConvolution#boxMean(PixelBuffer, int)}), so it takes the same time for any radius.
+     * </p>
+     * 
      * @param input The image to apply the Mean filter to.
      * @return The resulting (blurred)) image.
      */
@@ -85,23 +97,31 @@ public class MeanFilter implements ImageOperation {
         }
         //assuming acceptable image is selected as input
         
-        //create enlarged image with all existing argb pixel values of old image set to the new images values 
-        BufferedImage enlargedImage = Utils.expandEdges(input, radius);
-
-        // Implement convolution on new enlargedImage from input 
+        // Average each pixel's neighbourhood (with edges expanded from the nearest pixel)
 
-        int size = (2*radius+1) * (2*radius+1);
-        float [] array = new float[size];
-        Arrays.fill(array, 1.0f/size);
+        PixelBuffer output = CustomConvolution.boxMean(PixelBuffer.of(input), radius);
 
-        Kernel kernel = new Kernel(2*radius+1, 2*radius+1, array);
-        ConvolveOp convOp = new ConvolveOp(kernel);
-        BufferedImage output = new BufferedImage(input.getColorModel(), input.copyData(null), input.isAlphaPremultiplied(), null);
-        convOp.filter(enlargedImage, output);
+        return output.getImageLike(input);
 
-        return output; 
+    }
+    /**
+     * getHalo, gets how far around each pixel the operation reads from.
+     * The filter reads the pixels within {@link radius} of each pixel, so it can be drawn in tiles by the {@link cosc202.andie.TileEngine}.
+     */
+    @Override
+    public int getHalo() {
+        return radius;
+    }
 
+    /**
+     * scaled, gets a version of the filter for previewing on a scaled copy of the image,
+     * with its radius scaled to match (but at least 1).
+     */
+    @Override
+    public ImageOperation scaled(double scale) {
+        return new MeanFilter(Math.max(1, (int) Math.round(radius * scale)));
     }
+
     /**
      * drawPreview, previews the MeanFilter before it is actually applied to the image
      */
@@ -118,6 +138,22 @@ public class MeanFilter implements ImageOperation {
     public String operationDescription() {
         return String.format("Mean Filter [Radius: %dpx]", radius);
     }
-    
+
+    /**
+     * Construct a Mean filter from the parameters written by {@link #writeParameters(DataOutput)}
+     * @param in The input to read the parameters from
+     * @throws IOException If the parameters can't be read
+     */
+    public MeanFilter(DataInput in) throws IOException {
+        this(in.readInt());
+    }
+
+    /**
+     * writeParameters, writes the operation's parameters to an operation log
+     */
+    @Override
+    public void writeParameters(DataOutput out) throws IOException {
+        out.writeInt(radius);
+    }
 
 }
@@ -1,10 +1,17 @@
 package cosc202.andie.operations.filter;
 
 import java.awt.image.*;
-import java.util.*;
+import java.util.Arrays;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
+import cosc202.andie.Cancellation;
 import cosc202.andie.ImageOperation;
-import cosc202.andie.Utils;
+import cosc202.andie.ScalableOperation;
+import cosc202.andie.TileableOperation;
+import cosc202.andie.PixelBuffer;
+import cosc202.andie.EncodableOperation;
 
 /**
  * <p>
@@ -20,11 +27,17 @@ import cosc202.andie.Utils;
  * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
  * </p>
  * 
- * @see java.awt.image.ConvolveOp
  * @author Blake Leahy
  * @version 1.0
  */
-public class MedianFilter implements ImageOperation {
+public class MedianFilter implements TileableOperation, ScalableOperation, EncodableOperation {
+
+    private static final long serialVersionUID = -7164627668678674496L;
+
+    /** The number of channels in a pixel */
+    private static final int CHANNELS = 4;
+    /** The position of each channel (alpha, red, green, blue) within a packed ARGB pixel */
+    private static final int[] SHIFTS = { 24, 16, 8, 0 };
     
     /**
      * The size of filter to apply. A radius of 1 is a 3x3 filter, a radius of 2 a 5x5 filter, and so forth.
@@ -64,9 +77,24 @@ public class MedianFilter implements ImageOperation {
      * </p>
      * 
      * <p>
-     * As with many filters, the Median filter is implemented via convolution.
-     * The size of the convolution kernel is specified by the {@link radius}.  
-     * Larger radii lead to stronger blurring.
+     * Each channel of each pixel is replaced by the median of that channel over the (2r+1)x(2r+1) neighbourhood
+     * around it, where r is the {@link radius}. Larger radii lead to stronger smoothing.
+     * </p>
+     * 
+     * <p>
+     * Rather than sorting every neighbourhood, the filter keeps histograms of the values in the neighbourhood,
+     * following Perreault and H&eacute;bert's constant-time median filter:
+     * </p>
+     * <ul>
+     * <li> Each column of the image keeps a histogram of the 2r+1 values in it around the current row.
+     *      Moving down a row adds one value to, and removes one value from, each column histogram. </li>
+     * <li> The neighbourhood's histogram is the sum of 2r+1 column histograms. Moving along a row adds the
+     *      histogram of the column entering the neighbourhood, and subtracts the one leaving it. </li>
+     * <li> Histograms have a coarse level (16 bins of 16 values) and a fine level (all 256 values).
+     *      The median is found in the coarse level first, and only the 16 fine bins under it are brought up to date and searched. </li>
+     * </ul>
+     * <p>
+     * So the cost of each pixel does not grow with the radius.
      * </p>
      * 
      * @param input The image to apply the Median filter to.
@@ -79,65 +107,153 @@ public class MedianFilter implements ImageOperation {
             throw new IllegalArgumentException("Image to apply Median filter to does not exist");
         }
         //assuming acceptable image is selected as input:
-        
-        //set size of image based off radius input 
-        int size = (2 * radius + 1) * (2 * radius + 1);
-        
+
         int r = radius; // as original radius accessed later
-        
+        int diameter = 2 * r + 1;
+        int width = input.getWidth();
+        int height = input.getHeight();
+
+        // The median is the value at this (0-based) position in the sorted neighbourhood
+        int rank = diameter * diameter / 2;
+
         //create enlarged image with all existing argb pixel values of old image set to the new images values 
-        BufferedImage enlargedImage = Utils.expandEdges(input, r);
-
-        // As this filter is not done via a convolution,
-        // process each argb channel of each pixel separately. 
-        // For each pixel location of argb's, store in separate lists of values for 
-        // alpha, red, green and blue. 
-        // Sort through these lists and find the middle value (median) for the output image. 
-
-        BufferedImage output = new BufferedImage(input.getColorModel(), input.copyData(null), input.isAlphaPremultiplied(), null);
-
-        int[] alphas = new int[size];
-        int[] reds = new int[size];
-        int[] greens = new int[size];
-        int[] blues = new int[size];
-
-        // outer for loop to access each pixel
-        // for each pixel, an inner loop is created to iterate over all neighboring pixels to 
-        // the current pixel the outer loop is on - only iterate within the size of the window. 
-        for(int y = 0; y < input.getHeight(); y++){
-            if (Thread.interrupted()) throw new RuntimeException("Interrupted"); // check for interrupt (Because median filter is slow)
-            for(int x = 0; x < input.getWidth(); x++){
-                for (int i = 0; i < size; i++){
-                    int nx = i % (2 * r + 1) - r;
-                    int ny = i / (2 * r + 1) - r;
-                    int argb = enlargedImage.getRGB(x+nx+r, y+ny+r);
-                    int alpha = (argb & 0xFF000000) >> 24;
-                    int red = (argb & 0x00FF0000) >> 16;
-                    int green = (argb & 0x0000FF00) >> 8;
-                    int blue = (argb & 0x000000FF);
-                    alphas[i] = alpha;
-                    reds[i] = red;
-                    greens[i] = green;
-                    blues[i] = blue;
-                    // }
-                } 
-                Arrays.sort(alphas);
-                Arrays.sort(reds);
-                Arrays.sort(greens);
-                Arrays.sort(blues);
-                int newA = alphas[size / 2];
-                int newR = reds[size / 2];
-                int newG = greens[size / 2];
-                int newB = blues[size / 2];
-
-                // combine the new argb values into a new argb value and set the enlargedOutput pixels to these values
-                int newARGB = (newA << 24) | (newR << 16) | (newG << 8) | (newB);
-                output.setRGB(x, y, newARGB);
+        PixelBuffer enlarged = PixelBuffer.of(input).expandEdges(r);
+        int[] enlargedPixels = enlarged.getPixels();
+        int enlargedWidth = enlarged.getWidth();
+
+        PixelBuffer output = new PixelBuffer(width, height);
+        int[] outputPixels = output.getPixels();
+
+        // Histograms for each of the four channels (alpha, red, green, blue), one after the other.
+        // Column histograms, for every column of the enlarged image
+        int[] columnFine = new int[CHANNELS * enlargedWidth * 256];
+        int[] columnCoarse = new int[CHANNELS * enlargedWidth * 16];
+        // The neighbourhood histogram of the current pixel. Fine bins are only updated when they are searched,
+        // and fineColumn records the x position each group of 16 fine bins was last brought up to date for.
+        int[] coarse = new int[CHANNELS * 16];
+        int[] fine = new int[CHANNELS * 256];
+        int[] fineColumn = new int[CHANNELS * 16];
+
+        // Fill the column histograms with the rows around the first output row
+        for (int y = 0; y < diameter - 1; y++) {
+            updateColumns(columnFine, columnCoarse, enlargedPixels, y, enlargedWidth, 1);
+        }
+
+        for (int y = 0; y < height; y++) {
+            Cancellation.check();
+            // Move the column histograms down to cover rows y to y + 2r of the enlarged image
+            updateColumns(columnFine, columnCoarse, enlargedPixels, y + diameter - 1, enlargedWidth, 1);
+            if (y > 0)
+                updateColumns(columnFine, columnCoarse, enlargedPixels, y - 1, enlargedWidth, -1);
+
+            // Start the neighbourhood at the first diameter columns, with every fine bin out of date
+            Arrays.fill(coarse, 0);
+            Arrays.fill(fineColumn, -diameter);
+            for (int c = 0; c < CHANNELS; c++) {
+                for (int column = 0; column < diameter; column++) {
+                    addHistogram(coarse, c * 16, columnCoarse, (c * enlargedWidth + column) * 16, 16, 1);
+                }
+            }
+
+            for (int x = 0; x < width; x++) {
+                int argb = 0;
+                for (int c = 0; c < CHANNELS; c++) {
+                    if (x > 0) {
+                        addHistogram(coarse, c * 16, columnCoarse, (c * enlargedWidth + x + diameter - 1) * 16, 16, 1);
+                        addHistogram(coarse, c * 16, columnCoarse, (c * enlargedWidth + x - 1) * 16, 16, -1);
+                    }
+
+                    // Find the coarse bin holding the median
+                    int bin = c * 16, count = 0;
+                    while (count + coarse[bin] <= rank) {
+                        count += coarse[bin++];
+                    }
+
+                    // Bring its fine bins up to date, either by sliding them along, or by summing the columns again if that is cheaper
+                    int group = bin - c * 16;
+                    int fineStart = c * 256 + group * 16;
+                    int lastColumn = fineColumn[bin];
+                    if (x - lastColumn < diameter) {
+                        for (int column = lastColumn + 1; column <= x; column++) {
+                            addHistogram(fine, fineStart, columnFine, (c * enlargedWidth + column + diameter - 1) * 256 + group * 16, 16, 1);
+                            addHistogram(fine, fineStart, columnFine, (c * enlargedWidth + column - 1) * 256 + group * 16, 16, -1);
+                        }
+                    } else {
+                        Arrays.fill(fine, fineStart, fineStart + 16, 0);
+                        for (int column = x; column < x + diameter; column++) {
+                            addHistogram(fine, fineStart, columnFine, (c * enlargedWidth + column) * 256 + group * 16, 16, 1);
+                        }
+                    }
+                    fineColumn[bin] = x;
+
+                    // Find the median within the fine bins
+                    int value = fineStart;
+                    while (count + fine[value] <= rank) {
+                        count += fine[value++];
+                    }
+                    argb |= (value - c * 256) << SHIFTS[c];
+                }
+
+                outputPixels[y * width + x] = argb;
+            }
+        }
+
+        return output.getImageLike(input);
+    }
+
+    /**
+     * Add (or remove) the values in one row of the enlarged image to the column histograms
+     * @param columnFine The fine column histograms
+     * @param columnCoarse The coarse column histograms
+     * @param pixels The pixels of the enlarged image
+     * @param y The row to add
+     * @param width The width of the enlarged image
+     * @param sign 1 to add the row, or -1 to remove it
+     */
+    private static void updateColumns(int[] columnFine, int[] columnCoarse, int[] pixels, int y, int width, int sign) {
+        for (int x = 0; x < width; x++) {
+            int argb = pixels[y * width + x];
+            for (int c = 0; c < CHANNELS; c++) {
+                int value = (argb >>> SHIFTS[c]) & 0xFF;
+                columnFine[(c * width + x) * 256 + value] += sign;
+                columnCoarse[(c * width + x) * 16 + (value >> 4)] += sign;
             }
         }
+    }
+
+    /**
+     * Add (or subtract) a range of one histogram's bins to another's
+     * @param histogram The histogram to add to
+     * @param start The first bin of histogram to add to
+     * @param other The histogram to add
+     * @param otherStart The first bin of other to add
+     * @param length The number of bins to add
+     * @param sign 1 to add, or -1 to subtract
+     */
+    private static void addHistogram(int[] histogram, int start, int[] other, int otherStart, int length, int sign) {
+        for (int i = 0; i < length; i++) {
+            histogram[start + i] += sign * other[otherStart + i];
+        }
+    }
 
-        return output; 
+    /**
+     * getHalo, gets how far around each pixel the operation reads from.
+     * The filter reads the pixels within {@link radius} of each pixel, so it can be drawn in tiles by the {@link cosc202.andie.TileEngine}.
+     */
+    @Override
+    public int getHalo() {
+        return radius;
     }
+
+    /**
+     * scaled, gets a version of the filter for previewing on a scaled copy of the image,
+     * with its radius scaled to match (but at least 1).
+     */
+    @Override
+    public ImageOperation scaled(double scale) {
+        return new MedianFilter(Math.max(1, (int) Math.round(radius * scale)));
+    }
+
     /**
      * drawPreview, previews the MedianFilter before it is actually applied to the image
      */
@@ -154,6 +270,22 @@ public class MedianFilter implements ImageOperation {
     public String operationDescription() {
         return String.format("Median Filter [Radius: %dpx]", radius);
     }
-    
+
+    /**
+     * Construct a Median filter from the parameters written by {@link #writeParameters(DataOutput)}
+     * @param in The input to read the parameters from
+     * @throws IOException If the parameters can't be read
+     */
+    public MedianFilter(DataInput in) throws IOException {
+        this(in.readInt());
+    }
+
+    /**
+     * writeParameters, writes the operation's parameters to an operation log
+     */
+    @Override
+    public void writeParameters(DataOutput out) throws IOException {
+        out.writeInt(radius);
+    }
 
 }
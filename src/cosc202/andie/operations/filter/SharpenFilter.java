@@ -1,9 +1,13 @@
 package cosc202.andie.operations.filter;
 
 import java.awt.image.*;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
-import cosc202.andie.ImageOperation;
-import cosc202.andie.Utils;
+import cosc202.andie.TileableOperation;
+import cosc202.andie.PixelBuffer;
+import cosc202.andie.EncodableOperation;
 
 /**
  * <p>
@@ -19,11 +23,13 @@ import cosc202.andie.Utils;
  * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">CC BY-NC-SA 4.0</a>
  * </p>
  * 
- * @see java.awt.image.ConvolveOp
+ * @see CustomConvolution
  * @author Blake Leahy
  * @version 1.0
  */
-public class SharpenFilter implements ImageOperation  {
+public class SharpenFilter implements TileableOperation, EncodableOperation  {
+
+    private static final long serialVersionUID = 4607465703002477656L;
     
     //construct a sharpenFilter 
     public SharpenFilter(){ }
@@ -49,22 +55,24 @@ public class SharpenFilter implements ImageOperation  {
             throw new IllegalArgumentException("Image to apply Sharpen filter to does not exist");
         }
         
-        //create enlarged image with all existing argb pixel values of old image set to the new images values 
-        BufferedImage enlargedImage = Utils.expandEdges(input, 1);
-
-        // Implement convolution on new enlargedImage from input 
+        // Implement convolution (with edges expanded from the nearest pixel) on the input
         // kernel values in 3x3 array 
         float[] array = { 0, -1 / 2.0f, 0,
                         -1 / 2.0f, 3, -1 / 2.0f,
                         0, -1 / 2.0f, 0 };
 
-        Kernel kernel = new Kernel(3 ,3 , array);
+        PixelBuffer output = CustomConvolution.convolve(PixelBuffer.of(input), array);
 
-        ConvolveOp convOp = new ConvolveOp(kernel);
-        BufferedImage output = new BufferedImage(input.getColorModel(), input.copyData(null), input.isAlphaPremultiplied(), null);
-        convOp.filter(enlargedImage, output);
+        return output.getImageLike(input);
+    }
 
-        return output; 
+    /**
+     * getHalo, gets how far around each pixel the operation reads from.
+     * The filter reads the pixels within 1 pixel of each pixel, so it can be drawn in tiles by the {@link cosc202.andie.TileEngine}.
+     */
+    @Override
+    public int getHalo() {
+        return 1;
     }
 
     /**
@@ -85,4 +93,21 @@ public class SharpenFilter implements ImageOperation  {
         return draw(input);
     }
 
+    /**
+     * Construct a Sharpen filter from the parameters written by {@link #writeParameters(DataOutput)}
+     * @param in The input to read the parameters from
+     * @throws IOException If the parameters can't be read
+     */
+    public SharpenFilter(DataInput in) throws IOException {
+        this();
+    }
+
+    /**
+     * writeParameters, writes the operation's parameters to an operation log
+     */
+    @Override
+    public void writeParameters(DataOutput out) throws IOException {
+        // No parameters
+    }
+
 }
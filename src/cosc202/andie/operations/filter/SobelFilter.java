@@ -1,8 +1,14 @@
 package cosc202.andie.operations.filter;
 
 import java.awt.image.*;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 import cosc202.andie.ImageOperation;
+import cosc202.andie.ScalableOperation;
+import cosc202.andie.TileableOperation;
+import cosc202.andie.EncodableOperation;
 
 /**
  * <p>
@@ -18,7 +24,9 @@ import cosc202.andie.ImageOperation;
  * @version 1.0
  */
 
-public class SobelFilter implements ImageOperation  {
+public class SobelFilter implements TileableOperation, ScalableOperation, EncodableOperation  {
+
+    private static final long serialVersionUID = -9017521591501334314L;
     /**
      * horizontal data field, whether its applied
      * horizontally or vertically.
@@ -63,6 +71,24 @@ public class SobelFilter implements ImageOperation  {
 
     }// end draw method 
 
+    /**
+     * getHalo, gets how far around each pixel the operation reads from.
+     * The filter reads the pixels within 1 pixel of each pixel, so it can be drawn in tiles by the {@link cosc202.andie.TileEngine}.
+     */
+    @Override
+    public int getHalo() {
+        return 1;
+    }
+
+    /**
+     * scaled, gets a version of the operation for previewing on a scaled copy of the image.
+     * The Sobel kernel is only 3x3, which is as small as a kernel gets, so the filter is left as it is.
+     */
+    @Override
+    public ImageOperation scaled(double scale) {
+        return this;
+    }
+
     /**
      * drawPreview, previews the SobelFilter before it is actually applied to the image
      */
@@ -79,4 +105,21 @@ public class SobelFilter implements ImageOperation  {
         return String.format("Sobel Filter [%s]", horizontal ? "Horizontal" : "Vertical");
     }
 
+    /**
+     * Construct a Sobel filter from the parameters written by {@link #writeParameters(DataOutput)}
+     * @param in The input to read the parameters from
+     * @throws IOException If the parameters can't be read
+     */
+    public SobelFilter(DataInput in) throws IOException {
+        this(in.readBoolean());
+    }
+
+    /**
+     * writeParameters, writes the operation's parameters to an operation log
+     */
+    @Override
+    public void writeParameters(DataOutput out) throws IOException {
+        out.writeBoolean(horizontal);
+    }
+
 }
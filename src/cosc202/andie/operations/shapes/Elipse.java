@@ -4,10 +4,17 @@ import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
+import java.awt.Shape;
 import java.awt.RenderingHints;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
 import java.awt.image.BufferedImage;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
-import cosc202.andie.ImageOperation;
+import cosc202.andie.EncodableOperation;
+import cosc202.andie.ShapeOperation;
 
 /**
  * <p>
@@ -22,7 +29,9 @@ import cosc202.andie.ImageOperation;
  * @version 1.0
  */
 
-public class Elipse implements ImageOperation {
+public class Elipse implements ShapeOperation, EncodableOperation {
+
+	private static final long serialVersionUID = -8732024595215888727L;
 
 	private Rectangle rect;
 	private Color strokeColor;
@@ -41,14 +50,22 @@ public class Elipse implements ImageOperation {
 	@Override
 	public BufferedImage draw(BufferedImage input) throws ImageOperationException {
 		Graphics2D g = input.createGraphics();
+		drawShape(g);
+		g.dispose();
+		return input;
+	}
+
+	/**
+	 * drawShape, draws the filled and stroked elipse
+	 */
+	@Override
+	public void drawShape(Graphics2D g) {
 		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 		g.setColor(fillColor);
 		g.fillOval(rect.x, rect.y, rect.width, rect.height);
 		g.setColor(strokeColor);
 		g.setStroke(new BasicStroke(strokeWidth));
 		g.drawOval(rect.x, rect.y, rect.width, rect.height);
-		g.dispose();
-		return input;
 	}
 
 	@Override
@@ -56,10 +73,44 @@ public class Elipse implements ImageOperation {
 		return draw(input);
 	}
 
+	/**
+	 * Get the area covered by the elipse, its stroke, and a margin for antialiasing
+	 */
+	@Override
+	public Shape getAffectedArea() {
+		Ellipse2D elipse = new Ellipse2D.Double(rect.x, rect.y, rect.width, rect.height);
+		Area area = new Area(elipse);
+		area.add(new Area(new BasicStroke(strokeWidth + 4).createStrokedShape(elipse)));
+		return area;
+	}
+
 	@Override
 	public String operationDescription() {
 		return String.format("Elipse [X:%d, Y:%d, Width:%dpx, Height:%dpx] [Fill: #%x, Stroke: #%x, Stroke Width: %dpx]", rect.x,
 				rect.y, rect.width, rect.height, fillColor.getRGB(), strokeColor.getRGB(), strokeWidth);
 	}
 
+	/**
+	 * Construct a ellipse from the parameters written by {@link #writeParameters(DataOutput)}
+	 * @param in The input to read the parameters from
+	 * @throws IOException If the parameters can't be read
+	 */
+	public Elipse(DataInput in) throws IOException {
+		this(new Rectangle(in.readInt(), in.readInt(), in.readInt(), in.readInt()), EncodableOperation.readColor(in), EncodableOperation.readColor(in), in.readInt());
+	}
+
+	/**
+	 * writeParameters, writes the operation's parameters to an operation log
+	 */
+	@Override
+	public void writeParameters(DataOutput out) throws IOException {
+		out.writeInt(rect.x);
+		out.writeInt(rect.y);
+		out.writeInt(rect.width);
+		out.writeInt(rect.height);
+		EncodableOperation.writeColor(out, strokeColor);
+		EncodableOperation.writeColor(out, fillColor);
+		out.writeInt(strokeWidth);
+	}
+
 }
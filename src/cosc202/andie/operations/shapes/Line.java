@@ -5,10 +5,15 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.RenderingHints;
-import java.awt.color.ColorSpace;
+import java.awt.Shape;
+import java.awt.geom.Line2D;
 import java.awt.image.BufferedImage;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
-import cosc202.andie.ImageOperation;
+import cosc202.andie.EncodableOperation;
+import cosc202.andie.ShapeOperation;
 
 /**
  * <p>
@@ -23,7 +28,9 @@ import cosc202.andie.ImageOperation;
  * @version 1.0
  */
 
-public class Line implements ImageOperation  {
+public class Line implements ShapeOperation, EncodableOperation  {
+
+	private static final long serialVersionUID = 4667880706549760109L;
 
 	private Point p1;
 	private Point p2;
@@ -44,11 +51,19 @@ public class Line implements ImageOperation  {
 		// Enable anti-aliasing only if the input has a png color palette with enough colors
 		if (input.getColorModel().getPixelSize() > 4)
 			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		drawShape(g);
+		g.dispose();
+		return input;
+	}
+
+	/**
+	 * drawShape, draws the stroked line
+	 */
+	@Override
+	public void drawShape(Graphics2D g) {
 		g.setColor(color);
 		g.setStroke(new BasicStroke(width));
 		g.drawLine(p1.x, p1.y, p2.x, p2.y);
-		g.dispose();
-		return input;
 	}
 
 	@Override
@@ -56,11 +71,40 @@ public class Line implements ImageOperation  {
 		return draw(input);
 	}
 
+	/**
+	 * Get the area covered by the line's stroke, with a margin for antialiasing
+	 */
+	@Override
+	public Shape getAffectedArea() {
+		return new BasicStroke(width + 4).createStrokedShape(new Line2D.Float(p1, p2));
+	}
+
 	@Override
 	public String operationDescription() {
 		return String.format("Line [From: (%d, %d), To: (%d, %d)] [Stroke: #%x, Stroke Width: %dpx]", p1.x, p1.y, p2.x, p2.y,
 				color.getRGB(), width);
 	}
 
-	
+	/**
+	 * Construct a line from the parameters written by {@link #writeParameters(DataOutput)}
+	 * @param in The input to read the parameters from
+	 * @throws IOException If the parameters can't be read
+	 */
+	public Line(DataInput in) throws IOException {
+		this(new Point(in.readInt(), in.readInt()), new Point(in.readInt(), in.readInt()), EncodableOperation.readColor(in), in.readInt());
+	}
+
+	/**
+	 * writeParameters, writes the operation's parameters to an operation log
+	 */
+	@Override
+	public void writeParameters(DataOutput out) throws IOException {
+		out.writeInt(p1.x);
+		out.writeInt(p1.y);
+		out.writeInt(p2.x);
+		out.writeInt(p2.y);
+		EncodableOperation.writeColor(out, color);
+		out.writeInt(width);
+	}
+
 }
@@ -4,9 +4,15 @@ import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.Area;
 import java.awt.image.BufferedImage;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
-import cosc202.andie.ImageOperation;
+import cosc202.andie.EncodableOperation;
+import cosc202.andie.ShapeOperation;
 
 /**
  * <p>
@@ -21,7 +27,9 @@ import cosc202.andie.ImageOperation;
  * @version 1.0
  */
 
-public class RectangleShape implements ImageOperation  {
+public class RectangleShape implements ShapeOperation, EncodableOperation  {
+
+	private static final long serialVersionUID = 141368277855406454L;
 
 	private Rectangle rect;
 	private Color strokeColor;
@@ -39,13 +47,21 @@ public class RectangleShape implements ImageOperation  {
 	@Override
 	public BufferedImage draw(BufferedImage input) throws ImageOperationException {
 		Graphics2D g = input.createGraphics();
+		drawShape(g);
+		g.dispose();
+		return input;
+	}
+
+	/**
+	 * drawShape, draws the filled and stroked rectangle
+	 */
+	@Override
+	public void drawShape(Graphics2D g) {
 		g.setColor(fillColor);
 		g.fillRect(rect.x, rect.y, rect.width, rect.height);
 		g.setColor(strokeColor);
 		g.setStroke(new BasicStroke(strokeWidth));
 		g.drawRect(rect.x, rect.y, rect.width, rect.height);
-		g.dispose();
-		return input;
 	}
 
 	@Override
@@ -53,11 +69,43 @@ public class RectangleShape implements ImageOperation  {
 		return draw(input);
 	}
 
+	/**
+	 * Get the area covered by the rectangle, its stroke, and a margin for stroke normalization
+	 */
+	@Override
+	public Shape getAffectedArea() {
+		Area area = new Area(rect);
+		area.add(new Area(new BasicStroke(strokeWidth + 4).createStrokedShape(rect)));
+		return area;
+	}
+
 	@Override
 	public String operationDescription() {
 		return String.format("Rectangle [X:%d, Y:%d, Width:%dpx, Height:%dpx] [Fill: #%x, Stroke: #%x, Stroke Width: %dpx]", rect.x,
 				rect.y, rect.width, rect.height, fillColor.getRGB(), strokeColor.getRGB(), strokeWidth);
 	}
 
-	
+	/**
+	 * Construct a rectangle from the parameters written by {@link #writeParameters(DataOutput)}
+	 * @param in The input to read the parameters from
+	 * @throws IOException If the parameters can't be read
+	 */
+	public RectangleShape(DataInput in) throws IOException {
+		this(new Rectangle(in.readInt(), in.readInt(), in.readInt(), in.readInt()), EncodableOperation.readColor(in), EncodableOperation.readColor(in), in.readInt());
+	}
+
+	/**
+	 * writeParameters, writes the operation's parameters to an operation log
+	 */
+	@Override
+	public void writeParameters(DataOutput out) throws IOException {
+		out.writeInt(rect.x);
+		out.writeInt(rect.y);
+		out.writeInt(rect.width);
+		out.writeInt(rect.height);
+		EncodableOperation.writeColor(out, strokeColor);
+		EncodableOperation.writeColor(out, fillColor);
+		out.writeInt(strokeWidth);
+	}
+
 }
@@ -3,9 +3,14 @@ package cosc202.andie.operations.transform;
 import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 import cosc202.andie.ImageOperation;
+import cosc202.andie.EncodableOperation;
 
 /**
  * <p>
@@ -22,7 +27,9 @@ import cosc202.andie.ImageOperation;
  * @author Oliver Peyroux
  * @version 1.0
  */
-public class Crop implements ImageOperation {
+public class Crop implements ImageOperation, EncodableOperation {
+
+	private static final long serialVersionUID = -1744818676688414930L;
     
 	Point location;
 	Dimension size;
@@ -58,6 +65,14 @@ public class Crop implements ImageOperation {
 		return draw(input);
 	}
 
+	/**
+	 * Get the region of the input the crop keeps
+	 * @return The region, in the input's coordinates
+	 */
+	public Rectangle getRegion() {
+		return new Rectangle(location, size);
+	}
+
 	/**
      * operationDescription, gets a description of the operation
      * and returns it. This is used in the macro panel
@@ -66,4 +81,25 @@ public class Crop implements ImageOperation {
 	public String operationDescription() {
 		return String.format("Crop [X:%d, Y:%d, Width:%dpx, Height:%dpx]", location.x, location.y, size.width, size.height);
 	}
-} 
+
+	/**
+	 * Construct a Crop from the parameters written by {@link #writeParameters(DataOutput)}
+	 * @param in The input to read the parameters from
+	 * @throws IOException If the parameters can't be read
+	 */
+	public Crop(DataInput in) throws IOException {
+		this(new Point(in.readInt(), in.readInt()), new Dimension(in.readInt(), in.readInt()));
+	}
+
+	/**
+	 * writeParameters, writes the operation's parameters to an operation log
+	 */
+	@Override
+	public void writeParameters(DataOutput out) throws IOException {
+		out.writeInt(location.x);
+		out.writeInt(location.y);
+		out.writeInt(size.width);
+		out.writeInt(size.height);
+	}
+
+}
@@ -2,7 +2,12 @@ package cosc202.andie.operations.transform;
 
 
 import java.awt.image.*;
-import cosc202.andie.ImageOperation;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import cosc202.andie.Orientation;
+import cosc202.andie.OrientationOperation;
+import cosc202.andie.EncodableOperation;
 
 /**
  * <p>
@@ -22,7 +27,9 @@ import cosc202.andie.ImageOperation;
  * @version 1.0
 */
 
-public class FlipHorizontal implements ImageOperation {
+public class FlipHorizontal implements OrientationOperation, EncodableOperation {
+
+    private static final long serialVersionUID = -603385228757585462L;
     
 
     public FlipHorizontal(){}
@@ -31,24 +38,15 @@ public class FlipHorizontal implements ImageOperation {
      * @param input the image to be flipped.
      */
     public BufferedImage draw(BufferedImage input) throws ImageOperationException {
-    
-    int pixels [][] = new int [input.getWidth()][input.getHeight()];
-        for(int i = 0; i < input.getWidth(); i++){
-            for(int j = 0; j < input.getHeight(); j++){
-                pixels[i][j] = input.getRGB(i, j);
-            }
-        }
-        int x = 0;
-        for(int i = input.getWidth()-1; i >=0; i--){
-            int y = 0;
-            for(int j = 0; j < input.getHeight(); j++){
-                input.setRGB(x, y, pixels[i][j]);
-                y++;
-            }
-            x++;
-        }
+        return getOrientation().draw(input);
+    }
 
-        return input;
+    /**
+     * getOrientation, gets the orientation this operation gives the image, a horizontal flip
+     */
+    @Override
+    public Orientation getOrientation() {
+        return Orientation.FLIP_HORIZONTAL;
     }
 
     /**
@@ -65,5 +63,22 @@ public class FlipHorizontal implements ImageOperation {
     public String operationDescription() {
         return "Horizontal Flip";
     }
- }
 
+    /**
+     * Construct a horizontal flip from the parameters written by {@link #writeParameters(DataOutput)}
+     * @param in The input to read the parameters from
+     * @throws IOException If the parameters can't be read
+     */
+    public FlipHorizontal(DataInput in) throws IOException {
+        this();
+    }
+
+    /**
+     * writeParameters, writes the operation's parameters to an operation log
+     */
+    @Override
+    public void writeParameters(DataOutput out) throws IOException {
+        // No parameters
+    }
+
+}
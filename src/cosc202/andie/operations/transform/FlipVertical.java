@@ -2,7 +2,12 @@ package cosc202.andie.operations.transform;
 
 
 import java.awt.image.*;
-import cosc202.andie.ImageOperation;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import cosc202.andie.Orientation;
+import cosc202.andie.OrientationOperation;
+import cosc202.andie.EncodableOperation;
 
 /**
  * <p>
@@ -22,7 +27,9 @@ import cosc202.andie.ImageOperation;
  * @version 1.0
 */
 
-public class FlipVertical implements ImageOperation{
+public class FlipVertical implements OrientationOperation, EncodableOperation{
+
+    private static final long serialVersionUID = 6227958886090905386L;
 
     public FlipVertical(){}
 
@@ -32,23 +39,15 @@ public class FlipVertical implements ImageOperation{
      * 
      *  */
     public BufferedImage draw(BufferedImage input) throws ImageOperationException {
-    int pixels [][] = new int [input.getWidth()][input.getHeight()];
-        for(int i = 0; i < input.getWidth(); i++){
-            for(int j = 0; j < input.getHeight(); j++){
-                pixels[i][j] = input.getRGB(i, j);
-            }
-        }
-        int x = 0;
-        for(int i = 0; i < input.getWidth(); i++){
-            int y = 0;
-            for(int j = input.getHeight()-1; j >= 0; j--){
-                input.setRGB(x, y, pixels[i][j]);
-                y++;
-            }
-            x++;
-        }
+        return getOrientation().draw(input);
+    }
 
-        return input;
+    /**
+     * getOrientation, gets the orientation this operation gives the image, a vertical flip
+     */
+    @Override
+    public Orientation getOrientation() {
+        return Orientation.FLIP_VERTICAL;
     }
 
     /**
@@ -66,5 +65,22 @@ public class FlipVertical implements ImageOperation{
     public String operationDescription() {
         return "Vertical Flip";
     }
-    
+
+    /**
+     * Construct a vertical flip from the parameters written by {@link #writeParameters(DataOutput)}
+     * @param in The input to read the parameters from
+     * @throws IOException If the parameters can't be read
+     */
+    public FlipVertical(DataInput in) throws IOException {
+        this();
+    }
+
+    /**
+     * writeParameters, writes the operation's parameters to an operation log
+     */
+    @Override
+    public void writeParameters(DataOutput out) throws IOException {
+        // No parameters
+    }
+
 }
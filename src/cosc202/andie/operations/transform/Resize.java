@@ -3,7 +3,12 @@ package cosc202.andie.operations.transform;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import cosc202.andie.ImageOperation;
+import cosc202.andie.ScalableOperation;
+import cosc202.andie.EncodableOperation;
 
 import static cosc202.andie.LanguageConfig.msg;
 /**
@@ -24,7 +29,9 @@ import static cosc202.andie.LanguageConfig.msg;
  * @version 1.0
 */
 
-public class Resize implements ImageOperation{
+public class Resize implements ScalableOperation, EncodableOperation {
+
+    private static final long serialVersionUID = -2799731523751164696L;
 
     private int option;
 
@@ -57,6 +64,15 @@ public class Resize implements ImageOperation{
         return output;
     }
 
+    /**
+     * scaled, gets a version of the operation for previewing on a scaled copy of the image.
+     * Resizing by a percentage doesn't depend on the size of the image, so this is the same operation.
+     */
+    @Override
+    public ImageOperation scaled(double scale) {
+        return this;
+    }
+
     /**
      * drawPreview, previews the Resize before it is actually applied to the image
      */
@@ -73,4 +89,21 @@ public class Resize implements ImageOperation{
         return String.format("Resize [%d%%]", option);
     }
 
+    /**
+     * Construct a Resize from the parameters written by {@link #writeParameters(DataOutput)}
+     * @param in The input to read the parameters from
+     * @throws IOException If the parameters can't be read
+     */
+    public Resize(DataInput in) throws IOException {
+        this(in.readInt());
+    }
+
+    /**
+     * writeParameters, writes the operation's parameters to an operation log
+     */
+    @Override
+    public void writeParameters(DataOutput out) throws IOException {
+        out.writeInt(option);
+    }
+
 }
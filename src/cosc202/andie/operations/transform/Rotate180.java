@@ -1,7 +1,12 @@
 package cosc202.andie.operations.transform;
 
 import java.awt.image.*;
-import cosc202.andie.ImageOperation;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import cosc202.andie.Orientation;
+import cosc202.andie.OrientationOperation;
+import cosc202.andie.EncodableOperation;
 
 /**
  * <p>
@@ -20,16 +25,26 @@ import cosc202.andie.ImageOperation;
  * @author Bernard Pieters
  * @version 1.0
 */
-public class Rotate180 implements ImageOperation{
+public class Rotate180 implements OrientationOperation, EncodableOperation{
+
+    private static final long serialVersionUID = 9091745954076340737L;
 
     public Rotate180(){}
 
     /** Applys the Rotate to the image 
-     * runs method twice for two 90 degree turns 
+     * in a single pass over the pixels
      * @param input Image to be rotated 
     */
     public BufferedImage draw(BufferedImage input) throws ImageOperationException {
-        return new RotateLeft().draw(new RotateLeft().draw(input));
+        return getOrientation().draw(input);
+    }
+
+    /**
+     * getOrientation, gets the orientation this operation gives the image, a 180 degree rotation: both flips
+     */
+    @Override
+    public Orientation getOrientation() {
+        return Orientation.ROTATE_180;
     }
 
     /**
@@ -48,5 +63,21 @@ public class Rotate180 implements ImageOperation{
         return "180 Degree Rotation";
     }
 
+    /**
+     * Construct a 180 degree rotation from the parameters written by {@link #writeParameters(DataOutput)}
+     * @param in The input to read the parameters from
+     * @throws IOException If the parameters can't be read
+     */
+    public Rotate180(DataInput in) throws IOException {
+        this();
+    }
+
+    /**
+     * writeParameters, writes the operation's parameters to an operation log
+     */
+    @Override
+    public void writeParameters(DataOutput out) throws IOException {
+        // No parameters
+    }
 
-}
\ No newline at end of file
+}
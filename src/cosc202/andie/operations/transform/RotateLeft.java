@@ -1,7 +1,12 @@
 package cosc202.andie.operations.transform;
 
 import java.awt.image.*;
-import cosc202.andie.ImageOperation;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import cosc202.andie.Orientation;
+import cosc202.andie.OrientationOperation;
+import cosc202.andie.EncodableOperation;
 
 /**
  * <p>
@@ -20,7 +25,9 @@ import cosc202.andie.ImageOperation;
  * @author Bernard Pieters
  * @version 1.0
 */
-public class RotateLeft implements ImageOperation{
+public class RotateLeft implements OrientationOperation, EncodableOperation{
+
+    private static final long serialVersionUID = -1628536136481698568L;
 
     public RotateLeft(){
     }
@@ -29,27 +36,17 @@ public class RotateLeft implements ImageOperation{
      * @param input Image to be rotated 
     */
     public BufferedImage draw(BufferedImage input) throws ImageOperationException {
-    int pixels [][] = new int [input.getWidth()][input.getHeight()];
-        for(int i = 0; i < input.getWidth(); i++){
-            for(int j = 0; j < input.getHeight(); j++){
-                pixels[i][j] = input.getRGB(i, j);
-            }
-        }
-
-        BufferedImage output = new BufferedImage(input.getHeight(), input.getWidth(), input.getType());
-
-        int x = 0;
-        for(int i = 0; i < output.getWidth(); i++){
-            int y = output.getHeight()-1;
-            for(int j = 0; j < output.getHeight(); j++){
-                output.setRGB(x, y, pixels[j][i]);
-                y--;
-            }
-            x++;
-        }
+        return getOrientation().draw(input);
+    }
 
-        return output;
+    /**
+     * getOrientation, gets the orientation this operation gives the image, a 90 degree anticlockwise rotation: a transpose, then a vertical flip
+     */
+    @Override
+    public Orientation getOrientation() {
+        return Orientation.ROTATE_LEFT;
     }
+
     /**
      * drawPreview, previews the Left Rotation before it is actually applied to the image
      */
@@ -65,5 +62,21 @@ public class RotateLeft implements ImageOperation{
         return "90 Degree Anticlockwise Rotation";
     }
 
+    /**
+     * Construct a left rotation from the parameters written by {@link #writeParameters(DataOutput)}
+     * @param in The input to read the parameters from
+     * @throws IOException If the parameters can't be read
+     */
+    public RotateLeft(DataInput in) throws IOException {
+        this();
+    }
+
+    /**
+     * writeParameters, writes the operation's parameters to an operation log
+     */
+    @Override
+    public void writeParameters(DataOutput out) throws IOException {
+        // No parameters
+    }
+
 }
-    
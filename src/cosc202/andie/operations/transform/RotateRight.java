@@ -1,7 +1,12 @@
 package cosc202.andie.operations.transform;
 
 import java.awt.image.*;
-import cosc202.andie.ImageOperation;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import cosc202.andie.Orientation;
+import cosc202.andie.OrientationOperation;
+import cosc202.andie.EncodableOperation;
 /**
  * <p>
  * ImageOperation to rotate an image right .
@@ -20,7 +25,9 @@ import cosc202.andie.ImageOperation;
  * @version 1.0
 */
 
-public class RotateRight implements ImageOperation{
+public class RotateRight implements OrientationOperation, EncodableOperation{
+
+    private static final long serialVersionUID = -2395829062490557313L;
 
     public RotateRight(){
     }
@@ -30,28 +37,17 @@ public class RotateRight implements ImageOperation{
      * @param input Image to be rotated 
      */
     public BufferedImage draw(BufferedImage input) throws ImageOperationException {
+        return getOrientation().draw(input);
+    }
 
-    int pixels [][] = new int [input.getWidth()][input.getHeight()];
-        for(int i = 0; i < input.getWidth(); i++){
-            for(int j = 0; j < input.getHeight(); j++){
-                pixels[i][j] = input.getRGB(i, j);
-            }
-        }
-
-        BufferedImage output = new BufferedImage(input.getHeight(), input.getWidth(), input.getType());
-
-        int x = output.getWidth()-1;
-        for(int i = 0; i < output.getWidth(); i++){
-            int y = 0;
-            for(int j = 0; j < output.getHeight(); j++){
-                output.setRGB(x, y, pixels[j][i]);
-                y++;
-            }
-            x--;
-        }
-
-        return output;
+    /**
+     * getOrientation, gets the orientation this operation gives the image, a 90 degree clockwise rotation: a transpose, then a horizontal flip
+     */
+    @Override
+    public Orientation getOrientation() {
+        return Orientation.ROTATE_RIGHT;
     }
+
     /**
      * drawPreview, previews the Right Rotation before it is actually applied to the image
      */
@@ -68,4 +64,21 @@ public class RotateRight implements ImageOperation{
         return "90 Degree Clockwise Rotation";
     }
 
-}
\ No newline at end of file
+    /**
+     * Construct a right rotation from the parameters written by {@link #writeParameters(DataOutput)}
+     * @param in The input to read the parameters from
+     * @throws IOException If the parameters can't be read
+     */
+    public RotateRight(DataInput in) throws IOException {
+        this();
+    }
+
+    /**
+     * writeParameters, writes the operation's parameters to an operation log
+     */
+    @Override
+    public void writeParameters(DataOutput out) throws IOException {
+        // No parameters
+    }
+
+}
@@ -3,7 +3,7 @@ package cosc202.andie.tools;
 import java.awt.Cursor;
 import java.awt.Point;
 
-import cosc202.andie.ImageOperation;
+import cosc202.andie.ShapeOperation;
 import cosc202.andie.controllers.AndieController;
 import cosc202.andie.models.AndieModel;
 import cosc202.andie.models.MouseModel.MouseModelListener;
@@ -23,14 +23,14 @@ import cosc202.andie.models.ToolModel;
  * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">cc by-nc-sa 4.0</a>
  * </p>
  * 
- * @see Tool
+ * @see ShapeTool
  * @see Line
  * @see ToolModel
  * 
  * @author Jeb Nicholson
  * @version 1.0
  */
-public class LineTool extends Tool {
+public class LineTool extends ShapeTool {
 
 	private MouseModelListener listener;
 
@@ -63,13 +63,13 @@ public class LineTool extends Tool {
 			public void mouseDragged(MouseStatus status) {
 				if (p1 == null) 
 					return;
-				controller.operations.update(getOp(p1, status.position, status.isShiftDown), false);
+				dragShape(getOp(p1, status.position, status.isShiftDown));
 			}
 			public void mouseClicked(MouseStatus status) { }
 			public void mouseUp(MouseStatus status) {
 				if (p1 == null) 
 					return;
-				controller.operations.apply(getOp(p1, status.position, status.isShiftDown));
+				applyShape(getOp(p1, status.position, status.isShiftDown));
 			}
 			public void mouseDown(MouseStatus status) {
 				p1 = status.position;
@@ -86,7 +86,7 @@ public class LineTool extends Tool {
 	 * @param fixAngle Whether the user wants to snap to the nearest 45 degrees
 	 * @return The line operation.
 	 */
-	private ImageOperation getOp(Point p1, Point p2, boolean fixAngle) {
+	private ShapeOperation getOp(Point p1, Point p2, boolean fixAngle) {
 		Point np2 = new Point(p2);
 		if (fixAngle) { //Fixes angle to nearest 45 degrees
 			double angle = Math.atan2(np2.y - p1.y, np2.x - p1.x);
@@ -5,7 +5,7 @@ import java.awt.Dimension;
 import java.awt.Point;
 import java.awt.Rectangle;
 
-import cosc202.andie.ImageOperation;
+import cosc202.andie.ShapeOperation;
 import cosc202.andie.controllers.AndieController;
 import cosc202.andie.models.AndieModel;
 import cosc202.andie.models.MouseModel.MouseModelListener;
@@ -25,14 +25,14 @@ import cosc202.andie.models.ToolModel;
  * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">cc by-nc-sa 4.0</a>
  * </p>
  * 
- * @see Tool
+ * @see ShapeTool
  * @see Rectangle
  * @see ToolModel
  * 
  * @author Jeb Nicholson
  * @version 1.0
  */
-public class RectangleTool extends Tool {
+public class RectangleTool extends ShapeTool {
 
 	private MouseModelListener listener;
 
@@ -65,13 +65,13 @@ public class RectangleTool extends Tool {
 			public void mouseDragged(MouseStatus status) {
 				if (p == null) 
 					return;
-				controller.operations.update(getOp(p, status.position, status.isShiftDown, status.isCommtrolDown), false);
+				dragShape(getOp(p, status.position, status.isShiftDown, status.isCommtrolDown));
 			}
 			public void mouseClicked(MouseStatus status) { }
 			public void mouseUp(MouseStatus status) {
 				if (p == null) 
 					return;
-				controller.operations.apply(getOp(p, status.position, status.isShiftDown, status.isCommtrolDown));
+				applyShape(getOp(p, status.position, status.isShiftDown, status.isCommtrolDown));
 			}
 			public void mouseDown(MouseStatus status) {
 				p = status.position;
@@ -89,7 +89,7 @@ public class RectangleTool extends Tool {
 	 * @param centerp1 Whether the user wants to draw from the center of p1
 	 * @return The rectangle operation.
 	 */
-	private ImageOperation getOp(Point p1, Point p2, boolean fixRatio, boolean centerp1) {
+	private ShapeOperation getOp(Point p1, Point p2, boolean fixRatio, boolean centerp1) {
 		Point np1 = new Point(p1);
 		Point np2 = new Point(p2);
 
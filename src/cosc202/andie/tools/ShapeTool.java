@@ -0,0 +1,131 @@
+package cosc202.andie.tools;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+
+import cosc202.andie.ShapeOperation;
+import cosc202.andie.controllers.AndieController;
+import cosc202.andie.models.AndieModel;
+import cosc202.andie.models.OverlayModel.OverlayDrawer;
+
+/**
+ * <p>
+ * The ShapeTool class is an abstract class for tools that drag out a shape (e.g. a rectangle or a line) and draw it onto the image.
+ * </p>
+ *
+ * <p>
+ * While the shape is being dragged, it is drawn onto the overlay, scaled to the view, rather than previewed on a copy of the image.
+ * Only the part of the overlay the shape covers is repainted as it moves, so dragging costs the same however big the image is.
+ * The shape is drawn into the image once, when the mouse is released.
+ * </p>
+ *
+ * <p>
+ * <a href="https://creativecommons.org/licenses/by-nc-sa/4.0/">cc by-nc-sa 4.0</a>
+ * </p>
+ *
+ * @see Tool
+ * @see ShapeOperation
+ * @see ElipseTool
+ * @see RectangleTool
+ * @see LineTool
+ *
+ * @author Jeb Nicholson
+ * @version 1.0
+ */
+public abstract class ShapeTool extends Tool {
+
+	/** The shape being dragged, or null if there is none */
+	private ShapeOperation shape;
+	private OverlayDrawer overlayDrawer;
+
+	/**
+	 * Create a new ShapeTool
+	 * @param model The base AndieModel
+	 * @param controller The base AndieController
+	 */
+	public ShapeTool(AndieModel model, AndieController controller) {
+		super(model, controller);
+
+		overlayDrawer = new OverlayDrawer() {
+			public void drawOverlay(Graphics2D g) {
+				AffineTransform transform = getImageTransform();
+				if (shape == null || transform == null) return;
+				Graphics2D shapeGraphics = (Graphics2D) g.create();
+				// The shape is cut off at the edges of the image, as it will be once it's drawn into it
+				shapeGraphics.clip(model.overlay.getImageBounds());
+				shapeGraphics.transform(transform);
+				shape.drawShape(shapeGraphics);
+				shapeGraphics.dispose();
+			}
+
+			public Rectangle getOverlayBounds() {
+				AffineTransform transform = getImageTransform();
+				if (shape == null || transform == null) return new Rectangle();
+				Rectangle bounds = transform.createTransformedShape(shape.getAffectedArea()).getBounds();
+				// A margin for antialiasing at the overlay's scale
+				bounds.grow(2, 2);
+				return bounds.intersection(model.overlay.getImageBounds());
+			}
+		};
+	}
+
+	/**
+	 * Get the transform from image-space to overlay-space
+	 * @return The transform, or null if the image isn't on the overlay yet
+	 */
+	private AffineTransform getImageTransform() {
+		Rectangle imageBounds = model.overlay.getImageBounds();
+		if (imageBounds == null) return null;
+		double imageScale = model.overlay.getImageScale();
+		AffineTransform transform = AffineTransform.getTranslateInstance(imageBounds.x, imageBounds.y);
+		transform.scale(imageScale, imageScale);
+		return transform;
+	}
+
+	/**
+	 * Show the shape being dragged on the overlay
+	 * @param shape The shape, in image-space
+	 */
+	protected void dragShape(ShapeOperation shape) {
+		this.shape = shape;
+		model.overlay.repaint(overlayDrawer);
+	}
+
+	/**
+	 * Remove the shape being dragged from the overlay, and draw it into the image
+	 * @param shape The final shape, in image-space
+	 */
+	protected void applyShape(ShapeOperation shape) {
+		clearShape();
+		controller.operations.apply(shape);
+	}
+
+	/**
+	 * Remove the shape being dragged from the overlay
+	 */
+	private void clearShape() {
+		if (shape == null) return;
+		shape = null;
+		model.overlay.repaint(overlayDrawer);
+	}
+
+	/**
+	 * Activate the tool (Registers the overlay drawer)
+	 */
+	@Override
+	public void activateTool() {
+		super.activateTool();
+		model.overlay.registerOverlayDrawer(overlayDrawer);
+	}
+
+	/**
+	 * Deactivate the tool (Removes the shape being dragged and the overlay drawer)
+	 */
+	@Override
+	public void deactivateTool() {
+		super.deactivateTool();
+		clearShape();
+		model.overlay.unregisterOverlayDrawer(overlayDrawer);
+	}
+}
@@ -21,6 +21,7 @@ import cosc202.andie.models.ToolModel;
  * </p>
  * 
  * @see AndieModel
+ * @see ShapeTool
  * @see ElipseTool
  * @see RectangleTool
  * @see LineTool
@@ -0,0 +1,121 @@
+package tests.cosc202.andie;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Stack;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import cosc202.andie.AndieBatch;
+import cosc202.andie.ImageOperation;
+import cosc202.andie.LanguageConfig;
+import cosc202.andie.TileEngine;
+import cosc202.andie.Utils;
+import cosc202.andie.models.EditableImage;
+import cosc202.andie.operations.colour.ConvertToGrey;
+import cosc202.andie.operations.transform.Resize;
+import cosc202.andie.operations.transform.RotateRight;
+
+/**
+ * <p>
+ * Tests for applying a macro to a directory of images from the command line.
+ * </p>
+ *
+ * @see AndieBatch
+ * @author Jeb Nicholson
+ */
+public class AndieBatchTests {
+
+	private static File tempDirectory() throws IOException {
+		File directory = Files.createTempDirectory("batch").toFile();
+		directory.deleteOnExit();
+		return directory;
+	}
+
+	private static File writeMacro(File directory) throws IOException {
+		Stack<ImageOperation> ops = new Stack<ImageOperation>();
+		ops.add(new ConvertToGrey());
+		ops.add(new RotateRight());
+		File macro = new File(directory, "test.macro");
+		Utils.writeString(macro, EditableImage.opsToString(ops), Charset.defaultCharset());
+		return macro;
+	}
+
+	private static int run(PrintStream err, String... args) {
+		return AndieBatch.run(args, new PrintStream(new ByteArrayOutputStream()), err);
+	}
+
+	@Test
+	public void testDirectory() throws Exception {
+		File input = tempDirectory(), output = tempDirectory();
+		File macro = writeMacro(input);
+		BufferedImage[] images = new BufferedImage[3];
+		for (int i = 0; i < images.length; i++) {
+			images[i] = EditableImageTests.randomImage(40 + i, 30);
+			ImageIO.write(images[i], "png", new File(input, "image" + i + ".png"));
+		}
+		int parallelism = TileEngine.getParallelism();
+
+		Assertions.assertEquals(AndieBatch.EXIT_OK, run(System.err, macro.getPath(), input.getPath(), output.getPath(), "--threads", "2"));
+		Assertions.assertEquals(parallelism, TileEngine.getParallelism());
+		for (int i = 0; i < images.length; i++) {
+			BufferedImage expected = TileEngine.draw(new RotateRight(), TileEngine.draw(new ConvertToGrey(), images[i]));
+			BufferedImage actual = ImageIO.read(new File(output, "image" + i + ".png"));
+			Assertions.assertEquals(30, actual.getWidth());
+			Assertions.assertTrue(EditableImage.bufferedImagesAreEqual(expected, actual));
+		}
+		// The macro isn't an image, so isn't processed
+		Assertions.assertEquals(3, output.list().length);
+	}
+
+	@Test
+	public void testGlobAndFailures() throws Exception {
+		File input = tempDirectory(), output = tempDirectory();
+		File macro = writeMacro(input);
+		File nested = new File(input, "nested");
+		nested.mkdir();
+		ImageIO.write(EditableImageTests.randomImage(20, 10), "png", new File(nested, "good.png"));
+		Utils.writeString(new File(nested, "broken.png"), "not an image", Charset.defaultCharset());
+
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+		int result = run(new PrintStream(err), macro.getPath(), input.getPath() + "/**.png", output.getPath(), "--format", "jpg");
+		Assertions.assertEquals(AndieBatch.EXIT_FAILURES, result);
+		Assertions.assertTrue(err.toString().contains("broken.png"));
+		// The image that could be read is still written, in the requested format, keeping its subdirectory
+		BufferedImage good = ImageIO.read(new File(output, "nested/good.jpg"));
+		Assertions.assertEquals(10, good.getWidth());
+		Assertions.assertEquals(20, good.getHeight());
+	}
+
+	@Test
+	public void testOperationFailure() throws Exception {
+		File input = tempDirectory(), output = tempDirectory();
+		Stack<ImageOperation> ops = new Stack<ImageOperation>();
+		ops.add(new Resize(1000));
+		File macro = new File(input, "resize.macro");
+		Utils.writeString(macro, EditableImage.opsToString(ops), Charset.defaultCharset());
+		ImageIO.write(EditableImageTests.randomImage(2100, 10), "png", new File(input, "a.png"));
+
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+		Assertions.assertEquals(AndieBatch.EXIT_FAILURES, run(new PrintStream(err), macro.getPath(), input.getPath(), output.getPath()));
+		// The image fails with the operation's own message, rather than one from looking the message up
+		Assertions.assertTrue(err.toString().contains("a.png"));
+		Assertions.assertTrue(err.toString().contains(LanguageConfig.msg("Resize_Too_Large_Error")), err.toString());
+	}
+
+	@Test
+	public void testUsage() throws Exception {
+		File input = tempDirectory();
+		ByteArrayOutputStream err = new ByteArrayOutputStream();
+		Assertions.assertEquals(AndieBatch.EXIT_USAGE, run(new PrintStream(err), input.getPath()));
+		Assertions.assertEquals(AndieBatch.EXIT_USAGE, run(new PrintStream(err), new File(input, "missing.macro").getPath(), input.getPath(), input.getPath()));
+	}
+}
@@ -0,0 +1,150 @@
+package tests.cosc202.andie;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import cosc202.andie.LanguageConfig;
+import cosc202.andie.Utils;
+import cosc202.andie.models.EditableImage;
+import cosc202.andie.operations.colour.BrightnessAndContrast;
+import cosc202.andie.operations.colour.ConvertToGrey;
+import cosc202.andie.operations.filter.MeanFilter;
+import cosc202.andie.operations.shapes.Elipse;
+import cosc202.andie.operations.shapes.Line;
+import cosc202.andie.operations.shapes.RectangleShape;
+import cosc202.andie.operations.transform.Crop;
+import cosc202.andie.operations.transform.RotateRight;
+
+/**
+ * <p>
+ * Tests for the EditableImage's undo and redo history.
+ * </p>
+ *
+ * @see EditableImage
+ * @author Jeb Nicholson
+ */
+public class EditableImageTests {
+
+	/**
+	 * Create an image filled with random (opaque) colours
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 * @return The image
+	 */
+	static BufferedImage randomImage(int width, int height) {
+		Random random = new Random(202);
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				image.setRGB(x, y, 0xFF000000 | random.nextInt(0x1000000));
+			}
+		}
+		return image;
+	}
+
+	@Test
+	public void testUndoFromCheckpoints() throws Exception {
+		LanguageConfig.init();
+
+		BufferedImage original = randomImage(40, 30);
+		EditableImage image = new EditableImage(Utils.deepCopy(original));
+		image.getCheckpointCache().setInterval(2);
+
+		BufferedImage[] expected = new BufferedImage[7];
+		expected[0] = Utils.deepCopy(original);
+		for (int i = 1; i < expected.length; i++) {
+			switch (i % 3) {
+				case 0: image.apply(new MeanFilter(1)); break;
+				case 1: image.apply(new BrightnessAndContrast(10 * i, -5 * i)); break;
+				default: image.apply(new RotateRight()); break;
+			}
+			expected[i] = Utils.deepCopy(image.getCurrentImage());
+		}
+		Assertions.assertTrue(image.getCheckpointCache().size() > 0);
+
+		for (int i = expected.length - 1; i > 0; i--) {
+			image.undo();
+			Assertions.assertTrue(EditableImage.bufferedImagesAreEqual(expected[i - 1], image.getCurrentImage()));
+		}
+		Assertions.assertFalse(image.undoable());
+
+		for (int i = 1; i < expected.length; i++) {
+			image.redo();
+			Assertions.assertTrue(EditableImage.bufferedImagesAreEqual(expected[i], image.getCurrentImage()));
+		}
+	}
+
+	@Test
+	public void testCheckpointBudget() throws Exception {
+		LanguageConfig.init();
+
+		EditableImage image = new EditableImage(randomImage(20, 20));
+		image.getCheckpointCache().setInterval(1);
+		image.getCheckpointCache().setBudget(20 * 20 * 4 * 2);
+		for (int i = 0; i < 5; i++) {
+			image.apply(new ConvertToGrey());
+		}
+		Assertions.assertEquals(2, image.getCheckpointCache().size());
+		Assertions.assertTrue(image.getCheckpointCache().getUsedBytes() <= image.getCheckpointCache().getBudget());
+
+		image.undo();
+		image.undo();
+		Assertions.assertTrue(image.undoable());
+	}
+
+	@Test
+	public void testUndoShapesFromTiles() throws Exception {
+		LanguageConfig.init();
+
+		EditableImage image = new EditableImage(randomImage(300, 200));
+		BufferedImage[] expected = new BufferedImage[5];
+		expected[0] = Utils.deepCopy(image.getCurrentImage());
+		image.apply(new RectangleShape(new Rectangle(10, 20, 100, 50), Color.RED, Color.WHITE, 7));
+		expected[1] = Utils.deepCopy(image.getCurrentImage());
+		image.apply(new Line(new Point(5, 190), new Point(290, 3), Color.BLUE, 9));
+		expected[2] = Utils.deepCopy(image.getCurrentImage());
+		image.apply(new Crop(new Point(10, 10), new Dimension(250, 150)));
+		expected[3] = Utils.deepCopy(image.getCurrentImage());
+		image.apply(new Elipse(new Rectangle(-20, 30, 200, 140), Color.BLACK, Color.GREEN, 12));
+		expected[4] = Utils.deepCopy(image.getCurrentImage());
+
+		for (int i = expected.length - 1; i > 0; i--) {
+			image.undo();
+			Assertions.assertTrue(EditableImage.bufferedImagesAreEqual(expected[i - 1], image.getCurrentImage()));
+		}
+		for (int i = 1; i < expected.length; i++) {
+			image.redo();
+			Assertions.assertTrue(EditableImage.bufferedImagesAreEqual(expected[i], image.getCurrentImage()));
+		}
+	}
+
+	@Test
+	public void testModified() throws Exception {
+		LanguageConfig.init();
+
+		EditableImage image = new EditableImage(randomImage(20, 20));
+		Assertions.assertFalse(image.getModified());
+		image.apply(new ConvertToGrey());
+		Assertions.assertTrue(image.getModified());
+		image.saved();
+		Assertions.assertFalse(image.getModified());
+
+		// Undoing and redoing back to the saved operations isn't a modification
+		image.undo();
+		Assertions.assertTrue(image.getModified());
+		image.redo();
+		Assertions.assertFalse(image.getModified());
+
+		// But applying the same operation again is
+		image.undo();
+		image.apply(new ConvertToGrey());
+		Assertions.assertTrue(image.getModified());
+	}
+}
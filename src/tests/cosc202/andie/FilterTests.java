@@ -0,0 +1,144 @@
+package tests.cosc202.andie;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import cosc202.andie.ImageOperation;
+import cosc202.andie.LanguageConfig;
+import cosc202.andie.PixelBuffer;
+import cosc202.andie.TileEngine;
+import cosc202.andie.Utils;
+import cosc202.andie.models.EditableImage;
+import cosc202.andie.operations.filter.CustomConvolution;
+import cosc202.andie.operations.filter.EmbossFilter;
+import cosc202.andie.operations.filter.GaussianBlur;
+import cosc202.andie.operations.filter.MeanFilter;
+import cosc202.andie.operations.filter.MedianFilter;
+import cosc202.andie.operations.filter.SharpenFilter;
+import cosc202.andie.operations.filter.SobelFilter;
+
+/**
+ * <p>
+ * Tests for the Filter operations.
+ * </p>
+ *
+ * @see cosc202.andie.operations.filter
+ * @author Jeb Nicholson
+ */
+public class FilterTests {
+
+	/**
+	 * Assert that every channel of every pixel of two images differs by at most a given amount
+	 * @param expected The expected image
+	 * @param actual The actual image
+	 * @param tolerance The largest allowed difference in any channel
+	 */
+	static void assertImagesClose(BufferedImage expected, BufferedImage actual, int tolerance) {
+		Assertions.assertEquals(expected.getWidth(), actual.getWidth());
+		Assertions.assertEquals(expected.getHeight(), actual.getHeight());
+		for (int y = 0; y < expected.getHeight(); y++) {
+			for (int x = 0; x < expected.getWidth(); x++) {
+				int e = expected.getRGB(x, y), a = actual.getRGB(x, y);
+				for (int shift = 0; shift < 32; shift += 8) {
+					int difference = Math.abs(((e >>> shift) & 0xFF) - ((a >>> shift) & 0xFF));
+					Assertions.assertTrue(difference <= tolerance, "Pixel (" + x + ", " + y + ") differs by " + difference);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testGaussianSeparableMatchesFullKernel() throws Exception {
+		LanguageConfig.init();
+
+		BufferedImage testImage = EditableImageTests.randomImage(60, 45);
+		for (int radius = 1; radius <= 6; radius++) {
+			BufferedImage separable = new GaussianBlur(radius).draw(testImage);
+			BufferedImage full = new GaussianBlur(radius, true).draw(testImage);
+			assertImagesClose(full, separable, 1);
+		}
+	}
+
+	@Test
+	public void testMeanMatchesUniformKernel() throws Exception {
+		LanguageConfig.init();
+
+		BufferedImage testImage = EditableImageTests.randomImage(60, 45);
+		for (int radius = 1; radius <= 6; radius++) {
+			int size = (2 * radius + 1) * (2 * radius + 1);
+			float[] kernel = new float[size];
+			Arrays.fill(kernel, 1.0f / size);
+			BufferedImage convolved = CustomConvolution.convolve(PixelBuffer.of(testImage), kernel).getImage();
+			assertImagesClose(convolved, new MeanFilter(radius).draw(testImage), 1);
+		}
+		// A window much larger than the image is still well-defined
+		Assertions.assertEquals(testImage.getWidth(), new MeanFilter(200).draw(testImage).getWidth());
+	}
+
+	@Test
+	public void testMedianMatchesSortedNeighbourhood() throws Exception {
+		LanguageConfig.init();
+
+		// Random values in every channel, including alpha
+		Random random = new Random(202);
+		BufferedImage testImage = new BufferedImage(37, 23, BufferedImage.TYPE_INT_ARGB);
+		for (int y = 0; y < testImage.getHeight(); y++) {
+			for (int x = 0; x < testImage.getWidth(); x++) {
+				testImage.setRGB(x, y, random.nextInt());
+			}
+		}
+
+		for (int radius = 1; radius <= 4; radius++) {
+			BufferedImage filtered = new MedianFilter(radius).draw(testImage);
+			int diameter = 2 * radius + 1;
+			int[] window = new int[diameter * diameter];
+			for (int y = 0; y < testImage.getHeight(); y++) {
+				for (int x = 0; x < testImage.getWidth(); x++) {
+					for (int shift = 0; shift < 32; shift += 8) {
+						for (int i = 0; i < window.length; i++) {
+							int nx = Math.min(Math.max(x + i % diameter - radius, 0), testImage.getWidth() - 1);
+							int ny = Math.min(Math.max(y + i / diameter - radius, 0), testImage.getHeight() - 1);
+							window[i] = (testImage.getRGB(nx, ny) >>> shift) & 0xFF;
+						}
+						Arrays.sort(window);
+						Assertions.assertEquals(window[window.length / 2], (filtered.getRGB(x, y) >>> shift) & 0xFF);
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testFiltersKeepImageType() throws Exception {
+		LanguageConfig.init();
+
+		int[] types = { BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_GRAY };
+		ImageOperation[] operations = {
+			new MeanFilter(2), new MedianFilter(1), new GaussianBlur(3), new GaussianBlur(2, true),
+			new SharpenFilter(), new EmbossFilter(45), new SobelFilter(false)
+		};
+		BufferedImage random = EditableImageTests.randomImage(300, 280);
+
+		int parallelism = TileEngine.getParallelism();
+		try {
+			TileEngine.setParallelism(4);
+			for (int type : types) {
+				BufferedImage testImage = new BufferedImage(300, 280, type);
+				testImage.createGraphics().drawImage(random, 0, 0, null);
+				for (ImageOperation operation : operations) {
+					BufferedImage sequential = operation.draw(Utils.deepCopy(testImage));
+					BufferedImage tiled = TileEngine.draw(operation, Utils.deepCopy(testImage));
+					Assertions.assertEquals(type, sequential.getType(), operation.operationDescription());
+					Assertions.assertEquals(type, tiled.getType(), operation.operationDescription());
+					Assertions.assertTrue(EditableImage.bufferedImagesAreEqual(sequential, tiled), operation.operationDescription());
+				}
+			}
+		} finally {
+			TileEngine.setParallelism(parallelism);
+		}
+	}
+}
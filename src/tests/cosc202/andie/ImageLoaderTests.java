@@ -0,0 +1,68 @@
+package tests.cosc202.andie;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import cosc202.andie.models.EditableImage;
+import cosc202.andie.models.ImageLoader;
+
+/**
+ * <p>
+ * Tests for reading images as a subsampled preview, then at full resolution.
+ * </p>
+ *
+ * @see ImageLoader
+ * @author Jeb Nicholson
+ */
+public class ImageLoaderTests {
+
+	private static File writeImage(BufferedImage image) throws IOException {
+		File file = File.createTempFile("loader", ".png");
+		file.deleteOnExit();
+		ImageIO.write(image, "png", file);
+		return file;
+	}
+
+	@Test
+	public void testPreviewThenFullImage() throws IOException {
+		BufferedImage image = EditableImageTests.randomImage(2100, 900);
+		ImageLoader loader = new ImageLoader(writeImage(image));
+		try {
+			BufferedImage preview = loader.readPreview(1024);
+			// Every third pixel of every third row
+			Assertions.assertEquals(700, preview.getWidth());
+			Assertions.assertEquals(300, preview.getHeight());
+			Assertions.assertEquals(image.getRGB(30, 60), preview.getRGB(10, 20));
+			Assertions.assertEquals(image.getRGB(2097, 897), preview.getRGB(699, 299));
+
+			Assertions.assertTrue(EditableImage.bufferedImagesAreEqual(image, loader.read()));
+		} finally {
+			loader.close();
+		}
+	}
+
+	@Test
+	public void testSmallImageHasNoPreview() throws IOException {
+		ImageLoader loader = new ImageLoader(writeImage(EditableImageTests.randomImage(300, 200)));
+		try {
+			Assertions.assertNull(loader.readPreview(1024));
+			Assertions.assertEquals(300, loader.readSize().width);
+		} finally {
+			loader.close();
+		}
+	}
+
+	@Test
+	public void testAbort() throws IOException {
+		ImageLoader loader = new ImageLoader(writeImage(EditableImageTests.randomImage(300, 200)));
+		loader.abort();
+		Assertions.assertThrows(IOException.class, () -> loader.read());
+		loader.close();
+	}
+}
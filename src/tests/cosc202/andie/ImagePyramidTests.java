@@ -0,0 +1,58 @@
+package tests.cosc202.andie;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import cosc202.andie.Utils;
+import cosc202.andie.components.ImagePyramid;
+import cosc202.andie.models.EditableImage;
+
+/**
+ * <p>
+ * Tests for the zoomed out copies of an image drawn by the image view.
+ * </p>
+ *
+ * @see ImagePyramid
+ * @author Jeb Nicholson
+ */
+public class ImagePyramidTests {
+
+	@Test
+	public void testLevelSizes() {
+		ImagePyramid pyramid = new ImagePyramid(EditableImageTests.randomImage(1001, 300));
+		Assertions.assertEquals(0, pyramid.getLevelFor(1));
+		Assertions.assertEquals(0, pyramid.getLevelFor(0.6));
+		Assertions.assertEquals(1, pyramid.getLevelFor(0.5));
+		Assertions.assertEquals(2, pyramid.getLevelFor(0.2));
+		// Levels stop at the minimum size, however far the image is zoomed out
+		Assertions.assertEquals(3, pyramid.getLevelFor(0.001));
+
+		BufferedImage level = pyramid.getLevel(2);
+		Assertions.assertEquals(251, level.getWidth());
+		Assertions.assertEquals(75, level.getHeight());
+	}
+
+	@Test
+	public void testInvalidateMatchesRebuild() {
+		BufferedImage image = EditableImageTests.randomImage(300, 200);
+		ImagePyramid pyramid = new ImagePyramid(image);
+		pyramid.getLevel(3);
+
+		// Draw on the image in place, and only tell the pyramid about that part of it
+		Graphics2D g = image.createGraphics();
+		g.setColor(Color.RED);
+		g.fillRect(37, 51, 80, 33);
+		g.dispose();
+		pyramid.invalidate(new Rectangle(37, 51, 80, 33));
+
+		ImagePyramid rebuilt = new ImagePyramid(Utils.deepCopy(image));
+		for (int level = 1; level <= 3; level++) {
+			Assertions.assertTrue(EditableImage.bufferedImagesAreEqual(rebuilt.getLevel(level), pyramid.getLevel(level)), "Level " + level);
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package tests.cosc202.andie;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import cosc202.andie.models.EditableImage;
+import cosc202.andie.models.ImageSaver;
+
+/**
+ * <p>
+ * Tests for writing images through a temporary file.
+ * </p>
+ *
+ * @see ImageSaver
+ * @author Jeb Nicholson
+ */
+public class ImageSaverTests {
+
+	private static File tempDirectory() throws IOException {
+		File directory = Files.createTempDirectory("saver").toFile();
+		directory.deleteOnExit();
+		return directory;
+	}
+
+	@Test
+	public void testWrite() throws IOException {
+		File directory = tempDirectory();
+		File file = new File(directory, "image.png");
+		BufferedImage image = EditableImageTests.randomImage(200, 100);
+		float[] lastProgress = { 0 };
+
+		new ImageSaver(image, "png", file).write((float percent) -> lastProgress[0] = percent);
+		file.deleteOnExit();
+		Assertions.assertTrue(EditableImage.bufferedImagesAreEqual(image, ImageIO.read(file)));
+		Assertions.assertEquals(100, lastProgress[0], 0.01);
+		// Only the image is left behind
+		Assertions.assertArrayEquals(new String[] { "image.png" }, directory.list());
+	}
+
+	@Test
+	public void testCancelledWriteLeavesFile() throws IOException {
+		File directory = tempDirectory();
+		File file = new File(directory, "image.png");
+		BufferedImage original = EditableImageTests.randomImage(200, 100);
+		new ImageSaver(original, "png", file).write(null);
+		file.deleteOnExit();
+
+		// Cancel a write part way through
+		ImageSaver saver = new ImageSaver(EditableImageTests.randomImage(200, 100), "png", file);
+		Assertions.assertThrows(IOException.class, () -> saver.write((float percent) -> saver.cancel()));
+		Assertions.assertTrue(EditableImage.bufferedImagesAreEqual(original, ImageIO.read(file)));
+		Assertions.assertArrayEquals(new String[] { "image.png" }, directory.list());
+	}
+
+	@Test
+	public void testUnknownFormat() throws IOException {
+		File directory = tempDirectory();
+		ImageSaver saver = new ImageSaver(EditableImageTests.randomImage(20, 10), "notaformat", new File(directory, "image.x"));
+		Assertions.assertThrows(IOException.class, () -> saver.write(null));
+		Assertions.assertEquals(0, directory.list().length);
+	}
+}
@@ -0,0 +1,158 @@
+package tests.cosc202.andie;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Stack;
+
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import cosc202.andie.ImageOperation;
+import cosc202.andie.Utils;
+import cosc202.andie.models.EditableImage;
+import cosc202.andie.models.OpLog;
+import cosc202.andie.operations.colour.BrightnessAndContrast;
+import cosc202.andie.operations.filter.GaussianBlur;
+import cosc202.andie.operations.filter.MeanFilter;
+import cosc202.andie.operations.shapes.Line;
+import cosc202.andie.operations.shapes.RectangleShape;
+import cosc202.andie.operations.transform.RotateLeft;
+
+/**
+ * <p>
+ * Tests for the operation log saved alongside an image.
+ * </p>
+ *
+ * @see OpLog
+ * @author Jeb Nicholson
+ */
+public class OpLogTests {
+
+	/**
+	 * Check two lists of operations are the same, by their descriptions (which include every parameter)
+	 */
+	private static void assertSameOperations(List<ImageOperation> expected, List<ImageOperation> actual) {
+		Assertions.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Assertions.assertEquals(expected.get(i).getClass(), actual.get(i).getClass());
+			Assertions.assertEquals(expected.get(i).operationDescription(), actual.get(i).operationDescription());
+		}
+	}
+
+	private static File tempFile() throws IOException {
+		File file = File.createTempFile("oplog", ".ops");
+		file.deleteOnExit();
+		return file;
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		File file = tempFile();
+		List<ImageOperation> ops = new ArrayList<ImageOperation>();
+		ops.add(new BrightnessAndContrast(20, -15));
+		ops.add(new GaussianBlur(3, true));
+		ops.add(new RotateLeft());
+		ops.add(new Line(new Point(1, 2), new Point(30, 40), new Color(10, 20, 30, 40), 5));
+		ops.add(new RectangleShape(new Rectangle(5, 6, 7, 8), Color.RED, new Color(0, 0, 255, 128), 2));
+
+		new OpLog(file).save(ops);
+		assertSameOperations(ops, OpLog.open(file).getOperations());
+	}
+
+	@Test
+	public void testAppendAfterUndo() throws IOException {
+		File file = tempFile();
+		List<ImageOperation> ops = new ArrayList<ImageOperation>();
+		ops.add(new MeanFilter(1));
+		ops.add(new MeanFilter(2));
+		OpLog log = new OpLog(file);
+		log.save(ops);
+		long firstLength = file.length();
+
+		// Undo the last operation, and apply another
+		ops.remove(1);
+		ops.add(new MeanFilter(3));
+		log.save(ops);
+		Assertions.assertTrue(file.length() > firstLength, "The save should append to the log");
+		assertSameOperations(ops, OpLog.open(file).getOperations());
+
+		// Saving again without changes writes nothing
+		long length = file.length();
+		log.save(ops);
+		Assertions.assertEquals(length, file.length());
+	}
+
+	@Test
+	public void testTruncatedLog() throws IOException {
+		File file = tempFile();
+		List<ImageOperation> ops = new ArrayList<ImageOperation>();
+		ops.add(new MeanFilter(1));
+		OpLog log = new OpLog(file);
+		log.save(ops);
+		long length = file.length();
+		ops.add(new MeanFilter(2));
+		log.save(ops);
+
+		// Cut the last record short, as if the save was interrupted
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(file.length() - 2);
+		}
+		OpLog reopened = OpLog.open(file);
+		assertSameOperations(ops.subList(0, 1), reopened.getOperations());
+
+		// The next save rewrites the log, dropping the broken record
+		reopened.save(ops);
+		assertSameOperations(ops, OpLog.open(file).getOperations());
+		Assertions.assertTrue(file.length() > length);
+	}
+
+	@Test
+	public void testLegacyLog() throws IOException {
+		File file = tempFile();
+		Stack<ImageOperation> ops = new Stack<ImageOperation>();
+		ops.add(new MeanFilter(2));
+		ops.add(new RotateLeft());
+		Utils.writeString(file, EditableImage.opsToString(ops), Charset.defaultCharset());
+
+		OpLog log = OpLog.open(file);
+		assertSameOperations(ops, log.getOperations());
+
+		// Saving replaces the legacy log with a binary one
+		log.save(ops);
+		assertSameOperations(ops, OpLog.open(file).getOperations());
+	}
+
+	@Test
+	public void testFailedRewriteKeepsLog() throws IOException {
+		File file = tempFile();
+		Stack<ImageOperation> ops = new Stack<ImageOperation>();
+		ops.add(new MeanFilter(2));
+		ops.add(new RotateLeft());
+		Utils.writeString(file, EditableImage.opsToString(ops), Charset.defaultCharset());
+		OpLog log = OpLog.open(file);
+
+		// An operation that can't be written fails the rewrite just after the header
+		List<ImageOperation> failing = new ArrayList<ImageOperation>();
+		failing.add(new ImageOperation() {
+			private static final long serialVersionUID = 1L;
+			private final Object unserializable = new Object();
+			public java.awt.image.BufferedImage draw(java.awt.image.BufferedImage input) { return input; }
+			public java.awt.image.BufferedImage drawPreview(java.awt.image.BufferedImage input) { return input; }
+			public String operationDescription() { return unserializable.toString(); }
+		});
+		failing.addAll(ops);
+		Assertions.assertThrows(IOException.class, () -> log.save(failing));
+
+		// The log is still the one that was there before, and no temporary file is left behind
+		assertSameOperations(ops, OpLog.open(file).getOperations());
+		File[] leftOver = file.getAbsoluteFile().getParentFile().listFiles((directory, name) -> name.startsWith("." + file.getName()));
+		Assertions.assertEquals(0, leftOver.length);
+	}
+}
@@ -0,0 +1,109 @@
+package tests.cosc202.andie;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import cosc202.andie.Cancellation;
+import cosc202.andie.models.PreviewScheduler;
+
+/**
+ * <p>
+ * Tests for running previews in the background.
+ * </p>
+ *
+ * @see PreviewScheduler
+ * @author Jeb Nicholson
+ */
+public class PreviewSchedulerTests {
+
+	/**
+	 * Schedule a preview that runs until it's cancelled
+	 */
+	private static void submitUntilCancelled(PreviewScheduler scheduler, CountDownLatch started, AtomicBoolean cancelled) {
+		scheduler.submit(() -> {
+			started.countDown();
+			try {
+				while (true) {
+					Cancellation.check();
+					Thread.yield();
+				}
+			} catch (RuntimeException e) {
+				cancelled.set(true);
+				throw e;
+			}
+		});
+	}
+
+	@Test
+	public void testLatestPreviewWins() throws Exception {
+		PreviewScheduler scheduler = new PreviewScheduler((Throwable e) -> Assertions.fail(e));
+		CountDownLatch started = new CountDownLatch(1);
+		AtomicBoolean cancelled = new AtomicBoolean();
+		submitUntilCancelled(scheduler, started, cancelled);
+		Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		// Previews queued while another is running replace each other, and never run
+		AtomicInteger stale = new AtomicInteger();
+		for (int i = 0; i < 100; i++) {
+			scheduler.queue(stale::incrementAndGet);
+		}
+		Assertions.assertFalse(cancelled.get());
+
+		CountDownLatch latest = new CountDownLatch(1);
+		scheduler.submit(latest::countDown);
+		Assertions.assertTrue(latest.await(5, TimeUnit.SECONDS));
+		Assertions.assertTrue(cancelled.get());
+		Assertions.assertEquals(0, stale.get());
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		PreviewScheduler scheduler = new PreviewScheduler((Throwable e) -> Assertions.fail(e));
+		CountDownLatch started = new CountDownLatch(1);
+		AtomicBoolean cancelled = new AtomicBoolean();
+		submitUntilCancelled(scheduler, started, cancelled);
+		Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		AtomicInteger pending = new AtomicInteger();
+		scheduler.queue(pending::incrementAndGet);
+		scheduler.cancel();
+		long deadline = System.currentTimeMillis() + 5000;
+		while (!scheduler.isIdle() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(1);
+		}
+		Assertions.assertTrue(scheduler.isIdle());
+		Assertions.assertTrue(cancelled.get());
+		Assertions.assertEquals(0, pending.get());
+
+		// The same worker runs the next preview, with a fresh token
+		CountDownLatch next = new CountDownLatch(1);
+		scheduler.submit(() -> {
+			Cancellation.check();
+			next.countDown();
+		});
+		Assertions.assertTrue(next.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testFailedPreviewDoesntStopWorker() throws Exception {
+		CountDownLatch reported = new CountDownLatch(1);
+		PreviewScheduler scheduler = new PreviewScheduler((Throwable e) -> {
+			Assertions.assertEquals("Preview too large", e.getMessage());
+			reported.countDown();
+		});
+		scheduler.submit(() -> {
+			throw new OutOfMemoryError("Preview too large");
+		});
+		Assertions.assertTrue(reported.await(5, TimeUnit.SECONDS));
+
+		// Later previews still run
+		CountDownLatch next = new CountDownLatch(1);
+		scheduler.submit(next::countDown);
+		Assertions.assertTrue(next.await(5, TimeUnit.SECONDS));
+	}
+}
@@ -0,0 +1,243 @@
+package tests.cosc202.andie;
+
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import cosc202.andie.ColourMap;
+import cosc202.andie.ImageOperation;
+import cosc202.andie.LanguageConfig;
+import cosc202.andie.Orientation;
+import cosc202.andie.PixelBuffer;
+import cosc202.andie.Replayer;
+import cosc202.andie.Utils;
+import cosc202.andie.models.EditableImage;
+import cosc202.andie.operations.colour.BrightnessAndContrast;
+import cosc202.andie.operations.colour.ConvertToGrey;
+import cosc202.andie.operations.filter.EmbossFilter;
+import cosc202.andie.operations.filter.GaussianBlur;
+import cosc202.andie.operations.filter.MeanFilter;
+import cosc202.andie.operations.filter.MedianFilter;
+import cosc202.andie.operations.filter.SobelFilter;
+import cosc202.andie.operations.transform.Crop;
+import cosc202.andie.operations.transform.FlipHorizontal;
+import cosc202.andie.operations.transform.FlipVertical;
+import cosc202.andie.operations.transform.Resize;
+import cosc202.andie.operations.transform.Rotate180;
+import cosc202.andie.operations.transform.RotateLeft;
+import cosc202.andie.operations.transform.RotateRight;
+
+/**
+ * <p>
+ * Tests for replaying operations, combining the ones that can be drawn together.
+ * </p>
+ *
+ * @see Replayer
+ * @author Jeb Nicholson
+ */
+public class ReplayerTests {
+
+	/**
+	 * Draw operations one at a time, without the replayer
+	 */
+	private static BufferedImage drawSequentially(List<ImageOperation> operations, BufferedImage image) throws Exception {
+		for (ImageOperation operation : operations) {
+			image = operation.draw(image);
+		}
+		return image;
+	}
+
+	@Test
+	public void testPointOperationsMatchPerPixelMaths() throws Exception {
+		BufferedImage image = EditableImageTests.randomImage(64, 64);
+		int[] pixels = PixelBuffer.copyOf(image).getPixels();
+		int brightness = 30, contrast = -45;
+
+		int[] adjusted = PixelBuffer.of(new BrightnessAndContrast(brightness, contrast).draw(Utils.deepCopy(image))).getPixels();
+		int[] grey = PixelBuffer.of(new ConvertToGrey().draw(Utils.deepCopy(image))).getPixels();
+		for (int i = 0; i < pixels.length; i++) {
+			int a = pixels[i] & 0xFF000000, r = (pixels[i] >> 16) & 0xFF, g = (pixels[i] >> 8) & 0xFF, b = pixels[i] & 0xFF;
+			int[] channels = { r, g, b };
+			int expected = a;
+			for (int c = 0; c < 3; c++) {
+				int v = (int) ((1 + (contrast / 100.0)) * (channels[c] - 127.5) + 127.5 * (1 + (brightness / 100.0)));
+				expected |= Math.max(0, Math.min(255, v)) << (16 - 8 * c);
+			}
+			Assertions.assertEquals(expected, adjusted[i]);
+			int value = (int) Math.round(0.3 * r + 0.6 * g + 0.1 * b);
+			Assertions.assertEquals(a | (value << 16) | (value << 8) | value, grey[i]);
+		}
+	}
+
+	@Test
+	public void testFusedMatchesSequential() throws Exception {
+		BufferedImage image = EditableImageTests.randomImage(300, 280);
+		List<ImageOperation> operations = Arrays.asList(
+			new BrightnessAndContrast(20, -10), new ConvertToGrey(), new BrightnessAndContrast(-35, 60), new ConvertToGrey(),
+			new MeanFilter(1), new BrightnessAndContrast(5, 5), new BrightnessAndContrast(-50, 90)
+		);
+
+		List<Replayer.Step> steps = Replayer.plan(operations);
+		Assertions.assertEquals(3, steps.size());
+		Assertions.assertTrue(steps.get(0).getOperation() instanceof ColourMap);
+		Assertions.assertEquals(4, steps.get(0).getEnd());
+		Assertions.assertSame(operations.get(4), steps.get(1).getOperation());
+
+		BufferedImage expected = drawSequentially(operations, Utils.deepCopy(image));
+		BufferedImage replayed = Replayer.draw(operations, Utils.deepCopy(image));
+		Assertions.assertTrue(EditableImage.bufferedImagesAreEqual(expected, replayed));
+	}
+
+	@Test
+	public void testPointOperationsKeepImageType() throws Exception {
+		int[] types = { BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR, BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_INT_ARGB_PRE };
+		List<ImageOperation> operations = Arrays.asList(
+			new BrightnessAndContrast(20, -10), new ConvertToGrey(), new BrightnessAndContrast(-35, 60)
+		);
+		BufferedImage random = EditableImageTests.randomImage(90, 70);
+		for (int type : types) {
+			BufferedImage image = new BufferedImage(90, 70, type);
+			image.createGraphics().drawImage(random, 0, 0, null);
+			for (ImageOperation operation : operations) {
+				Assertions.assertEquals(type, operation.draw(Utils.deepCopy(image)).getType());
+			}
+			// Images that can't hold every colour exactly still match drawing the operations one at a time
+			BufferedImage expected = drawSequentially(operations, Utils.deepCopy(image));
+			BufferedImage replayed = Replayer.draw(operations, Utils.deepCopy(image));
+			Assertions.assertEquals(type, replayed.getType());
+			Assertions.assertTrue(EditableImage.bufferedImagesAreEqual(expected, replayed));
+		}
+	}
+
+	@Test
+	public void testMatricesThatCantBeCombined() throws Exception {
+		BufferedImage image = EditableImageTests.randomImage(50, 40);
+		ColourMap swap = ColourMap.matrix(new double[][] { { 0, 1, 0 }, { 0, 0, 1 }, { 1, 0, 0 } });
+		ColourMap grey = new ConvertToGrey().getColourMap();
+		Assertions.assertNull(swap.then(grey));
+
+		ColourMap combined = grey.then(swap);
+		Assertions.assertNotNull(combined);
+		BufferedImage expected = swap.draw(grey.draw(Utils.deepCopy(image)));
+		Assertions.assertTrue(EditableImage.bufferedImagesAreEqual(expected, combined.draw(Utils.deepCopy(image))));
+	}
+
+	@Test
+	public void testApplyOperations() throws Exception {
+		LanguageConfig.init();
+		BufferedImage image = EditableImageTests.randomImage(80, 60);
+		List<ImageOperation> operations = Arrays.asList(
+			new ConvertToGrey(), new BrightnessAndContrast(10, 20), new BrightnessAndContrast(-30, 0)
+		);
+
+		EditableImage editable = new EditableImage(Utils.deepCopy(image));
+		Assertions.assertTrue(editable.apply(operations));
+		Assertions.assertEquals(3, editable.getOperations().size());
+		Assertions.assertTrue(EditableImage.bufferedImagesAreEqual(drawSequentially(operations, Utils.deepCopy(image)), editable.getCurrentImage()));
+
+		// Each operation is still undone separately
+		editable.undo();
+		Assertions.assertTrue(EditableImage.bufferedImagesAreEqual(drawSequentially(operations.subList(0, 2), Utils.deepCopy(image)), editable.getCurrentImage()));
+		editable.undo();
+		editable.undo();
+		Assertions.assertFalse(editable.getModified());
+	}
+
+	@Test
+	public void testOrientationsMovePixels() throws Exception {
+		BufferedImage image = EditableImageTests.randomImage(130, 70);
+		int width = image.getWidth(), height = image.getHeight();
+		BufferedImage right = new RotateRight().draw(Utils.deepCopy(image));
+		BufferedImage left = new RotateLeft().draw(Utils.deepCopy(image));
+		BufferedImage half = new Rotate180().draw(Utils.deepCopy(image));
+		BufferedImage horizontal = new FlipHorizontal().draw(Utils.deepCopy(image));
+		BufferedImage vertical = new FlipVertical().draw(Utils.deepCopy(image));
+		Assertions.assertEquals(height, right.getWidth());
+		Assertions.assertEquals(width, left.getHeight());
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int pixel = image.getRGB(x, y);
+				Assertions.assertEquals(pixel, right.getRGB(height - 1 - y, x));
+				Assertions.assertEquals(pixel, left.getRGB(y, width - 1 - x));
+				Assertions.assertEquals(pixel, half.getRGB(width - 1 - x, height - 1 - y));
+				Assertions.assertEquals(pixel, horizontal.getRGB(width - 1 - x, y));
+				Assertions.assertEquals(pixel, vertical.getRGB(x, height - 1 - y));
+			}
+		}
+	}
+
+	@Test
+	public void testOrientationsFused() throws Exception {
+		BufferedImage image = EditableImageTests.randomImage(150, 90);
+		List<ImageOperation> operations = Arrays.asList(
+			new RotateRight(), new FlipVertical(), new RotateLeft(), new Rotate180(), new FlipHorizontal(), new RotateRight(),
+			new BrightnessAndContrast(10, 10), new RotateRight(), new RotateRight(), new Rotate180()
+		);
+
+		List<Replayer.Step> steps = Replayer.plan(operations);
+		Assertions.assertEquals(3, steps.size());
+		Assertions.assertTrue(steps.get(0).getOperation() instanceof Orientation);
+		// Rotating right twice and then by 180 degrees cancels out
+		Assertions.assertTrue(((Orientation) steps.get(2).getOperation()).isIdentity());
+
+		BufferedImage expected = drawSequentially(operations, Utils.deepCopy(image));
+		BufferedImage replayed = Replayer.draw(operations, Utils.deepCopy(image));
+		Assertions.assertTrue(EditableImage.bufferedImagesAreEqual(expected, replayed));
+	}
+
+	@Test
+	public void testOrientationsCombine() {
+		Assertions.assertEquals(Orientation.ROTATE_180, Orientation.ROTATE_RIGHT.then(Orientation.ROTATE_RIGHT));
+		Assertions.assertEquals(Orientation.ROTATE_LEFT, Orientation.ROTATE_180.then(Orientation.ROTATE_RIGHT));
+		Assertions.assertEquals(Orientation.ROTATE_180, Orientation.FLIP_HORIZONTAL.then(Orientation.FLIP_VERTICAL));
+		Assertions.assertTrue(Orientation.ROTATE_LEFT.then(Orientation.ROTATE_RIGHT).isIdentity());
+		Assertions.assertTrue(Orientation.FLIP_VERTICAL.then(Orientation.FLIP_VERTICAL).isIdentity());
+	}
+
+	@Test
+	public void testCropOnlyDrawsNeededRegion() throws Exception {
+		LanguageConfig.init();
+		BufferedImage image = EditableImageTests.randomImage(310, 240);
+		Rectangle[] crops = {
+			new Rectangle(100, 70, 60, 40), new Rectangle(0, 0, 25, 30), new Rectangle(200, 250, 40, 60),
+			new Rectangle(0, 0, 240, 310), new Rectangle(230, 290, 50, 50)
+		};
+		for (Rectangle crop : crops) {
+			List<ImageOperation> operations = Arrays.asList(
+				new GaussianBlur(3), new RotateRight(), new MedianFilter(2), new BrightnessAndContrast(10, 30), new FlipHorizontal(),
+				new MeanFilter(1), new Crop(crop.getLocation(), crop.getSize())
+			);
+			List<Replayer.Step> steps = Replayer.plan(operations);
+			Assertions.assertEquals(1, steps.size());
+
+			BufferedImage expected = drawSequentially(operations, Utils.deepCopy(image));
+			BufferedImage replayed = Replayer.draw(operations, Utils.deepCopy(image));
+			Assertions.assertTrue(EditableImage.bufferedImagesAreEqual(expected, replayed), crop.toString());
+		}
+	}
+
+	@Test
+	public void testCropAfterOtherOperations() throws Exception {
+		LanguageConfig.init();
+		BufferedImage image = EditableImageTests.randomImage(200, 150);
+		List<ImageOperation> operations = Arrays.asList(
+			new Resize(120), new SobelFilter(true), new Crop(new Point(10, 20), new Dimension(50, 60)),
+			new EmbossFilter(45), new Crop(new Point(5, 5), new Dimension(20, 20)), new ConvertToGrey()
+		);
+		// Resizing can't be drawn on a region, so it's drawn on its own
+		List<Replayer.Step> steps = Replayer.plan(operations);
+		Assertions.assertEquals(4, steps.size());
+		Assertions.assertSame(operations.get(0), steps.get(0).getOperation());
+		Assertions.assertEquals(3, steps.get(1).getEnd());
+
+		BufferedImage expected = drawSequentially(operations, Utils.deepCopy(image));
+		BufferedImage replayed = Replayer.draw(operations, Utils.deepCopy(image));
+		Assertions.assertTrue(EditableImage.bufferedImagesAreEqual(expected, replayed));
+	}
+}
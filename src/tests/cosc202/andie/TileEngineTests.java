@@ -0,0 +1,115 @@
+package tests.cosc202.andie;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import cosc202.andie.Cancellation;
+import cosc202.andie.ImageOperation;
+import cosc202.andie.LanguageConfig;
+import cosc202.andie.PixelBuffer;
+import cosc202.andie.TileEngine;
+import cosc202.andie.Utils;
+import cosc202.andie.models.EditableImage;
+import cosc202.andie.operations.colour.BrightnessAndContrast;
+import cosc202.andie.operations.colour.ConvertToGrey;
+import cosc202.andie.operations.filter.EmbossFilter;
+import cosc202.andie.operations.filter.GaussianBlur;
+import cosc202.andie.operations.filter.MeanFilter;
+import cosc202.andie.operations.filter.MedianFilter;
+import cosc202.andie.operations.filter.SharpenFilter;
+import cosc202.andie.operations.filter.SobelFilter;
+
+/**
+ * <p>
+ * Tests for drawing operations in parallel tiles.
+ * </p>
+ *
+ * @see TileEngine
+ * @author Jeb Nicholson
+ */
+public class TileEngineTests {
+
+	@Test
+	public void testTiledMatchesSequential() throws Exception {
+		LanguageConfig.init();
+
+		BufferedImage testImage = EditableImageTests.randomImage(600, 530);
+		ImageOperation[] operations = {
+			new BrightnessAndContrast(20, -10), new ConvertToGrey(), new MeanFilter(3), new GaussianBlur(4),
+			new MedianFilter(2), new SharpenFilter(), new EmbossFilter(90), new SobelFilter(true)
+		};
+
+		int parallelism = TileEngine.getParallelism();
+		try {
+			TileEngine.setParallelism(4);
+			for (ImageOperation operation : operations) {
+				// Some operations draw in place, so give each path its own copy
+				BufferedImage sequential = operation.draw(Utils.deepCopy(testImage));
+				BufferedImage tiled = TileEngine.draw(operation, Utils.deepCopy(testImage));
+				Assertions.assertTrue(EditableImage.bufferedImagesAreEqual(sequential, tiled), operation.operationDescription());
+			}
+		} finally {
+			TileEngine.setParallelism(parallelism);
+		}
+	}
+
+	@Test
+	public void testDrawRegions() throws Exception {
+		LanguageConfig.init();
+
+		BufferedImage testImage = EditableImageTests.randomImage(300, 200);
+		MedianFilter operation = new MedianFilter(3);
+		BufferedImage whole = operation.draw(Utils.deepCopy(testImage));
+
+		// Only the regions are drawn, and the rest of the output is left as it was
+		PixelBuffer output = PixelBuffer.copyOf(testImage);
+		Rectangle[] regions = { new Rectangle(0, 0, 100, 50), new Rectangle(150, 120, 150, 80) };
+		TileEngine.drawRegions(operation, PixelBuffer.of(testImage), output, Arrays.asList(regions), false);
+		for (int y = 0; y < testImage.getHeight(); y++) {
+			for (int x = 0; x < testImage.getWidth(); x++) {
+				boolean inRegion = regions[0].contains(x, y) || regions[1].contains(x, y);
+				int expected = inRegion ? whole.getRGB(x, y) : testImage.getRGB(x, y);
+				Assertions.assertEquals(expected, output.get(x, y), "Pixel (" + x + ", " + y + ")");
+			}
+		}
+	}
+
+	@Test
+	public void testDrawPreviewOfLeavesInputUntouched() throws Exception {
+		// Brightness and contrast draws in place when it's drawn directly, on the small image
+		BrightnessAndContrast operation = new BrightnessAndContrast(40, 25);
+		for (BufferedImage testImage : new BufferedImage[] { EditableImageTests.randomImage(40, 30), EditableImageTests.randomImage(700, 600) }) {
+			BufferedImage original = Utils.deepCopy(testImage);
+			BufferedImage preview = TileEngine.drawPreviewOf(operation, testImage);
+			Assertions.assertTrue(EditableImage.bufferedImagesAreEqual(original, testImage));
+			Assertions.assertTrue(EditableImage.bufferedImagesAreEqual(operation.drawPreview(Utils.deepCopy(original)), preview));
+		}
+	}
+
+	@Test
+	public void testCancelledTilesStop() throws Exception {
+		LanguageConfig.init();
+		BufferedImage testImage = EditableImageTests.randomImage(600, 530);
+		Cancellation token = new Cancellation();
+		token.cancel();
+		int parallelism = TileEngine.getParallelism();
+		Cancellation previous = Cancellation.setCurrent(token);
+		try {
+			TileEngine.setParallelism(4);
+			RuntimeException drawn = Assertions.assertThrows(RuntimeException.class, () -> TileEngine.draw(new MeanFilter(2), testImage));
+			Assertions.assertEquals("Interrupted", drawn.getMessage());
+			// Tasks on the pool see the token of the thread that started them
+			RuntimeException banded = Assertions.assertThrows(RuntimeException.class, () -> TileEngine.forEachBand(8, band -> Cancellation.check()));
+			Assertions.assertEquals("Interrupted", banded.getMessage());
+		} finally {
+			Cancellation.setCurrent(previous);
+			TileEngine.setParallelism(parallelism);
+		}
+		// Without a cancelled token, the same operation draws as usual
+		TileEngine.draw(new MeanFilter(2), testImage);
+	}
+}
@@ -5,10 +5,15 @@ import org.junit.Test;
 import org.junit.jupiter.api.Assertions;
 
 import cosc202.andie.LanguageConfig;
+import cosc202.andie.TileEngine;
+import cosc202.andie.Utils;
 import cosc202.andie.ImageOperation.ImageOperationException;
+import cosc202.andie.models.EditableImage;
 import cosc202.andie.operations.transform.FlipHorizontal;
 import cosc202.andie.operations.transform.FlipVertical;
 import cosc202.andie.operations.transform.Resize;
+import cosc202.andie.operations.transform.Rotate180;
+import cosc202.andie.operations.transform.RotateLeft;
 import cosc202.andie.operations.transform.RotateRight;
 
 /**
@@ -85,4 +90,58 @@ public class TransformTests {
 		Assertions.assertEquals(50,rotated.getHeight());
 		Assertions.assertEquals(0xFF0000,rotated.getRGB(rotated.getWidth()-1, 0));
 	}
+
+	@Test
+	public void testRotateKeepsImageType() throws Exception {
+		int[] types = { BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_3BYTE_BGR,
+				BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_BYTE_GRAY, BufferedImage.TYPE_USHORT_GRAY };
+		BufferedImage random = EditableImageTests.randomImage(70, 45);
+		for (int type : types) {
+			BufferedImage testImage = new BufferedImage(70, 45, type);
+			testImage.createGraphics().drawImage(random, 0, 0, null);
+			BufferedImage right = new RotateRight().draw(testImage);
+			BufferedImage left = new RotateLeft().draw(testImage);
+			// Flips draw TYPE_INT_ARGB images in place, so give them copies
+			BufferedImage horizontal = new FlipHorizontal().draw(Utils.deepCopy(testImage));
+			BufferedImage vertical = new FlipVertical().draw(Utils.deepCopy(testImage));
+			BufferedImage half = new Rotate180().draw(Utils.deepCopy(testImage));
+			if (type != BufferedImage.TYPE_USHORT_GRAY)
+				Assertions.assertEquals(type, right.getType());
+			Assertions.assertEquals(type, horizontal.getType());
+			Assertions.assertEquals(type, vertical.getType());
+			Assertions.assertEquals(type, half.getType());
+			for (int y = 0; y < 45; y++) {
+				for (int x = 0; x < 70; x++) {
+					Assertions.assertEquals(testImage.getRGB(x, y), right.getRGB(44 - y, x));
+					Assertions.assertEquals(testImage.getRGB(x, y), left.getRGB(y, 69 - x));
+					Assertions.assertEquals(testImage.getRGB(x, y), horizontal.getRGB(69 - x, y));
+					Assertions.assertEquals(testImage.getRGB(x, y), vertical.getRGB(x, 44 - y));
+					Assertions.assertEquals(testImage.getRGB(x, y), half.getRGB(69 - x, 44 - y));
+				}
+			}
+		}
+
+		// A subimage's pixels don't fill its data buffer, so it's converted first
+		BufferedImage subimage = random.getSubimage(10, 5, 30, 20);
+		BufferedImage rotated = new RotateRight().draw(subimage);
+		Assertions.assertEquals(subimage.getRGB(0, 0), rotated.getRGB(19, 0));
+		BufferedImage flipped = new Rotate180().draw(subimage);
+		Assertions.assertEquals(subimage.getRGB(0, 0), flipped.getRGB(29, 19));
+	}
+
+	@Test
+	public void testRotateInParallelBands() throws Exception {
+		int parallelism = TileEngine.getParallelism();
+		try {
+			BufferedImage testImage = EditableImageTests.randomImage(1300, 900);
+			TileEngine.setParallelism(1);
+			BufferedImage sequential = new RotateLeft().draw(testImage);
+			TileEngine.setParallelism(4);
+			BufferedImage parallel = new RotateLeft().draw(testImage);
+			Assertions.assertTrue(EditableImage.bufferedImagesAreEqual(sequential, parallel));
+			Assertions.assertEquals(testImage.getRGB(1299, 899), parallel.getRGB(899, 0));
+		} finally {
+			TileEngine.setParallelism(parallelism);
+		}
+	}
 }